@@ -0,0 +1,56 @@
+package edu.usfca.cs272;
+
+/**
+ * Scorer which scores a document with Okapi BM25. The frequency of each query word
+ * saturates, controlled by k1, and is normalized by the length of the document
+ * relative to the average length, controlled by b.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class Bm25Scorer implements Scorer {
+
+	/** The default term frequency saturation */
+	public static final double DEFAULT_K1 = 1.2;
+
+	/** The default length normalization */
+	public static final double DEFAULT_B = 0.75;
+
+	/** Term frequency saturation */
+	private final double k1;
+
+	/** Length normalization, from 0 for none to 1 for full */
+	private final double b;
+
+	/**
+	 * Constructor for a Bm25Scorer
+	 *
+	 * @param k1 the term frequency saturation
+	 * @param b the length normalization, from 0 for none to 1 for full
+	 */
+	public Bm25Scorer(double k1, double b) {
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	@Override
+	public double norm(int length, double averageLength) {
+		return k1 * (1 - b + b * length / averageLength);
+	}
+
+	@Override
+	public double weight(int documentFrequency, int documents) {
+		return Math.log(1 + (documents - documentFrequency + 0.5) / (documentFrequency + 0.5));
+	}
+
+	@Override
+	public double score(int frequency, double weight, double norm) {
+		return weight * frequency * (k1 + 1) / (frequency + norm);
+	}
+
+	@Override
+	public String toString() {
+		return "bm25";
+	}
+}
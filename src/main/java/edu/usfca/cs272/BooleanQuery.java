@@ -0,0 +1,804 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * A parsed query line with the boolean operators {@code AND}, {@code OR} and {@code NOT},
+ * such as {@code (pizza OR pasta) AND NOT "new york"}. Operators must be uppercase,
+ * {@code NOT} binds tightest and {@code OR} loosest, parentheses group, and words without
+ * an operator between them are joined by {@code OR}, as in a line without operators.
+ * Quoted phrases and proximity clauses, see {@link PositionalQuery}, may be used as words.
+ *
+ * <p>Matching documents are found document-at-a-time. The operands of a conjunction are
+ * intersected starting from the operand with the fewest postings, and every other operand
+ * is advanced to its candidates, which skips ahead by galloping over the postings it does
+ * not need, see {@link PostingIterator#advance(int)}. Matching documents are ranked by the
+ * words of the line that are not negated.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class BooleanQuery implements SearchQuery {
+
+	/** Regular expression for a boolean operator or a parenthesis */
+	public static final Pattern OPERATOR_REGEX = Pattern.compile("\\b(AND|OR|NOT)\\b|[()]");
+
+	/** Root of the parsed expression, or null if the line has no words */
+	private final Node root;
+
+	/** Unique stems of every word that is not negated, sorted */
+	private final TreeSet<String> words;
+
+	/**
+	 * Initializes a BooleanQuery
+	 *
+	 * @param root the root of the parsed expression, or null if the line has no words
+	 */
+	private BooleanQuery(Node root) {
+		this.root = root;
+		this.words = new TreeSet<>();
+		if (root != null) {
+			root.addWords(words);
+		}
+	}
+
+	/**
+	 * Checks whether a query line uses any boolean operators or parentheses.
+	 *
+	 * @param line the query line
+	 * @return true if the line should be parsed as a BooleanQuery
+	 */
+	public static boolean isBoolean(String line) {
+		return OPERATOR_REGEX.matcher(line).find();
+	}
+
+	/**
+	 * Parses a query line into a boolean expression. Operators without an operand and
+	 * unbalanced parentheses are ignored.
+	 *
+	 * @param line the query line
+	 * @param stemmer the stemmer to use
+	 * @return the parsed BooleanQuery
+	 */
+	public static BooleanQuery parse(String line, Stemmer stemmer) {
+		return new BooleanQuery(new Parser(tokenize(line), stemmer).parse());
+	}
+
+	/**
+	 * Parses a query line into a boolean expression using the default stemmer for English.
+	 *
+	 * @param line the query line
+	 * @return the parsed BooleanQuery
+	 */
+	public static BooleanQuery parse(String line) {
+		return parse(line, StemCache.ENGLISH);
+	}
+
+	/**
+	 * Splits a query line into parentheses, quoted phrases, which keep their opening
+	 * quote, and whitespace separated words and operators.
+	 *
+	 * @param line the query line
+	 * @return the tokens of the line, in order
+	 */
+	private static List<String> tokenize(String line) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < line.length()) {
+			char c = line.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(' || c == ')') {
+				tokens.add(String.valueOf(c));
+				i++;
+			} else if (c == '"') {
+				int end = line.indexOf('"', i + 1);
+				end = end < 0 ? line.length() : end;
+				tokens.add(line.substring(i, end));
+				i = end + 1;
+			} else {
+				int start = i;
+				while (i < line.length() && !Character.isWhitespace(line.charAt(i)) && "()\"".indexOf(line.charAt(i)) < 0) {
+					i++;
+				}
+				tokens.add(line.substring(start, i));
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Checks whether this query is only words joined by {@code OR}, such as a line that
+	 * only has parentheses or {@code OR} operators, which matches the same documents as a
+	 * line without operators.
+	 *
+	 * @return true if every operand is a word and there is no other operator than {@code OR}
+	 */
+	public boolean isDisjunction() {
+		if (root instanceof Or or) {
+			return or.children.stream().allMatch(Word.class::isInstance);
+		}
+		return root == null || root instanceof Word;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public PostingIterator matches(InvertedIndex index, boolean partial) {
+		return root == null ? PostingIterator.empty() : root.iterator(index, partial);
+	}
+
+	/**
+	 * Returns the query as a String, with every operator explicit and the operands of
+	 * each operator sorted, so lines that are the same expression are the same query.
+	 *
+	 * @return the String form of this query
+	 */
+	@Override
+	public String toString() {
+		return root == null ? "" : root.toString();
+	}
+
+	/**
+	 * Recursive descent parser over the tokens of a line.
+	 */
+	private static class Parser {
+
+		/** Tokens of the line, in order */
+		private final List<String> tokens;
+
+		/** Stemmer to use for words */
+		private final Stemmer stemmer;
+
+		/** Index of the next token */
+		private int position;
+
+		/**
+		 * Constructor for a Parser
+		 *
+		 * @param tokens the tokens of the line
+		 * @param stemmer the stemmer to use
+		 */
+		private Parser(List<String> tokens, Stemmer stemmer) {
+			this.tokens = tokens;
+			this.stemmer = stemmer;
+			this.position = 0;
+		}
+
+		/**
+		 * Parses every token, skipping closing parentheses without an opening one.
+		 *
+		 * @return the root of the expression, or null if there are no words
+		 */
+		private Node parse() {
+			List<Node> children = new ArrayList<>();
+			while (position < tokens.size()) {
+				add(children, or());
+				if (peek(")")) {
+					position++;
+				}
+			}
+			return combine(children, false);
+		}
+
+		/**
+		 * Parses operands joined by {@code OR} or by nothing, up to a closing parenthesis.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node or() {
+			List<Node> children = new ArrayList<>();
+			add(children, and());
+			while (position < tokens.size() && !peek(")")) {
+				if (peek("OR")) {
+					position++;
+				}
+				add(children, and());
+			}
+			return combine(children, false);
+		}
+
+		/**
+		 * Parses operands joined by {@code AND}.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node and() {
+			List<Node> children = new ArrayList<>();
+			add(children, not());
+			while (peek("AND")) {
+				position++;
+				add(children, not());
+			}
+			return combine(children, true);
+		}
+
+		/**
+		 * Parses an operand that may be negated.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node not() {
+			if (peek("NOT")) {
+				position++;
+				Node child = not();
+				return child == null ? null : new Not(child);
+			}
+			return primary();
+		}
+
+		/**
+		 * Parses a group in parentheses, a phrase, or a word, which may be the first of a
+		 * proximity clause. Consumes a stray operator without parsing anything.
+		 *
+		 * @return the parsed node, or null if there are no words
+		 */
+		private Node primary() {
+			if (position >= tokens.size() || peek(")")) {
+				return null;
+			}
+			String token = tokens.get(position++);
+			if (token.equals("(")) {
+				Node node = or();
+				if (peek(")")) {
+					position++;
+				}
+				return node;
+			}
+			if (token.startsWith("\"")) {
+				List<String> stems = FileStemmer.listStems(token.substring(1), stemmer);
+				if (stems.size() > 1) {
+					return new Phrase(new PositionalQuery.Clause(stems, PositionalQuery.Clause.PHRASE));
+				}
+				return stems.isEmpty() ? null : new Word(stems.get(0));
+			}
+			if (isOperator(token)) {
+				return null;
+			}
+
+			List<Node> children = new ArrayList<>();
+			List<String> left = FileStemmer.listStems(token, stemmer);
+			Matcher matcher = PositionalQuery.NEAR_REGEX.matcher(position < tokens.size() ? tokens.get(position) : "");
+			if (!left.isEmpty() && matcher.matches() && position + 1 < tokens.size() && isWord(tokens.get(position + 1))) {
+				List<String> right = FileStemmer.listStems(tokens.get(position + 1), stemmer);
+				if (!right.isEmpty()) {
+					position += 2;
+					int distance = PositionalQuery.parseDistance(matcher.group(1));
+					String first = left.remove(left.size() - 1);
+					String second = right.remove(0);
+					children.add(new Phrase(new PositionalQuery.Clause(List.of(first, second), distance)));
+					left.addAll(right);
+				}
+			}
+			for (String stem: left) {
+				children.add(new Word(stem));
+			}
+			return combine(children, false);
+		}
+
+		/**
+		 * Checks whether the next token is the expected one.
+		 *
+		 * @param expected the expected token
+		 * @return true if there is a next token and it equals the expected one
+		 */
+		private boolean peek(String expected) {
+			return position < tokens.size() && tokens.get(position).equals(expected);
+		}
+
+		/**
+		 * Checks whether a token is a boolean or proximity operator.
+		 *
+		 * @param token the token
+		 * @return true if the token is an operator
+		 */
+		private static boolean isOperator(String token) {
+			return token.equals("AND") || token.equals("OR") || token.equals("NOT") || PositionalQuery.NEAR_REGEX.matcher(token).matches();
+		}
+
+		/**
+		 * Checks whether a token is an unquoted word.
+		 *
+		 * @param token the token
+		 * @return true if the token is a word
+		 */
+		private static boolean isWord(String token) {
+			return !isOperator(token) && !token.equals("(") && !token.equals(")") && !token.startsWith("\"");
+		}
+
+		/**
+		 * Adds a node to a List if there is one.
+		 *
+		 * @param children the List to add to
+		 * @param node the node, or null
+		 */
+		private static void add(List<Node> children, Node node) {
+			if (node != null) {
+				children.add(node);
+			}
+		}
+
+		/**
+		 * Joins nodes with an operator, unless there are fewer than two. Operands that
+		 * use the same operator are flattened, and repeated operands are left out.
+		 *
+		 * @param children the nodes to join
+		 * @param conjunction true to join with {@code AND}, false to join with {@code OR}
+		 * @return the joined node, or null if there are no nodes
+		 */
+		private static Node combine(List<Node> children, boolean conjunction) {
+			Map<String, Node> unique = new TreeMap<>();
+			for (Node child: children) {
+				if (conjunction && child instanceof And and) {
+					and.children.forEach(operand -> unique.putIfAbsent(operand.toString(), operand));
+				} else if (!conjunction && child instanceof Or or) {
+					or.children.forEach(operand -> unique.putIfAbsent(operand.toString(), operand));
+				} else {
+					unique.putIfAbsent(child.toString(), child);
+				}
+			}
+			if (unique.isEmpty()) {
+				return null;
+			}
+			if (unique.size() == 1) {
+				return unique.values().iterator().next();
+			}
+			List<Node> operands = new ArrayList<>(unique.values());
+			return conjunction ? new And(operands) : new Or(operands);
+		}
+	}
+
+	/**
+	 * A node of a parsed boolean expression.
+	 */
+	private abstract static class Node {
+
+		/**
+		 * Returns an iterator over the documents of an index that match this node.
+		 *
+		 * @param index the index to match against
+		 * @param partial Boolean if a word also matches every word starting with it
+		 * @return an iterator over the IDs of the matching documents
+		 */
+		public abstract PostingIterator iterator(InvertedIndex index, boolean partial);
+
+		/**
+		 * Adds the stems of this node that are not negated to a Set.
+		 *
+		 * @param words the Set to add to
+		 */
+		public abstract void addWords(Set<String> words);
+
+		/**
+		 * Returns this node as an operand of another operator, in parentheses if needed.
+		 *
+		 * @return the String form of this node as an operand
+		 */
+		public String operand() {
+			return toString();
+		}
+	}
+
+	/**
+	 * A single word, which matches the documents that contain it, or any word starting
+	 * with it for a partial search.
+	 */
+	private static class Word extends Node {
+
+		/** Stem of the word */
+		private final String stem;
+
+		/**
+		 * Constructor for a Word
+		 *
+		 * @param stem the stem of the word
+		 */
+		public Word(String stem) {
+			this.stem = stem;
+		}
+
+		@Override
+		public PostingIterator iterator(InvertedIndex index, boolean partial) {
+			if (partial) {
+				return new Union(index.prefixPostings(stem));
+			}
+			PostingIterator postings = index.postings(stem);
+			return postings == null ? PostingIterator.empty() : postings;
+		}
+
+		@Override
+		public void addWords(Set<String> words) {
+			words.add(stem);
+		}
+
+		@Override
+		public String toString() {
+			return stem;
+		}
+	}
+
+	/**
+	 * A phrase or proximity clause, see {@link PositionalQuery.Clause}, whose words are
+	 * always matched exactly.
+	 */
+	private static class Phrase extends Node {
+
+		/** The clause to match */
+		private final PositionalQuery.Clause clause;
+
+		/**
+		 * Constructor for a Phrase
+		 *
+		 * @param clause the clause to match
+		 */
+		public Phrase(PositionalQuery.Clause clause) {
+			this.clause = clause;
+		}
+
+		@Override
+		public PostingIterator iterator(InvertedIndex index, boolean partial) {
+			return clause.matches(index);
+		}
+
+		@Override
+		public void addWords(Set<String> words) {
+			words.addAll(clause.getWords());
+		}
+
+		@Override
+		public String toString() {
+			return clause.toString();
+		}
+	}
+
+	/**
+	 * A negated node, which matches every document that does not match it.
+	 */
+	private static class Not extends Node {
+
+		/** The negated node */
+		private final Node child;
+
+		/**
+		 * Constructor for a Not
+		 *
+		 * @param child the negated node
+		 */
+		public Not(Node child) {
+			this.child = child;
+		}
+
+		@Override
+		public PostingIterator iterator(InvertedIndex index, boolean partial) {
+			return new Difference(new AllDocuments(index.getDocuments()), child.iterator(index, partial));
+		}
+
+		@Override
+		public void addWords(Set<String> words) {
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + child.operand();
+		}
+	}
+
+	/**
+	 * A conjunction, which matches the documents that match every operand. Negated
+	 * operands are subtracted from the intersection of the others, instead of being
+	 * iterated as every document they do not match.
+	 */
+	private static class And extends Node {
+
+		/** The operands */
+		private final List<Node> children;
+
+		/**
+		 * Constructor for an And
+		 *
+		 * @param children the operands, sorted by their String form
+		 */
+		public And(List<Node> children) {
+			this.children = children;
+		}
+
+		@Override
+		public PostingIterator iterator(InvertedIndex index, boolean partial) {
+			List<PostingIterator> include = new ArrayList<>();
+			List<PostingIterator> exclude = new ArrayList<>();
+			for (Node child: children) {
+				if (child instanceof Not not) {
+					exclude.add(not.child.iterator(index, partial));
+				} else {
+					include.add(child.iterator(index, partial));
+				}
+			}
+
+			PostingIterator matches;
+			if (include.isEmpty()) {
+				matches = new AllDocuments(index.getDocuments());
+			} else if (include.size() == 1) {
+				matches = include.get(0);
+			} else {
+				matches = new Intersection(include);
+			}
+			if (!exclude.isEmpty()) {
+				matches = new Difference(matches, exclude.size() == 1 ? exclude.get(0) : new Union(exclude));
+			}
+			return matches;
+		}
+
+		@Override
+		public void addWords(Set<String> words) {
+			for (Node child: children) {
+				child.addWords(words);
+			}
+		}
+
+		@Override
+		public String operand() {
+			return "(" + this + ")";
+		}
+
+		@Override
+		public String toString() {
+			List<String> operands = new ArrayList<>();
+			for (Node child: children) {
+				operands.add(child.operand());
+			}
+			return String.join(" AND ", operands);
+		}
+	}
+
+	/**
+	 * A disjunction, which matches the documents that match any operand.
+	 */
+	private static class Or extends Node {
+
+		/** The operands */
+		private final List<Node> children;
+
+		/**
+		 * Constructor for an Or
+		 *
+		 * @param children the operands, sorted by their String form
+		 */
+		public Or(List<Node> children) {
+			this.children = children;
+		}
+
+		@Override
+		public PostingIterator iterator(InvertedIndex index, boolean partial) {
+			List<PostingIterator> iterators = new ArrayList<>();
+			for (Node child: children) {
+				iterators.add(child.iterator(index, partial));
+			}
+			return new Union(iterators);
+		}
+
+		@Override
+		public void addWords(Set<String> words) {
+			for (Node child: children) {
+				child.addWords(words);
+			}
+		}
+
+		@Override
+		public String operand() {
+			return "(" + this + ")";
+		}
+
+		@Override
+		public String toString() {
+			List<String> operands = new ArrayList<>();
+			for (Node child: children) {
+				operands.add(child.operand());
+			}
+			return String.join(" OR ", operands);
+		}
+	}
+
+	/**
+	 * Base class for iterators over matching documents, which have no frequencies or positions.
+	 */
+	private abstract static class DocumentIterator implements PostingIterator {
+
+		/** Current document ID */
+		protected int document = -1;
+
+		@Override
+		public int next() {
+			return advance(document + 1);
+		}
+
+		@Override
+		public abstract int advance(int target);
+
+		@Override
+		public int document() {
+			return document;
+		}
+
+		@Override
+		public int frequency() {
+			return 1;
+		}
+
+		@Override
+		public int nextPosition() {
+			throw new UnsupportedOperationException("Matching documents have no positions.");
+		}
+
+		@Override
+		public boolean hasPositions() {
+			return false;
+		}
+	}
+
+	/**
+	 * Iterator over the documents every iterator contains. The iterators are ordered by
+	 * their number of postings, so the shortest one leads and every candidate it finds is
+	 * checked by advancing the longer ones, see {@link PositionalQuery#intersect(PostingIterator[], int)}.
+	 */
+	private static class Intersection extends DocumentIterator {
+
+		/** Iterators to intersect, shortest first */
+		private final PostingIterator[] postings;
+
+		/**
+		 * Constructor for an Intersection
+		 *
+		 * @param postings the iterators to intersect
+		 */
+		public Intersection(List<PostingIterator> postings) {
+			this.postings = postings.toArray(new PostingIterator[0]);
+			Arrays.sort(this.postings, Comparator.comparingInt(PostingIterator::size));
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document < target) {
+				document = PositionalQuery.intersect(postings, target);
+			}
+			return document;
+		}
+
+		@Override
+		public int size() {
+			return postings[0].size();
+		}
+	}
+
+	/**
+	 * Iterator over the documents any iterator contains.
+	 */
+	private static class Union extends DocumentIterator {
+
+		/** Iterators to merge */
+		private final PostingIterator[] postings;
+
+		/**
+		 * Constructor for a Union
+		 *
+		 * @param postings the iterators to merge
+		 */
+		public Union(List<PostingIterator> postings) {
+			this.postings = postings.toArray(new PostingIterator[0]);
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int smallest = NO_MORE_DOCUMENTS;
+			for (PostingIterator iterator: postings) {
+				int found = iterator.document() < target ? iterator.advance(target) : iterator.document();
+				smallest = Math.min(smallest, found);
+			}
+			document = smallest;
+			return document;
+		}
+
+		@Override
+		public int size() {
+			long size = 0;
+			for (PostingIterator iterator: postings) {
+				size += iterator.size();
+			}
+			return (int) Math.min(size, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Iterator over the documents one iterator contains and another does not.
+	 */
+	private static class Difference extends DocumentIterator {
+
+		/** Iterator over the documents to keep */
+		private final PostingIterator include;
+
+		/** Iterator over the documents to leave out */
+		private final PostingIterator exclude;
+
+		/**
+		 * Constructor for a Difference
+		 *
+		 * @param include the iterator over the documents to keep
+		 * @param exclude the iterator over the documents to leave out
+		 */
+		public Difference(PostingIterator include, PostingIterator exclude) {
+			this.include = include;
+			this.exclude = exclude;
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int found = include.advance(target);
+			while (found != NO_MORE_DOCUMENTS && exclude.advance(found) == found) {
+				found = include.next();
+			}
+			document = found;
+			return document;
+		}
+
+		@Override
+		public int size() {
+			return include.size();
+		}
+	}
+
+	/**
+	 * Iterator over every document with at least one word counted.
+	 */
+	private static class AllDocuments extends DocumentIterator {
+
+		/** DocumentTable with the word count of each document */
+		private final DocumentTable table;
+
+		/**
+		 * Constructor for an AllDocuments
+		 *
+		 * @param table the DocumentTable with the word count of each document
+		 */
+		public AllDocuments(DocumentTable table) {
+			this.table = table;
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int found = Math.max(target, 0);
+			while (found < table.size() && !table.hasCount(found)) {
+				found++;
+			}
+			document = found < table.size() ? found : NO_MORE_DOCUMENTS;
+			return document;
+		}
+
+		@Override
+		public int size() {
+			return table.countsSize();
+		}
+	}
+}
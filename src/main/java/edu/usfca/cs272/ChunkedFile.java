@@ -0,0 +1,192 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A large text file mapped into memory as chunks that end at line breaks, so the chunks can be
+ * indexed in parallel by the workers of a WorkQueue. The words of every chunk are counted first,
+ * by one task per chunk, and once they are all counted each chunk is indexed by another task
+ * starting from the position after the words of the chunks before it. The index built is the
+ * same as parsing the whole file with {@link InvertedIndexBuilder#parseFile(Path, InvertedIndex)}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ChunkedFile {
+
+	/** Logger to use for debugging */
+	private static final Logger log = LogManager.getLogger();
+
+	/** Default size in bytes of each chunk, and of the smallest file worth splitting */
+	public static final long CHUNK_SIZE = 1 << 26;
+
+	/** Path of the file */
+	private final Path path;
+
+	/** Mapped chunks of the file, in order */
+	private final List<MappedByteBuffer> chunks;
+
+	/** Number of words in each chunk, once counted */
+	private final int[] counts;
+
+	/** Number of chunks whose words are not counted yet */
+	private final AtomicInteger uncounted;
+
+	/** Whether counting the words of a chunk failed, in which case no chunk is indexed */
+	private volatile boolean failed;
+
+	/**
+	 * Initializes a ChunkedFile
+	 *
+	 * @param path the path of the file
+	 * @param chunks the mapped chunks of the file, in order
+	 */
+	private ChunkedFile(Path path, List<MappedByteBuffer> chunks) {
+		this.path = path;
+		this.chunks = chunks;
+		this.counts = new int[chunks.size()];
+		this.uncounted = new AtomicInteger(chunks.size());
+		this.failed = false;
+	}
+
+	/**
+	 * Maps a file into memory as chunks of about a given size, each extended to the end of its
+	 * last line so no line is split between chunks.
+	 *
+	 * @param path the path of the file
+	 * @param size the size in bytes each chunk should at least be, except the last
+	 * @return the ChunkedFile, or null if a line is too long to map in one chunk, see {@link InvertedIndexBuilder#MAP_SIZE}
+	 * @throws IOException if unable to map the file
+	 */
+	public static ChunkedFile split(Path path, long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			List<MappedByteBuffer> chunks = new ArrayList<>();
+			long length = channel.size();
+			long start = 0;
+			while (start < length) {
+				long end = lineEnd(channel, Math.min(start + size, length));
+				if (end - start > InvertedIndexBuilder.MAP_SIZE) {
+					return null;
+				}
+				chunks.add(channel.map(MapMode.READ_ONLY, start, end - start));
+				start = end;
+			}
+			return new ChunkedFile(path, chunks);
+		}
+	}
+
+	/**
+	 * Finds the end of the line a position of a file is in.
+	 *
+	 * @param channel the channel of the file
+	 * @param position the position in bytes
+	 * @return the position just after the next line break at or after the position, or the size of the file
+	 * @throws IOException if unable to read the file
+	 */
+	private static long lineEnd(FileChannel channel, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		int read;
+		while ((read = channel.read(buffer.clear(), position)) > 0) {
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return channel.size();
+	}
+
+	/**
+	 * Returns the number of chunks.
+	 *
+	 * @return the number of chunks
+	 */
+	public int size() {
+		return chunks.size();
+	}
+
+	/**
+	 * Counts then indexes every chunk with the workers of a WorkQueue. Returns once the counting
+	 * tasks are queued, and the indexing tasks are queued by the last counting task to finish, so
+	 * {@link WorkQueue#finish()} waits for both.
+	 *
+	 * @param queue the WorkQueue to run the tasks with
+	 * @param index the index to add the partial index of each chunk to
+	 * @param merger PartialIndexMerger to hand the partial index of each chunk to, or null to add it to the index
+	 */
+	public void execute(WorkQueue queue, ThreadSafeInvertedIndex index, PartialIndexMerger merger) {
+		log.debug("Splitting {} into {} chunks", path, chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			int chunk = i;
+			queue.execute(() -> count(chunk, queue, index, merger));
+		}
+	}
+
+	/**
+	 * Counts the words of a chunk, then queues the indexing tasks if it was the last chunk to count.
+	 *
+	 * @param chunk the number of the chunk
+	 * @param queue the WorkQueue to run the indexing tasks with
+	 * @param index the index to add the partial index of each chunk to
+	 * @param merger PartialIndexMerger to hand the partial index of each chunk to, or null
+	 */
+	private void count(int chunk, WorkQueue queue, ThreadSafeInvertedIndex index, PartialIndexMerger merger) {
+		try {
+			Tokenizer tokenizer = new Tokenizer();
+			tokenizer.reset(chunks.get(chunk));
+			int words = 0;
+			while (tokenizer.next()) {
+				words++;
+			}
+			counts[chunk] = words;
+		} catch (UncheckedIOException e) {
+			failed = true;
+			log.debug("Unable to count the words of {}", path);
+			throw e;
+		} finally {
+			if (uncounted.decrementAndGet() == 0 && !failed) {
+				int position = 1;
+				for (int i = 0; i < chunks.size(); i++) {
+					int next = i;
+					int start = position;
+					queue.execute(() -> index(next, start, index, merger));
+					position += counts[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indexes the words of a chunk into a partial index, then adds it to the index or the merger.
+	 *
+	 * @param chunk the number of the chunk
+	 * @param position the position of the first word of the chunk in the file
+	 * @param index the index to add the partial index to
+	 * @param merger PartialIndexMerger to hand the partial index to, or null
+	 */
+	private void index(int chunk, int position, ThreadSafeInvertedIndex index, PartialIndexMerger merger) {
+		InvertedIndex temp = merger != null ? merger.create() : new InvertedIndex(index.hasPositions());
+		InvertedIndexBuilder.parseBytes(chunks.get(chunk), path.toString(), temp, position);
+		if (merger != null) {
+			merger.add(temp);
+		} else {
+			index.addAll(temp);
+		}
+	}
+}
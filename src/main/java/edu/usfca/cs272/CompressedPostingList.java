@@ -0,0 +1,309 @@
+package edu.usfca.cs272;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable, compressed form of the postings of a single word. Document IDs and
+ * word positions are stored as variable-byte encoded gaps, see {@link PostingCodec}.
+ * Every {@link #SKIP_INTERVAL} postings a skip entry is stored, so an iterator
+ * can jump ahead to a later block of postings without decoding the ones in between.
+ *
+ * <p>
+ * The encoded postings start at an offset within a {@link ByteBuffer}, so many
+ * posting lists can share one buffer, whether it is on the heap or mapped from a
+ * file. The layout is:
+ *
+ * <pre>
+ * VInt size, VInt skip count, VInt documents length, VInt positions length
+ * skip count entries of: int last document, int documents offset, int positions offset
+ * documents stream of: VInt document gap, VInt frequency
+ * positions stream of: VInt position gap
+ * </pre>
+ *
+ * <p>
+ * If the positions were not retained, the positions stream is empty and only the
+ * frequencies are stored.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CompressedPostingList {
+
+	/** Number of postings between skip entries */
+	public static final int SKIP_INTERVAL = 64;
+
+	/** Number of bytes in each skip entry */
+	private static final int SKIP_BYTES = 12;
+
+	/** Buffer holding the encoded postings */
+	private final ByteBuffer buffer;
+
+	/** Offset of the encoded postings within the buffer */
+	private final int offset;
+
+	/** Number of postings (documents) in this list */
+	private final int size;
+
+	/** Number of skip entries in this list */
+	private final int skips;
+
+	/** Offset of the skip table within the buffer */
+	private final int skipStart;
+
+	/** Offset of the documents stream within the buffer */
+	private final int documentsStart;
+
+	/** Offset of the positions stream within the buffer */
+	private final int positionsStart;
+
+	/** Offset just past the end of the encoded postings within the buffer */
+	private final int end;
+
+	/**
+	 * Constructor for a CompressedPostingList encoded at a given offset of a buffer.
+	 *
+	 * @param buffer the buffer holding the encoded postings
+	 * @param offset the offset of the encoded postings within the buffer
+	 */
+	public CompressedPostingList(ByteBuffer buffer, int offset) {
+		ByteBuffer header = buffer.duplicate();
+		header.position(offset);
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = PostingCodec.readVInt(header);
+		this.skips = PostingCodec.readVInt(header);
+		int documentsLength = PostingCodec.readVInt(header);
+		int positionsLength = PostingCodec.readVInt(header);
+		this.skipStart = header.position();
+		this.documentsStart = skipStart + skips * SKIP_BYTES;
+		this.positionsStart = documentsStart + documentsLength;
+		this.end = positionsStart + positionsLength;
+	}
+
+	/**
+	 * Encodes the postings of an iterator, including all of their positions if they were retained.
+	 *
+	 * @param postings the postings to encode
+	 * @return the encoded postings
+	 */
+	public static byte[] encode(PostingIterator postings) {
+		ByteArrayOutputStream documents = new ByteArrayOutputStream();
+		ByteArrayOutputStream positions = new ByteArrayOutputStream();
+		ByteArrayOutputStream skipTable = new ByteArrayOutputStream();
+		int size = 0;
+		int last = 0;
+
+		for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+			if (size > 0 && size % SKIP_INTERVAL == 0) {
+				PostingCodec.writeInt(skipTable, last);
+				PostingCodec.writeInt(skipTable, documents.size());
+				PostingCodec.writeInt(skipTable, positions.size());
+			}
+			int frequency = postings.frequency();
+			PostingCodec.writeVInt(documents, document - last);
+			PostingCodec.writeVInt(documents, frequency);
+			int previous = 0;
+			for (int i = 0; i < frequency && postings.hasPositions(); i++) {
+				int position = postings.nextPosition();
+				PostingCodec.writeVInt(positions, position - previous);
+				previous = position;
+			}
+			last = document;
+			size++;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PostingCodec.writeVInt(out, size);
+		PostingCodec.writeVInt(out, skipTable.size() / SKIP_BYTES);
+		PostingCodec.writeVInt(out, documents.size());
+		PostingCodec.writeVInt(out, positions.size());
+		out.writeBytes(skipTable.toByteArray());
+		out.writeBytes(documents.toByteArray());
+		out.writeBytes(positions.toByteArray());
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes the postings of an iterator into a new CompressedPostingList.
+	 *
+	 * @param postings the postings to compress
+	 * @return the compressed postings
+	 */
+	public static CompressedPostingList compress(PostingIterator postings) {
+		return new CompressedPostingList(ByteBuffer.wrap(encode(postings)), 0);
+	}
+
+	/**
+	 * Returns whether the positions of the word were retained. Every posting has at
+	 * least one position when they are, so the positions stream is only empty when they are not.
+	 *
+	 * @return true if the positions can be read
+	 */
+	public boolean hasPositions() {
+		return size == 0 || positionsStart < end;
+	}
+
+	/**
+	 * Returns the number of postings in this list.
+	 *
+	 * @return the number of documents containing the word
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes this list takes in its buffer.
+	 *
+	 * @return the encoded length in bytes
+	 */
+	public int length() {
+		return end - offset;
+	}
+
+	/**
+	 * Returns a new iterator over the postings in this list.
+	 *
+	 * @return a PostingIterator positioned before the first posting
+	 */
+	public PostingIterator iterator() {
+		return new Cursor();
+	}
+
+	/**
+	 * Iterator that decodes the postings on demand. Positions are only decoded when
+	 * they are asked for, and the positions of skipped postings are stepped over.
+	 */
+	private class Cursor implements PostingIterator {
+
+		/** Reader for the documents stream */
+		private final ByteBuffer documents;
+
+		/** Reader for the positions stream */
+		private final ByteBuffer positions;
+
+		/** Number of postings read so far */
+		private int index;
+
+		/** The current document ID */
+		private int document;
+
+		/** Frequency of the word in the current document */
+		private int frequency;
+
+		/** Number of positions of the current document read so far */
+		private int read;
+
+		/** Number of positions that must be stepped over before the next read */
+		private int pending;
+
+		/** The last position read from the current document */
+		private int position;
+
+		/** Index of the next skip entry that has not been passed */
+		private int skip;
+
+		/** Constructor for a Cursor positioned before the first posting */
+		public Cursor() {
+			documents = buffer.duplicate();
+			documents.position(documentsStart);
+			positions = buffer.duplicate();
+			positions.position(positionsStart);
+			index = 0;
+			document = -1;
+			frequency = 0;
+			read = 0;
+			pending = 0;
+			skip = 0;
+		}
+
+		@Override
+		public int next() {
+			if (index >= size) {
+				document = NO_MORE_DOCUMENTS;
+				return document;
+			}
+			pending += frequency - read;
+			document = Math.max(document, 0) + PostingCodec.readVInt(documents);
+			frequency = PostingCodec.readVInt(documents);
+			read = 0;
+			position = 0;
+			index++;
+			return document;
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			int jump = -1;
+			while (skip < skips && lastDocument(skip) < target) {
+				if ((skip + 1) * SKIP_INTERVAL > index) {
+					jump = skip;
+				}
+				skip++;
+			}
+			if (jump >= 0) {
+				int entry = skipStart + jump * SKIP_BYTES;
+				document = buffer.getInt(entry);
+				documents.position(documentsStart + buffer.getInt(entry + 4));
+				positions.position(positionsStart + buffer.getInt(entry + 8));
+				index = (jump + 1) * SKIP_INTERVAL;
+				frequency = 0;
+				read = 0;
+				pending = 0;
+			}
+			while (document < target) {
+				next();
+			}
+			return document;
+		}
+
+		/**
+		 * Returns the last document ID before the block of a given skip entry.
+		 *
+		 * @param entry the skip entry
+		 * @return the last document ID before the block
+		 */
+		private int lastDocument(int entry) {
+			return buffer.getInt(skipStart + entry * SKIP_BYTES);
+		}
+
+		@Override
+		public int document() {
+			return document;
+		}
+
+		@Override
+		public int frequency() {
+			return frequency;
+		}
+
+		@Override
+		public int nextPosition() {
+			if (!hasPositions()) {
+				throw new UnsupportedOperationException("Positions were not retained");
+			}
+			if (pending > 0) {
+				PostingCodec.skipVInts(positions, pending);
+				pending = 0;
+			}
+			position += PostingCodec.readVInt(positions);
+			read++;
+			return position;
+		}
+
+		@Override
+		public boolean hasPositions() {
+			return CompressedPostingList.this.hasPositions();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
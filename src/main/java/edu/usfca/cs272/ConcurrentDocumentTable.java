@@ -0,0 +1,154 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A DocumentTable that can be read by any number of threads while documents are
+ * being added, without any locking on the read side. IDs are only ever appended,
+ * so a reader that got an ID from this table can always resolve it. Changes are
+ * serialized by synchronizing on the table.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ConcurrentDocumentTable extends DocumentTable {
+
+	/** The default capacity of the locations and counts arrays */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** Lookup table from a document location to its ID */
+	private final ConcurrentHashMap<String, Integer> ids;
+
+	/** Document locations, where the index of a location is its ID */
+	private volatile String[] locations;
+
+	/** Number of words found in each document, indexed by document ID */
+	private volatile int[] counts;
+
+	/** Number of IDs assigned so far */
+	private volatile int size;
+
+	/** Number of documents that have at least one word counted */
+	private volatile int counted;
+
+	/** Total number of words counted over all documents */
+	private volatile long total;
+
+	/** Constructor for an empty ConcurrentDocumentTable */
+	public ConcurrentDocumentTable() {
+		super();
+		ids = new ConcurrentHashMap<>();
+		locations = new String[DEFAULT_CAPACITY];
+		counts = new int[DEFAULT_CAPACITY];
+		size = 0;
+		counted = 0;
+		total = 0;
+	}
+
+	@Override
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(location);
+			if (id == null) {
+				id = size;
+				if (id >= locations.length) {
+					locations = Arrays.copyOf(locations, locations.length * 2);
+					counts = Arrays.copyOf(counts, counts.length * 2);
+				}
+				locations[id] = location;
+				ids.put(location, id);
+				size = id + 1;
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns a plain DocumentTable with the same IDs and counts as this table.
+	 */
+	@Override
+	public synchronized DocumentTable copy() {
+		DocumentTable copy = new DocumentTable();
+		for (int id = 0; id < size; id++) {
+			copy.add(locations[id]);
+			copy.addCount(id, counts[id]);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns this table, which is already safe to read while it keeps changing.
+	 */
+	@Override
+	public DocumentTable snapshot() {
+		return this;
+	}
+
+	@Override
+	public int get(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	@Override
+	public String location(int id) {
+		return locations[id];
+	}
+
+	@Override
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	@Override
+	public synchronized void addCount(int id, int words) {
+		int[] current = counts;
+		if (current[id] == 0 && words > 0) {
+			counted++;
+		}
+		current[id] += words;
+		counts = current;
+		total += words;
+	}
+
+	@Override
+	public boolean hasCount(int id) {
+		return id >= 0 && id < size && counts[id] > 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int countsSize() {
+		return counted;
+	}
+
+	@Override
+	public long totalCount() {
+		return total;
+	}
+
+	@Override
+	public TreeMap<String, Integer> toCounts() {
+		int known = size;
+		String[] names = locations;
+		int[] words = counts;
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < known; id++) {
+			if (words[id] > 0) {
+				map.put(names[id], words[id]);
+			}
+		}
+		return map;
+	}
+}
@@ -0,0 +1,424 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ThreadSafeInvertedIndex without any lock over the whole index. Words are kept in a
+ * ConcurrentSkipListMap, so words can be found and added by any number of threads at once,
+ * and the postings of each word are guarded by their own monitor, so threads only wait for
+ * each other while adding to or reading the postings of the same word. Each read of a word
+ * sees its postings as they were at one point in time, but reads of several words may see
+ * changes made in between.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ConcurrentInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Postings of every word, each guarded by synchronizing on the PostingList */
+	private final ConcurrentSkipListMap<String, PostingList> index;
+
+	/** The document IDs and counts, which can be read while they are being added */
+	private final ConcurrentDocumentTable documents;
+
+	/** Number of changes made to this index, counted after each change is visible */
+	private final LongAdder generation;
+
+	/**
+	 * Initializes the concurrent InvertedIndex
+	 */
+	public ConcurrentInvertedIndex() {
+		this(true);
+	}
+
+	/**
+	 * Initializes the concurrent InvertedIndex
+	 *
+	 * @param positions whether to retain the positions of each word
+	 */
+	public ConcurrentInvertedIndex(boolean positions) {
+		this(new ConcurrentDocumentTable(), positions);
+	}
+
+	/**
+	 * Initializes the concurrent InvertedIndex with a given DocumentTable
+	 *
+	 * @param documents the DocumentTable to use
+	 * @param positions whether to retain the positions of each word
+	 */
+	private ConcurrentInvertedIndex(ConcurrentDocumentTable documents, boolean positions) {
+		super(documents, positions);
+		this.index = new ConcurrentSkipListMap<>();
+		this.documents = documents;
+		this.generation = new LongAdder();
+	}
+
+	/**
+	 * Compiles a copy of every word's postings into a FrozenInvertedIndex. This index keeps serving
+	 * reads itself, since it does not need a snapshot to avoid locking.
+	 *
+	 * @return a FrozenInvertedIndex containing the current words, postings and counts
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		InvertedIndex copy = new InvertedIndex(documents, hasPositions());
+		for (String word: index.keySet()) {
+			copy.addPostings(word, getPostings(word));
+		}
+		return copy.freeze();
+	}
+
+	/**
+	 * Does nothing, since every change is visible to reads as soon as it is made.
+	 */
+	@Override
+	public void refresh() {
+	}
+
+	@Override
+	public void add(String stem, String locations, int positions) {
+		int document = documents.add(locations);
+		PostingList postings = index.computeIfAbsent(stem, word -> new PostingList(hasPositions()));
+		synchronized (postings) {
+			PositionList existing = postings.get(document);
+			// the count first, as in addAll, so no search sees the posting of a document without its count
+			if (existing == null || !existing.contains(positions)) {
+				documents.addCount(document, 1);
+				postings.add(document, positions);
+			}
+		}
+		generation.increment();
+	}
+
+	/**
+	 * Adds all the data from a given InvertedIndex, synchronizing on the postings of one word at a time.
+	 */
+	@Override
+	public void addAll(InvertedIndex other) {
+		DocumentTable table = other.getDocuments();
+		int[] mapping = new int[table.size()];
+		for (int i = 0; i < mapping.length; i++) {
+			mapping[i] = documents.add(table.location(i));
+		}
+		// counts first, so no search sees postings of a document without its count
+		for (int i = 0; i < mapping.length; i++) {
+			documents.addCount(mapping[i], table.getCount(i));
+		}
+
+		for (String word: other.getWords()) {
+			PostingList postings = index.computeIfAbsent(word, stem -> new PostingList(hasPositions()));
+			synchronized (postings) {
+				copyPostings(other, word, postings, mapping);
+			}
+		}
+		generation.increment();
+	}
+
+	@Override
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
+		Collector collector = new Collector(scorer);
+		for (String query: queries) {
+			PostingList postings = index.get(query);
+			if (postings != null) {
+				collector.collect(postings);
+			}
+		}
+		return collector.results(k);
+	}
+
+	@Override
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
+		Collector collector = new Collector(scorer);
+		for (String query: queries) {
+			for (var entry: index.tailMap(query).entrySet()) {
+				if (!entry.getKey().startsWith(query)) {
+					break;
+				}
+				collector.collect(entry.getValue());
+			}
+		}
+		return collector.results(k);
+	}
+
+	/**
+	 * Returns an iterator over a copy of the postings of a word, so it can be used while the word keeps changing
+	 */
+	@Override
+	public PostingIterator getPostings(String word) {
+		CompressedPostingList postings = getCompressedPostings(word);
+		return postings != null ? postings.iterator() : null;
+	}
+
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return null;
+		}
+		synchronized (postings) {
+			return postings.compress();
+		}
+	}
+
+	/**
+	 * Returns iterators over copies of the postings of each word, so they can be used while the words keep changing
+	 */
+	@Override
+	public List<PostingIterator> getPrefixPostings(String prefix) {
+		List<PostingIterator> found = new ArrayList<>();
+		for (var entry: index.tailMap(prefix).entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			synchronized (entry.getValue()) {
+				found.add(entry.getValue().compress().iterator());
+			}
+		}
+		return found;
+	}
+
+	@Override
+	protected PostingIterator postings(String word) {
+		return getPostings(word);
+	}
+
+	@Override
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		return getPrefixPostings(prefix);
+	}
+
+	@Override
+	protected List<String> prefixWords(String prefix) {
+		List<String> words = new ArrayList<>();
+		for (String word: index.tailMap(prefix).keySet()) {
+			if (!word.startsWith(prefix)) {
+				break;
+			}
+			words.add(word);
+		}
+		return words;
+	}
+
+	/**
+	 * Returns copies of the positions of the word, so they can be used while the word keeps changing
+	 */
+	@Override
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		TreeMap<String, PositionList> locations = new TreeMap<>();
+		PostingList postings = index.get(word);
+		if (postings != null) {
+			synchronized (postings) {
+				for (var entry: postings.toMap(documents).entrySet()) {
+					PositionList positions = new PositionList();
+					positions.addAll(entry.getValue());
+					locations.put(entry.getKey(), positions);
+				}
+			}
+		}
+		return locations;
+	}
+
+	@Override
+	public Map<String, Number> getCounts() {
+		return Collections.unmodifiableMap(documents.toCounts());
+	}
+
+	@Override
+	public Integer getCount(String locations) {
+		int document = documents.get(locations);
+		return documents.hasCount(document) ? documents.getCount(document) : null;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> paths = new TreeSet<>();
+		synchronized (postings) {
+			for (int i = 0; i < postings.size(); i++) {
+				paths.add(documents.location(postings.document(i)));
+			}
+		}
+		return Collections.unmodifiableSet(paths);
+	}
+
+	@Override
+	public Collection<Integer> getPositions(String word, String locations) {
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		if (postings == null || document < 0) {
+			return Collections.emptyList();
+		}
+		synchronized (postings) {
+			PositionList positions = postings.get(document);
+			return positions != null ? Collections.unmodifiableList(new ArrayList<>(positions)) : Collections.emptyList();
+		}
+	}
+
+	@Override
+	public long generation() {
+		return generation.sum();
+	}
+
+	@Override
+	public int countsSize() {
+		return documents.countsSize();
+	}
+
+	@Override
+	public int indexSize() {
+		return index.size();
+	}
+
+	@Override
+	public int indexWordSize(String word) {
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return 0;
+		}
+		synchronized (postings) {
+			return postings.size();
+		}
+	}
+
+	@Override
+	public int indexPositionsSize(String word, String locations) {
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		if (postings == null || document < 0) {
+			return 0;
+		}
+		synchronized (postings) {
+			return postings.frequencyOf(document);
+		}
+	}
+
+	@Override
+	public boolean containsCount(String locations) {
+		return documents.hasCount(documents.get(locations));
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return index.containsKey(word);
+	}
+
+	@Override
+	public boolean hasStemFile(String word, String locations) {
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		if (postings == null || document < 0) {
+			return false;
+		}
+		synchronized (postings) {
+			return postings.contains(document);
+		}
+	}
+
+	@Override
+	public boolean hasStemFilePosition(String word, String locations, int position) {
+		return getPositions(word, locations).contains(position);
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		JsonWriter.writeObject(documents.toCounts(), path);
+	}
+
+	@Override
+	public String countsToString() {
+		return JsonWriter.writeObject(documents.toCounts());
+	}
+
+	/**
+	 * Collects the document IDs and frequencies of the postings of the query words, copying each
+	 * word's postings while synchronized on them, then combines them into sorted results.
+	 */
+	private class Collector {
+		/** Document IDs found, one entry for each posting */
+		private int[] found;
+
+		/** Frequency of each posting, parallel to found */
+		private int[] frequencies;
+
+		/** Weight of the word of each posting, parallel to found */
+		private double[] weights;
+
+		/** Number of postings found */
+		private int size;
+
+		/** Scorer to rank the results with */
+		private final Scorer scorer;
+
+		/**
+		 * Initializes an empty Collector
+		 *
+		 * @param scorer the Scorer to rank the results with
+		 */
+		public Collector(Scorer scorer) {
+			this.found = new int[16];
+			this.frequencies = new int[16];
+			this.weights = new double[16];
+			this.size = 0;
+			this.scorer = scorer;
+		}
+
+		/**
+		 * Collects the document IDs and frequencies of the postings of a word
+		 *
+		 * @param postings the postings of the word
+		 */
+		public void collect(PostingList postings) {
+			synchronized (postings) {
+				int needed = size + postings.size();
+				if (needed > found.length) {
+					int grown = Math.max(needed, found.length * 2);
+					found = Arrays.copyOf(found, grown);
+					frequencies = Arrays.copyOf(frequencies, grown);
+					weights = Arrays.copyOf(weights, grown);
+				}
+				double weight = documents.norms(scorer).weight(postings.size());
+				for (int i = 0; i < postings.size(); i++) {
+					found[size] = postings.document(i);
+					frequencies[size] = postings.frequency(i);
+					weights[size] = weight;
+					size++;
+				}
+			}
+		}
+
+		/**
+		 * Combines the collected postings into sorted results, keeping the k best
+		 *
+		 * @param k the maximum number of results to return
+		 * @return List of at most k QueryMetaData which is the results of the search
+		 */
+		public List<QueryMetaData> results(int k) {
+			// sized after collecting, so it covers every document found
+			List<QueryMetaData> results = new ArrayList<>();
+			QueryMetaData[] lookup = new QueryMetaData[documents.size()];
+			addResults(found, frequencies, weights, size, scorer, lookup, results);
+			return topResults(results, k);
+		}
+	}
+}
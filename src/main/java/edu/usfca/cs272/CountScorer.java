@@ -0,0 +1,38 @@
+package edu.usfca.cs272;
+
+/**
+ * Scorer which scores a document by the number of times the query words occur in it
+ * divided by the number of words in it. The final score is computed with a single
+ * division, exactly as it always has been, so results and their order do not change.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CountScorer implements Scorer {
+
+	@Override
+	public double norm(int length, double averageLength) {
+		return 1.0 / length;
+	}
+
+	@Override
+	public double weight(int documentFrequency, int documents) {
+		return 1;
+	}
+
+	@Override
+	public double score(int frequency, double weight, double norm) {
+		return frequency * norm;
+	}
+
+	@Override
+	public double finish(int count, double sum, int length) {
+		return (double) count / length;
+	}
+
+	@Override
+	public String toString() {
+		return "count";
+	}
+}
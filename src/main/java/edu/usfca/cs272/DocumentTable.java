@@ -0,0 +1,297 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class responsible for assigning each document location (a file path or a URL) a
+ * dense integer ID, so the location String only has to be stored once. Also stores
+ * the word count of each document, indexed by its ID, and the norms and word weights
+ * a Scorer computes from those counts, see {@link #norms(Scorer)}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class DocumentTable {
+
+	/** The default capacity of the counts array */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** Document locations, where the index of a location is its ID */
+	private final ArrayList<String> locations;
+
+	/** Lookup table from a document location to its ID */
+	private final HashMap<String, Integer> ids;
+
+	/** Number of words found in each document, indexed by document ID */
+	private int[] counts;
+
+	/** Number of documents that have at least one word counted */
+	private int counted;
+
+	/** Total number of words counted over all documents */
+	private long total;
+
+	/** Norms and weights of each Scorer, computed from the counts of the last search that used it */
+	private final ConcurrentHashMap<Scorer, Norms> norms;
+
+	/** Constructor for an empty DocumentTable */
+	public DocumentTable() {
+		locations = new ArrayList<>();
+		ids = new HashMap<>();
+		counts = new int[DEFAULT_CAPACITY];
+		counted = 0;
+		total = 0;
+		norms = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Copy constructor for a DocumentTable with the same IDs and counts as another table.
+	 *
+	 * @param other the DocumentTable to copy
+	 */
+	private DocumentTable(DocumentTable other) {
+		locations = new ArrayList<>(other.locations);
+		ids = new HashMap<>(other.ids);
+		counts = Arrays.copyOf(other.counts, Math.max(other.locations.size(), 1));
+		counted = other.counted;
+		total = other.total;
+		norms = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns the ID of a given location, assigning it the next free ID if the
+	 * location has not been seen before.
+	 *
+	 * @param location the document location
+	 * @return the ID of the location
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id == null) {
+			id = locations.size();
+			locations.add(location);
+			ids.put(location, id);
+			if (id >= counts.length) {
+				counts = Arrays.copyOf(counts, counts.length * 2);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Returns a copy of this table. Changes to either table are not seen by the other.
+	 *
+	 * @return a copy of this DocumentTable
+	 */
+	public DocumentTable copy() {
+		return new DocumentTable(this);
+	}
+
+	/**
+	 * Returns a table with the same IDs and counts that is safe to read while this
+	 * table keeps changing. This is a copy, unless the table is already safe for
+	 * concurrent reads.
+	 *
+	 * @return a snapshot of this DocumentTable
+	 */
+	public DocumentTable snapshot() {
+		return copy();
+	}
+
+	/**
+	 * Returns the ID of a given location.
+	 *
+	 * @param location the document location
+	 * @return the ID of the location, or -1 if the location has not been seen
+	 */
+	public int get(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the location of a given document ID.
+	 *
+	 * @param id the document ID
+	 * @return the location of the document
+	 */
+	public String location(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Returns the word count of a given document ID.
+	 *
+	 * @param id the document ID
+	 * @return the number of words in the document
+	 */
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Adds to the word count of a given document ID.
+	 *
+	 * @param id the document ID
+	 * @param words the number of words to add
+	 */
+	public void addCount(int id, int words) {
+		if (counts[id] == 0 && words > 0) {
+			counted++;
+		}
+		counts[id] += words;
+		total += words;
+	}
+
+	/**
+	 * Checks to see if a given document ID has any words counted.
+	 *
+	 * @param id the document ID
+	 * @return true if the document has at least one word
+	 */
+	public boolean hasCount(int id) {
+		return id >= 0 && id < locations.size() && counts[id] > 0;
+	}
+
+	/**
+	 * Returns the number of IDs assigned by this table.
+	 *
+	 * @return the number of documents in this table
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns the number of documents that have at least one word counted.
+	 *
+	 * @return the number of counted documents
+	 */
+	public int countsSize() {
+		return counted;
+	}
+
+	/**
+	 * Returns the total number of words counted over all documents.
+	 *
+	 * @return the sum of the word counts
+	 */
+	public long totalCount() {
+		return total;
+	}
+
+	/**
+	 * Builds the counts of every counted document, sorted by location.
+	 *
+	 * @return a TreeMap with the document locations as keys and word counts as values
+	 */
+	public TreeMap<String, Integer> toCounts() {
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			if (counts[id] > 0) {
+				map.put(locations.get(id), counts[id]);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the norm of every document and the weight of every document frequency given by a
+	 * Scorer, see {@link Norms}. They are computed once for the current counts and reused until
+	 * a count changes, so searches of an index that is not changing never recompute them. Counts
+	 * only ever grow, so the total number of words and of counted documents tell whether the
+	 * counts changed since they were computed.
+	 *
+	 * @param scorer the Scorer
+	 * @return the norms and weights of the Scorer for the current counts
+	 */
+	public Norms norms(Scorer scorer) {
+		long words = totalCount();
+		int documents = countsSize();
+		Norms cached = norms.get(scorer);
+		if (cached == null || cached.total != words || cached.counted != documents) {
+			cached = new Norms(this, scorer, words, documents);
+			norms.put(scorer, cached);
+		}
+		return cached;
+	}
+
+	/**
+	 * The norm of every document and the weight of every document frequency given by a Scorer,
+	 * computed from the counts of a DocumentTable at one point in time. A document or frequency
+	 * beyond those counted then, as seen by a search running while the table changes, is
+	 * computed when it is asked for instead.
+	 */
+	public static class Norms {
+
+		/** The table the norms were computed from */
+		private final DocumentTable table;
+
+		/** The Scorer the norms were computed by */
+		private final Scorer scorer;
+
+		/** Total number of words counted when the norms were computed */
+		private final long total;
+
+		/** Number of counted documents when the norms were computed */
+		private final int counted;
+
+		/** Average number of words of a counted document */
+		private final double average;
+
+		/** Norm of each document, indexed by document ID */
+		private final double[] norms;
+
+		/** Weight of a word, indexed by the number of documents it occurs in */
+		private final double[] weights;
+
+		/**
+		 * Computes the Norms of a Scorer
+		 *
+		 * @param table the table to compute the norms from
+		 * @param scorer the Scorer
+		 * @param total the total number of words counted by the table
+		 * @param counted the number of counted documents of the table
+		 */
+		private Norms(DocumentTable table, Scorer scorer, long total, int counted) {
+			this.table = table;
+			this.scorer = scorer;
+			this.total = total;
+			this.counted = counted;
+			this.average = counted > 0 ? (double) total / counted : 1;
+			this.norms = new double[table.size()];
+			for (int id = 0; id < norms.length; id++) {
+				norms[id] = scorer.norm(table.getCount(id), average);
+			}
+			this.weights = new double[counted + 1];
+			for (int frequency = 0; frequency < weights.length; frequency++) {
+				weights[frequency] = scorer.weight(frequency, counted);
+			}
+		}
+
+		/**
+		 * Returns the norm of a document, see {@link Scorer#norm(int, double)}.
+		 *
+		 * @param document the document ID
+		 * @return the norm of the document
+		 */
+		public double norm(int document) {
+			return document < norms.length ? norms[document] : scorer.norm(table.getCount(document), average);
+		}
+
+		/**
+		 * Returns the weight of a word, see {@link Scorer#weight(int, int)}.
+		 *
+		 * @param frequency the number of documents the word occurs in
+		 * @return the weight of the word
+		 */
+		public double weight(int frequency) {
+			return frequency < weights.length ? weights[frequency] : scorer.weight(frequency, counted);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package edu.usfca.cs272;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 /**
  * Class responsible for running this project based on the provided command-line
@@ -28,6 +29,13 @@ public class Driver {
 		WorkQueue workers = null;
 		InvertedIndex index;
 		QueryProcessor query;
+		Map<String, Double> utilization = null;
+		boolean positions = !parser.hasFlag("-nopositions");
+		Scorer scorer = Scorer.of(parser.getString("-scorer", "count"));
+		if (scorer == null) {
+			System.err.println("Unknown scorer, ranking by count instead: " + parser.getString("-scorer"));
+			scorer = Scorer.COUNT;
+		}
 		
 		if (parser.hasFlag("-threads") || parser.hasFlag("-server")) {
 			int threads = parser.getInteger("-threads");
@@ -36,25 +44,54 @@ public class Driver {
 			} else {
 				workers = new WorkQueue(threads);
 			}
-			safeIndex = new ThreadSafeInvertedIndex();
-			query = new MultiThreadedQueryProcessor(safeIndex, workers);
+			if (parser.hasFlag("-server")) {
+				safeIndex = new SegmentedInvertedIndex(SegmentedInvertedIndex.DEFAULT_BUFFER_SIZE, positions);
+			} else if (parser.hasFlag("-concurrent")) {
+				safeIndex = new ConcurrentInvertedIndex(positions);
+			} else if (parser.hasFlag("-shards")) {
+				int shards = parser.getInteger("-shards");
+				if (shards < 1) {
+					shards = ShardedInvertedIndex.DEFAULT_SHARDS;
+				}
+				safeIndex = new ShardedInvertedIndex(shards, workers, positions);
+			} else {
+				safeIndex = new ThreadSafeInvertedIndex(positions);
+			}
 			index = safeIndex;
 		} else {
-			index = new InvertedIndex();
-			query = new SingleThreadedQueryProcessor(index);
+			index = new InvertedIndex(positions);
+		}
+		
+		if (parser.hasFlag("-load")) {
+			Path path = parser.getPath("-load", Path.of("index"));
+			try {
+				MappedInvertedIndex loaded = MappedInvertedIndex.load(path);
+				if (safeIndex != null) {
+					safeIndex = new SegmentedInvertedIndex(loaded);
+					index = safeIndex;
+				} else if (parser.hasFlag("-text") || parser.hasFlag("-html")) {
+					index.addAll(loaded);
+				} else {
+					index = loaded;
+				}
+			} catch (IOException e) {
+				System.err.println("Unable to load index files at: " + path);
+			} catch (UnsupportedOperationException e) {
+				System.err.println("Unable to add an index without positions to one with positions: " + path);
+			}
 		}
 		
 		if (parser.hasFlag("-text")) {
 			Path path = parser.getPath("-text");
 			if(safeIndex != null && workers != null) {
 				try {
-					InvertedIndexBuilder.multiThreadedBuild(path, safeIndex, workers);
+					utilization = InvertedIndexBuilder.multiThreadedBuild(path, safeIndex, workers, parser.hasFlag("-treemerge"), parser.hasFlag("-mmap"));
 				} catch (Exception e) {
 					System.err.println("Unable to process input file at: " + path);
 				}
 			} else {
 				try {
-					InvertedIndexBuilder.build(path, index);
+					InvertedIndexBuilder.build(path, index, parser.hasFlag("-mmap"));
 				} catch (Exception e) {
 					System.err.println("Unable to process input file at: " + path);
 				}
@@ -70,7 +107,7 @@ public class Driver {
 			if(safeIndex != null && workers != null) {
 				try {
 					if (url != null) {
-						crawler.multiThreadedCrawl(url, crawl, safeIndex, workers);
+						crawler.multiThreadedCrawl(url, crawl, safeIndex, workers, parser.hasFlag("-treemerge"));
 					}
 				} catch (IOException e) {
 					System.err.println("Unable to process link at:" + url);
@@ -85,11 +122,57 @@ public class Driver {
 				}
 			}
 		}
+		
+		if (safeIndex != null) {
+			safeIndex.refresh();
+		}
+		
+		if (parser.hasFlag("-save")) {
+			Path path = parser.getPath("-save", Path.of("index"));
+			try {
+				MappedInvertedIndex.write(index, path);
+			} catch (IOException e) {
+				System.err.println("Unable to save index files at: " + path);
+			}
+		}
+		
+		if (parser.hasFlag("-mapped")) {
+			Path path = parser.getPath("-mapped", Path.of("index"));
+			try {
+				if (parser.hasFlag("-text") || parser.hasFlag("-html")) {
+					MappedInvertedIndex.write(index, path);
+				}
+				MappedInvertedIndex mapped = MappedInvertedIndex.open(path);
+				if (safeIndex != null) {
+					safeIndex = new SegmentedInvertedIndex(mapped);
+					index = safeIndex;
+				} else {
+					index = mapped;
+				}
+			} catch (IOException e) {
+				System.err.println("Unable to map index files at: " + path);
+			}
+		}
+		
+		int cache = parser.getInteger("-cache", -1);
+		long capacity = cache < 0 ? ResultCache.UNBOUNDED : cache;
+		if(safeIndex != null && workers != null) {
+			safeIndex.refresh();
+			query = new MultiThreadedQueryProcessor(safeIndex, workers, scorer, capacity);
+		} else {
+			if (!(index instanceof MappedInvertedIndex)) {
+				// the counts and index are written from the snapshot too, so the mutable index can be dropped
+				index = index.freeze();
+			}
+			query = new SingleThreadedQueryProcessor(index, scorer, capacity);
+		}
+		
 		if (parser.hasFlag("-query")) {
 			Path path = parser.getPath("-query");
 			boolean partial = parser.hasFlag("-partial");
+			int top = parser.getInteger("-top", Integer.MAX_VALUE);
 			try {
-				query.processQueries(path, partial);
+				query.processQueries(path, partial, top < 0 ? Integer.MAX_VALUE : top);
 			} 
 			catch (Exception e) {
 				System.err.println("Unable to process query file at: " + path + e);
@@ -135,5 +218,37 @@ public class Driver {
 				System.err.println("Could not write results in JSON format");
 			}
 		}
+		
+		if (parser.hasFlag("-lockstats") && safeIndex != null) {
+			try {
+				JsonWriter.writeObject(safeIndex.getLockStatistics(), parser.getPath("-lockstats", Path.of("lockstats.json")));
+			} catch (Exception e) {
+				System.err.println("Could not write lock statistics in JSON format");
+			}
+		}
+		
+		if (parser.hasFlag("-cachestats")) {
+			try {
+				JsonWriter.writeObject(query.getCacheStatistics(), parser.getPath("-cachestats", Path.of("cachestats.json")));
+			} catch (Exception e) {
+				System.err.println("Could not write cache statistics in JSON format");
+			}
+		}
+
+		if (parser.hasFlag("-stemstats")) {
+			try {
+				JsonWriter.writeObject(StemCache.ENGLISH.statistics(), parser.getPath("-stemstats", Path.of("stemstats.json")));
+			} catch (Exception e) {
+				System.err.println("Could not write stem statistics in JSON format");
+			}
+		}
+
+		if (parser.hasFlag("-buildstats") && utilization != null) {
+			try {
+				JsonWriter.writeObject(utilization, parser.getPath("-buildstats", Path.of("buildstats.json")));
+			} catch (Exception e) {
+				System.err.println("Could not write build statistics in JSON format");
+			}
+		}
 	}
 }
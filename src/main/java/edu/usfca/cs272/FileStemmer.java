@@ -1,7 +1,6 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -15,8 +14,6 @@ import java.util.TreeSet;
 import java.util.regex.Pattern;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM;
 
 /**
  * Utility class for parsing, cleaning, and stemming text and text files into
@@ -78,13 +75,15 @@ public class FileStemmer {
 	 * @param stemmer the stemmer to use
 	 * @param stems the collection to add stems
 	 *
-	 * @see #parse(String)
+	 * @see Tokenizer
 	 * @see Stemmer#stem(CharSequence)
 	 * @see Collection#add(Object)
 	 */
 	public static void addStems(String line, Stemmer stemmer, Collection<String> stems) {
-		for(String word : parse(line)) {
-			stems.add(stemmer.stem(word).toString());
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset(line);
+		while (tokenizer.next()) {
+			stems.add(stemmer.stem(tokenizer.word()).toString());
 		}
 	}
 
@@ -112,12 +111,11 @@ public class FileStemmer {
 	 * @param line the line of words to parse and stem
 	 * @return a list of cleaned and stemmed words in parsed order
 	 *
-	 * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#ENGLISH
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(String line) {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemCache.ENGLISH;
 		return listStems(line, stemmer);
 	}
 
@@ -129,14 +127,13 @@ public class FileStemmer {
 	 * @return a list of stems from file in parsed order
 	 * @throws IOException if unable to read or parse file
 	 *
-	 * @see SnowballStemmer
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#ENGLISH
 	 * @see StandardCharsets#UTF_8
 	 * @see #listStems(String, Stemmer)
 	 */
 	public static ArrayList<String> listStems(Path input) throws IOException {
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
+			Stemmer stemmer = StemCache.ENGLISH;
 			ArrayList<String> stemList = new ArrayList<>();
 			String line;
 			while((line = reader.readLine()) != null) {
@@ -170,12 +167,11 @@ public class FileStemmer {
 	 * @param line the line of words to parse and stem
 	 * @return a sorted set of unique cleaned and stemmed words
 	 *
-	 * @see SnowballStemmer#SnowballStemmer(ALGORITHM)
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#ENGLISH
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(String line) {
-		Stemmer stemmer = new SnowballStemmer(ENGLISH);
+		Stemmer stemmer = StemCache.ENGLISH;
 		return uniqueStems(line, stemmer);
 	}
 
@@ -187,14 +183,13 @@ public class FileStemmer {
 	 * @return a sorted set of unique cleaned and stemmed words from file
 	 * @throws IOException if unable to read or parse file
 	 *
-	 * @see SnowballStemmer
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#ENGLISH
 	 * @see StandardCharsets#UTF_8
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static TreeSet<String> uniqueStems(Path input) throws IOException {
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
+			Stemmer stemmer = StemCache.ENGLISH;
 			TreeSet<String> stemSet = new TreeSet<>();
 			String line;
 			while((line = reader.readLine()) != null) {
@@ -214,15 +209,14 @@ public class FileStemmer {
 	 *   a single line of the input file
 	 * @throws IOException if unable to read or parse file
 	 *
-	 * @see SnowballStemmer
-	 * @see ALGORITHM#ENGLISH
+	 * @see StemCache#ENGLISH
 	 * @see StandardCharsets#UTF_8
 	 * @see #uniqueStems(String, Stemmer)
 	 */
 	public static ArrayList<TreeSet<String>> listUniqueStems(Path input) throws IOException {
 		try (BufferedReader reader = Files.newBufferedReader(input, UTF_8)) {
 			ArrayList<TreeSet<String>> stemList = new ArrayList<>();
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
+			Stemmer stemmer = StemCache.ENGLISH;
 			String line;
 			while ((line = reader.readLine()) != null) {
 				stemList.add(uniqueStems(line, stemmer));
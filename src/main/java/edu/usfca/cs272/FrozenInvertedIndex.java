@@ -0,0 +1,552 @@
+package edu.usfca.cs272;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable, read-optimized snapshot of an InvertedIndex, compiled by
+ * {@link InvertedIndex#freeze()} once building is done. Words are stored in a
+ * {@link TermDictionary}, and the postings of every word are stored back to back
+ * in flat document and frequency arrays indexed by the word's ordinal, so searching
+ * needs no locks and expanding a prefix needs no word comparisons. Word positions,
+ * if they were retained, are kept compressed, see {@link CompressedPostingList}, in
+ * blocks of at most {@link #BLOCK_SIZE} bytes, so their total size is not limited to
+ * what one array can hold.
+ * The norm of every document and the weight of every word are computed once for
+ * each {@link Scorer} used to search the index, along with the largest score each
+ * word can add to a document, so searches for the k best results can skip
+ * documents, see {@link MaxScoreSearch}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class FrozenInvertedIndex extends InvertedIndex {
+
+	/** Largest size in bytes of a block of compressed postings, unless one word needs more */
+	public static final int BLOCK_SIZE = 1 << 30;
+
+	/** Sorted words in this index, where the ordinal of a word indexes its postings */
+	private final TermDictionary words;
+
+	/** Start of the postings of each word in the flat arrays, with one extra end entry */
+	private final int[] starts;
+
+	/** Document IDs of the postings of every word, back to back */
+	private final int[] documents;
+
+	/** Frequencies of the postings of every word, parallel to the documents array */
+	private final int[] frequencies;
+
+	/** Blocks of the compressed postings, including positions, of every word */
+	private final ByteBuffer[] blocks;
+
+	/** Block of the compressed postings of each word */
+	private final int[] blockOf;
+
+	/** Offset of the compressed postings of each word within its block */
+	private final int[] offsets;
+
+	/** Norms, weights and score bounds computed for each Scorer used to search this index */
+	private final ConcurrentHashMap<Scorer, Statistics> statistics;
+
+	/**
+	 * Constructor for a FrozenInvertedIndex that compiles the given words and postings.
+	 *
+	 * @param table the DocumentTable with the IDs and counts of the documents, which must not change
+	 * @param index the words and their postings to compile
+	 * @param positions whether the postings retain the positions of each word
+	 * @throws IllegalStateException if there are more postings than an array can hold
+	 */
+	FrozenInvertedIndex(DocumentTable table, Map<String, PostingList> index, boolean positions) {
+		super(table, positions);
+		int size = index.size();
+		long total = 0;
+		for (PostingList postings: index.values()) {
+			total += postings.size();
+		}
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("Unable to freeze an index with more than " + (Integer.MAX_VALUE - 8) + " postings: " + total);
+		}
+
+		words = new TermDictionary(index.keySet());
+		starts = new int[size + 1];
+		documents = new int[(int) total];
+		frequencies = new int[(int) total];
+		blockOf = new int[size];
+		offsets = new int[size];
+		List<ByteBuffer> sealed = new ArrayList<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		int word = 0;
+		int posting = 0;
+		for (var entry: index.entrySet()) {
+			PostingList postings = entry.getValue();
+			starts[word] = posting;
+			for (int i = 0; i < postings.size(); i++) {
+				documents[posting] = postings.document(i);
+				frequencies[posting] = postings.frequency(i);
+				posting++;
+			}
+			byte[] encoded = CompressedPostingList.encode(postings.iterator());
+			if (out.size() > 0 && (long) out.size() + encoded.length > BLOCK_SIZE) {
+				sealed.add(ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer());
+				out = new ByteArrayOutputStream();
+			}
+			blockOf[word] = sealed.size();
+			offsets[word] = out.size();
+			out.writeBytes(encoded);
+			word++;
+		}
+		starts[size] = posting;
+		sealed.add(ByteBuffer.wrap(out.toByteArray()).asReadOnlyBuffer());
+		blocks = sealed.toArray(ByteBuffer[]::new);
+		statistics = new ConcurrentHashMap<>();
+		statistics(Scorer.COUNT);
+	}
+
+	/**
+	 * Returns the norms, weights and score bounds of a Scorer, computing them the first time.
+	 *
+	 * @param scorer the Scorer
+	 * @return the Statistics of the Scorer
+	 */
+	private Statistics statistics(Scorer scorer) {
+		return statistics.computeIfAbsent(scorer, Statistics::new);
+	}
+
+	/**
+	 * Finds the index of a word in the term dictionary.
+	 *
+	 * @param word the word to find
+	 * @return the index of the word, or -1 if not found
+	 */
+	private int indexOf(String word) {
+		return words.ordinal(word);
+	}
+
+	/**
+	 * Finds the index of the posting of a document within the postings of a word.
+	 *
+	 * @param word the index of the word
+	 * @param document the document ID
+	 * @return the index of the posting in the flat arrays, or a negative number if not found
+	 */
+	private int postingOf(int word, int document) {
+		return Arrays.binarySearch(documents, starts[word], starts[word + 1], document);
+	}
+
+	/**
+	 * Returns the compressed postings of a word.
+	 *
+	 * @param word the index of the word
+	 * @return the compressed postings
+	 */
+	private CompressedPostingList compressed(int word) {
+		return new CompressedPostingList(blocks[blockOf[word]], offsets[word]);
+	}
+
+	/**
+	 * Decodes the positions of a word within a document.
+	 *
+	 * @param word the index of the word
+	 * @param posting the index of the posting in the flat arrays
+	 * @return the positions of the word within the document
+	 */
+	private PositionList decodePositions(int word, int posting) {
+		PostingIterator iterator = compressed(word).iterator();
+		iterator.advance(documents[posting]);
+		PositionList positions = new PositionList();
+		for (int i = 0; i < frequencies[posting]; i++) {
+			positions.add(iterator.nextPosition());
+		}
+		return positions;
+	}
+
+	@Override
+	protected PostingIterator postings(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? new Cursor(index) : null;
+	}
+
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? compressed(index) : null;
+	}
+
+	@Override
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		int[] range = words.range(prefix);
+		List<PostingIterator> postings = new ArrayList<>(range[1] - range[0]);
+		for (int i = range[0]; i < range[1]; i++) {
+			postings.add(new Cursor(i));
+		}
+		return postings;
+	}
+
+	@Override
+	protected double weight(Scorer scorer, PostingIterator postings) {
+		if (postings instanceof Cursor cursor) {
+			return statistics(scorer).weights[cursor.word];
+		}
+		return super.weight(scorer, postings);
+	}
+
+	@Override
+	protected double norm(Scorer scorer, int document) {
+		return statistics(scorer).norms[document];
+	}
+
+	@Override
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
+		if (k >= getDocuments().size()) {
+			return super.exactSearch(queries, k, scorer);
+		}
+		List<Integer> found = new ArrayList<>();
+		for (String query: queries) {
+			int index = indexOf(query);
+			if (index >= 0) {
+				found.add(index);
+			}
+		}
+		return boundedSearch(found, k, scorer);
+	}
+
+	@Override
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
+		if (k >= getDocuments().size()) {
+			return super.partialSearch(queries, k, scorer);
+		}
+		List<Integer> found = new ArrayList<>();
+		for (String query: queries) {
+			int[] range = words.range(query);
+			for (int i = range[0]; i < range[1]; i++) {
+				found.add(i);
+			}
+		}
+		return boundedSearch(found, k, scorer);
+	}
+
+	/**
+	 * Finds the k best results for the postings of some words, see {@link MaxScoreSearch}.
+	 * A word may be listed more than once, in which case it counts that many times.
+	 *
+	 * @param found the indexes of the words
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData in sorted order
+	 */
+	private List<QueryMetaData> boundedSearch(List<Integer> found, int k, Scorer scorer) {
+		Statistics scores = statistics(scorer);
+		List<PostingIterator> postings = new ArrayList<>(found.size());
+		double[] weights = new double[found.size()];
+		double[] bounds = new double[found.size()];
+		for (int i = 0; i < found.size(); i++) {
+			postings.add(new Cursor(found.get(i)));
+			weights[i] = scores.weights[found.get(i)];
+			bounds[i] = scores.bounds[found.get(i)];
+		}
+		MaxScoreSearch search = new MaxScoreSearch(getDocuments(), scorer, scores.norms, postings, weights, bounds);
+		search.search(k);
+
+		List<QueryMetaData> results = new ArrayList<>(search.size);
+		for (int i = 0; i < search.size; i++) {
+			results.add(createResult(search.documents[i], search.frequencies[i], search.sums[i], scorer));
+		}
+		return topResults(results, k);
+	}
+
+	@Override
+	protected List<String> prefixWords(String prefix) {
+		int[] range = words.range(prefix);
+		return words.words(range[0], range[1]);
+	}
+
+	@Override
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		TreeMap<String, PositionList> locations = new TreeMap<>();
+		int index = indexOf(word);
+		if (index >= 0) {
+			PostingIterator iterator = compressed(index).iterator();
+			for (int document = iterator.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = iterator.next()) {
+				PositionList positions = new PositionList();
+				for (int i = 0; i < iterator.frequency(); i++) {
+					positions.add(iterator.nextPosition());
+				}
+				locations.put(getLocation(document), positions);
+			}
+		}
+		return locations;
+	}
+
+	/**
+	 * Returns the location of a document ID in this index.
+	 *
+	 * @param document the document ID
+	 * @return the file path or URL of the document
+	 */
+	private String getLocation(int document) {
+		return getDocuments().location(document);
+	}
+
+	@Override
+	public FrozenInvertedIndex freeze() {
+		return this;
+	}
+
+	/**
+	 * Not supported, a FrozenInvertedIndex cannot be modified.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void add(String stem, String locations, int positions) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified");
+	}
+
+	/**
+	 * Not supported, a FrozenInvertedIndex cannot be modified.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addAll(InvertedIndex index) {
+		throw new UnsupportedOperationException("A frozen index cannot be modified");
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<String> iterator() {
+				return words.words(0, words.size()).iterator();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String word && indexOf(word) >= 0;
+			}
+
+			@Override
+			public int size() {
+				return words.size();
+			}
+		};
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		int index = indexOf(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> paths = new TreeSet<>();
+		for (int i = starts[index]; i < starts[index + 1]; i++) {
+			paths.add(getLocation(documents[i]));
+		}
+		return Collections.unmodifiableSet(paths);
+	}
+
+	@Override
+	public Collection<Integer> getPositions(String word, String locations) {
+		int index = indexOf(word);
+		int document = getDocuments().get(locations);
+		if (index < 0 || document < 0 || !hasPositions()) {
+			return Collections.emptyList();
+		}
+		int posting = postingOf(index, document);
+		return posting >= 0 ? Collections.unmodifiableCollection(decodePositions(index, posting)) : Collections.emptyList();
+	}
+
+	/**
+	 * Returns the total number of postings in this index, summed over all of its words.
+	 *
+	 * @return the number of postings in this index
+	 */
+	public int postingsSize() {
+		return documents.length;
+	}
+
+	@Override
+	public int indexSize() {
+		return words.size();
+	}
+
+	@Override
+	public int indexWordSize(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? starts[index + 1] - starts[index] : 0;
+	}
+
+	@Override
+	public int indexPositionsSize(String word, String locations) {
+		int index = indexOf(word);
+		int document = getDocuments().get(locations);
+		if (index < 0 || document < 0) {
+			return 0;
+		}
+		int posting = postingOf(index, document);
+		return posting >= 0 ? frequencies[posting] : 0;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return indexOf(word) >= 0;
+	}
+
+	@Override
+	public boolean hasStemFile(String word, String locations) {
+		int index = indexOf(word);
+		int document = getDocuments().get(locations);
+		return index >= 0 && document >= 0 && postingOf(index, document) >= 0;
+	}
+
+	@Override
+	public boolean hasStemFilePosition(String word, String locations, int position) {
+		return getPositions(word, locations).contains(position);
+	}
+
+	/**
+	 * The norm of every document, the weight of every word, and the largest score each
+	 * word adds to a document, as given by a Scorer.
+	 */
+	private class Statistics {
+
+		/** Norm of each document, indexed by document ID */
+		private final double[] norms;
+
+		/** Weight of each word, indexed by the ordinal of the word */
+		private final double[] weights;
+
+		/** Largest score over the postings of each word, indexed by the ordinal of the word */
+		private final double[] bounds;
+
+		/**
+		 * Computes the Statistics of a Scorer
+		 *
+		 * @param scorer the Scorer
+		 */
+		public Statistics(Scorer scorer) {
+			DocumentTable table = getDocuments();
+			int counted = table.countsSize();
+			double average = counted > 0 ? (double) table.totalCount() / counted : 1;
+			norms = new double[table.size()];
+			for (int id = 0; id < norms.length; id++) {
+				if (table.hasCount(id)) {
+					norms[id] = scorer.norm(table.getCount(id), average);
+				}
+			}
+
+			weights = new double[words.size()];
+			bounds = new double[words.size()];
+			for (int word = 0; word < weights.length; word++) {
+				weights[word] = scorer.weight(starts[word + 1] - starts[word], counted);
+				for (int i = starts[word]; i < starts[word + 1]; i++) {
+					bounds[word] = Math.max(bounds[word], scorer.score(frequencies[i], weights[word], norms[documents[i]]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterator over the postings of a word in the flat arrays. Positions are decoded
+	 * from the compressed postings only if they are asked for.
+	 */
+	private class Cursor implements PostingIterator {
+
+		/** Index of the word */
+		private final int word;
+
+		/** Index just past the last posting of the word */
+		private final int end;
+
+		/** Index of the current posting in the flat arrays */
+		private int index;
+
+		/** Iterator over the compressed postings, created when positions are first read */
+		private PostingIterator positions;
+
+		/**
+		 * Constructor for a Cursor positioned before the first posting of a word.
+		 *
+		 * @param word the index of the word
+		 */
+		public Cursor(int word) {
+			this.word = word;
+			this.end = starts[word + 1];
+			this.index = starts[word] - 1;
+			this.positions = null;
+		}
+
+		@Override
+		public int next() {
+			if (index < end) {
+				index++;
+			}
+			return document();
+		}
+
+		@Override
+		public int advance(int target) {
+			if (index >= end || (index >= starts[word] && documents[index] >= target)) {
+				return document();
+			}
+			int low = index + 1;
+			int step = 1;
+			while (low + step < end && documents[low + step] < target) {
+				low += step;
+				step <<= 1;
+			}
+			int found = Arrays.binarySearch(documents, low, Math.min(low + step + 1, end), target);
+			index = found >= 0 ? found : -found - 1;
+			return document();
+		}
+
+		@Override
+		public int document() {
+			if (index < starts[word]) {
+				return -1;
+			}
+			return index < end ? documents[index] : NO_MORE_DOCUMENTS;
+		}
+
+		@Override
+		public int frequency() {
+			return frequencies[index];
+		}
+
+		@Override
+		public int nextPosition() {
+			if (positions == null) {
+				positions = compressed(word).iterator();
+			}
+			if (positions.document() != documents[index]) {
+				positions.advance(documents[index]);
+			}
+			return positions.nextPosition();
+		}
+
+		@Override
+		public boolean hasPositions() {
+			return FrozenInvertedIndex.this.hasPositions();
+		}
+
+		@Override
+		public int size() {
+			return end - starts[word];
+		}
+	}
+}
@@ -2,15 +2,21 @@ package edu.usfca.cs272;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Function;
 
 /**
  * Class responsible for storing and maintaining an InvertedIndex data structure
@@ -23,20 +29,71 @@ import java.util.TreeSet;
 public class InvertedIndex {
 	
 	/** InvertedIndex Data Structure which is a Map with the key being a word and the value being
-	 * another Map. The nested map has a file paths as a key and a list of numbers as value, with 
-	 * each number being a position in the file where the word occurs. 
+	 * a PostingList. The PostingList holds the IDs of the documents the word occurs in, and for each
+	 * document a compact PositionList of where in the document the word occurs. 
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final TreeMap<String, PostingList> index;
 	
-	/** Counts Data Structure which is a simple TreeMap containing file paths as a key
-	 * and the value being the number of stems the file contains
+	/** Documents Data Structure which assigns each file path an integer ID, and stores the
+	 * number of stems each file contains (the counts) by that ID
 	 */
-	private final TreeMap<String, Integer> counts;
+	private final DocumentTable documents;
+	
+	/** Number of changes made to this index, see {@link #generation()} */
+	private long generation;
+	
+	/** Whether the positions of each word are retained, or only how often it occurs in each document */
+	private final boolean positions;
+	
+	/** Merged postings of the prefixes searched most recently by partial searches */
+	private final PrefixCache prefixes;
 		
 	/** Constructor for InvertedIndex class */
 	public InvertedIndex() {
-		index = new TreeMap<>();
-		counts = new TreeMap<>();
+		this(true);
+	}
+	
+	/**
+	 * Constructor for InvertedIndex class that may only retain how often each word occurs in each
+	 * document, which is all searching needs, instead of every position of the word
+	 * 
+	 * @param positions whether to retain the positions of each word
+	 */
+	public InvertedIndex(boolean positions) {
+		this(new DocumentTable(), positions);
+	}
+	
+	/**
+	 * Constructor for InvertedIndex class that uses a given DocumentTable for its counts
+	 * 
+	 * @param documents the DocumentTable to use
+	 */
+	protected InvertedIndex(DocumentTable documents) {
+		this(documents, true);
+	}
+	
+	/**
+	 * Constructor for InvertedIndex class that uses a given DocumentTable for its counts
+	 * 
+	 * @param documents the DocumentTable to use
+	 * @param positions whether to retain the positions of each word
+	 */
+	protected InvertedIndex(DocumentTable documents, boolean positions) {
+		this.index = new TreeMap<>();
+		this.documents = documents;
+		this.positions = positions;
+		this.prefixes = new PrefixCache();
+	}
+	
+	/**
+	 * Returns whether this InvertedIndex retains the positions of each word, or only how often it
+	 * occurs in each document. Without positions, {@link #getPositions(String, String)} is always
+	 * empty and the index is written with frequencies instead of positions.
+	 * 
+	 * @return true if positions are retained
+	 */
+	public boolean hasPositions() {
+		return positions;
 	}
 	
 	/**
@@ -47,7 +104,98 @@ public class InvertedIndex {
 	 * @return List of QueryMetaData objects which is the result of the given query line
 	 */
 	public List<QueryMetaData> search(Set<String> queries, boolean partial) {
-		return partial ? partialSearch(queries) : exactSearch(queries);
+		return search(queries, partial, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Same as {@link #search(Set, boolean)}, but only returns the k best results, in sorted order.
+	 * 
+	 * @param queries Set of queries to perform a partial or exact Search
+	 * @param partial Boolean if to perform a partial search
+	 * @param k the maximum number of results to return
+	 * @return List of at most k QueryMetaData objects which is the best results of the given query line
+	 */
+	public List<QueryMetaData> search(Set<String> queries, boolean partial, int k) {
+		return search(queries, partial, k, Scorer.COUNT);
+	}
+	
+	/**
+	 * Same as {@link #search(Set, boolean, int)}, but ranks the results with a given Scorer.
+	 * 
+	 * @param queries Set of queries to perform a partial or exact Search
+	 * @param partial Boolean if to perform a partial search
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData objects which is the best results of the given query line
+	 */
+	public List<QueryMetaData> search(Set<String> queries, boolean partial, int k, Scorer scorer) {
+		return partial ? partialSearch(queries, k, scorer) : exactSearch(queries, k, scorer);
+	}
+	
+	/**
+	 * Searches for a parsed query line, which may contain phrases, proximity clauses or boolean
+	 * operators. If the query does not restrict which documents match, this is the usual search
+	 * for its words, see {@link #search(Set, boolean, int, Scorer)}. Otherwise only the documents
+	 * that match are visited, see {@link SearchQuery#matches(InvertedIndex, boolean)}, and each is ranked by
+	 * the words of the query, see {@link #rank(PostingIterator, Set, boolean, int, Scorer)}.
+	 * 
+	 * @param query the parsed query line
+	 * @param partial Boolean if to perform a partial search for the ranking words
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData objects which is the best results of the given query line
+	 */
+	public List<QueryMetaData> search(SearchQuery query, boolean partial, int k, Scorer scorer) {
+		PostingIterator matches = query.matches(this, partial);
+		if (matches == null) {
+			return search(query.getWords(), partial, k, scorer);
+		}
+		return rank(matches, query.getWords(), partial, k, scorer);
+	}
+	
+	/**
+	 * Ranks the documents of an iterator by a Set of words. Each document is scored by the words
+	 * it contains, found by advancing the postings of each word to it, and documents that contain
+	 * none of the words are still results, with a score of zero.
+	 * 
+	 * @param matches an iterator over the IDs of the documents to rank
+	 * @param words the words to rank the documents by
+	 * @param partial Boolean if to rank by every word starting with one of the words
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData objects which is the best of the documents
+	 */
+	protected List<QueryMetaData> rank(PostingIterator matches, Set<String> words, boolean partial, int k, Scorer scorer) {
+		List<PostingIterator> ranking = new ArrayList<>();
+		for (String word: words) {
+			if (partial) {
+				ranking.addAll(prefixPostings(word));
+			} else {
+				PostingIterator postings = postings(word);
+				if (postings != null) {
+					ranking.add(postings);
+				}
+			}
+		}
+		double[] weights = new double[ranking.size()];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = weight(scorer, ranking.get(i));
+		}
+		
+		List<QueryMetaData> results = new ArrayList<>();
+		int document = matches.next();
+		while (document != PostingIterator.NO_MORE_DOCUMENTS) {
+			QueryMetaData queryData = new QueryMetaData(document, scorer, norm(scorer, document));
+			for (int i = 0; i < weights.length; i++) {
+				PostingIterator postings = ranking.get(i);
+				if (postings.advance(document) == document) {
+					queryData.update(postings.frequency(), weights[i]);
+				}
+			}
+			results.add(queryData);
+			document = matches.next();
+		}
+		return topResults(results, k);
 	}
 		
 	/**
@@ -60,16 +208,39 @@ public class InvertedIndex {
 	 * @return List of QueryMetaData which is the generated results from one query line.
 	 */
 	public List<QueryMetaData> exactSearch(Set<String> queries){
+		return exactSearch(queries, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Same as {@link #exactSearch(Set)}, but only returns the k best results, see {@link #topResults(List, int)}.
+	 * 
+	 * @param queries Set which contains unique stems from a given query line
+	 * @param k the maximum number of results to return
+	 * @return List of at most k QueryMetaData which is the best results from one query line.
+	 */
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k) {
+		return exactSearch(queries, k, Scorer.COUNT);
+	}
+	
+	/**
+	 * Same as {@link #exactSearch(Set, int)}, but ranks the results with a given Scorer.
+	 * 
+	 * @param queries Set which contains unique stems from a given query line
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData which is the best results from one query line.
+	 */
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
 		List<QueryMetaData> results = new ArrayList<>();
-		HashMap<String, QueryMetaData> lookup = new HashMap<>();
+		QueryMetaData[] lookup = new QueryMetaData[documents.size()];
 
 		for (String query: queries) {
-			if (index.containsKey(query)) {
-				buildResults(query, lookup, results);
+			PostingIterator postings = postings(query);
+			if (postings != null) {
+				buildResults(postings, scorer, lookup, results);
 			}
 		}
-		Collections.sort(results);
-		return results;
+		return topResults(results, k);
 	}
 	
 	/**
@@ -81,38 +252,230 @@ public class InvertedIndex {
 	 * @return TreeSet of QueryMetaData which is the generated results from one query line.
 	 */
 	public List<QueryMetaData> partialSearch(Set<String> queries) {
+		return partialSearch(queries, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Same as {@link #partialSearch(Set)}, but only returns the k best results, see {@link #topResults(List, int)}.
+	 * 
+	 * @param queries Set which contains unique stems from a given query line
+	 * @param k the maximum number of results to return
+	 * @return List of at most k QueryMetaData which is the best results from one query line.
+	 */
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k) {
+		return partialSearch(queries, k, Scorer.COUNT);
+	}
+	
+	/**
+	 * Same as {@link #partialSearch(Set, int)}, but ranks the results with a given Scorer.
+	 * 
+	 * @param queries Set which contains unique stems from a given query line
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData which is the best results from one query line.
+	 */
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
 		List<QueryMetaData> results = new ArrayList<>();
-		HashMap<String, QueryMetaData> lookup = new HashMap<>();
+		QueryMetaData[] lookup = new QueryMetaData[documents.size()];
+		// the counts change the norms and weights even while the words do not, as in a segment being filled
+		long version = generation + documents.totalCount();
 
 		for (String query: queries) {
-			for (String word: index.tailMap(query).keySet()) {
-				if (word.startsWith(query)) {
-					buildResults(word, lookup, results);
-				} else {
-					break;
+			PrefixCache.Postings merged = prefixes.get(query, scorer, version);
+			if (merged == null) {
+				List<PostingIterator> found = prefixPostings(query);
+				if (found.size() < PrefixCache.MIN_WORDS) {
+					for (PostingIterator postings: found) {
+						buildResults(postings, scorer, lookup, results);
+					}
+					continue;
 				}
+				merged = mergePostings(found, scorer);
+				prefixes.put(query, scorer, version, merged);
+			}
+			for (int i = 0; i < merged.size(); i++) {
+				int document = merged.documents[i];
+				if (lookup[document] == null) {
+					QueryMetaData queryData = new QueryMetaData(document, scorer, norm(scorer, document));
+					results.add(queryData);
+					lookup[document] = queryData;
+				}
+				lookup[document].add(merged.frequencies[i], merged.sums[i]);
+			}
+		}
+		return topResults(results, k);
+	}
+	
+	/**
+	 * Merges the postings of the words starting with a prefix into the total frequency of the words
+	 * in each document and the sum of their scores, see {@link PrefixCache}. The postings are merged
+	 * in document ID order with a heap, so only the documents containing one of the words are
+	 * allocated for, instead of every document of the index.
+	 * 
+	 * @param found PostingIterator over the postings of each word starting with the prefix
+	 * @param scorer the Scorer to score the words with
+	 * @return the merged postings
+	 */
+	private PrefixCache.Postings mergePostings(List<PostingIterator> found, Scorer scorer) {
+		double[] weights = new double[found.size()];
+		// ties are broken by word, so the scores of a document are always added in the order of the words
+		PriorityQueue<Integer> heap = new PriorityQueue<>(found.size(),
+				Comparator.comparingInt((Integer i) -> found.get(i).document()).thenComparingInt(i -> i));
+		for (int i = 0; i < found.size(); i++) {
+			weights[i] = weight(scorer, found.get(i));
+			if (found.get(i).next() != PostingIterator.NO_MORE_DOCUMENTS) {
+				heap.add(i);
+			}
+		}
+		
+		int[] mergedDocuments = new int[16];
+		int[] mergedFrequencies = new int[16];
+		double[] mergedSums = new double[16];
+		int size = 0;
+		double norm = 0;
+		while (!heap.isEmpty()) {
+			int i = heap.poll();
+			PostingIterator postings = found.get(i);
+			int document = postings.document();
+			if (size == 0 || mergedDocuments[size - 1] != document) {
+				if (size == mergedDocuments.length) {
+					mergedDocuments = Arrays.copyOf(mergedDocuments, size * 2);
+					mergedFrequencies = Arrays.copyOf(mergedFrequencies, size * 2);
+					mergedSums = Arrays.copyOf(mergedSums, size * 2);
+				}
+				mergedDocuments[size++] = document;
+				norm = norm(scorer, document);
+			}
+			mergedFrequencies[size - 1] += postings.frequency();
+			mergedSums[size - 1] += scorer.score(postings.frequency(), weights[i], norm);
+			if (postings.next() != PostingIterator.NO_MORE_DOCUMENTS) {
+				heap.add(i);
+			}
+		}
+		return new PrefixCache.Postings(Arrays.copyOf(mergedDocuments, size),
+				Arrays.copyOf(mergedFrequencies, size), Arrays.copyOf(mergedSums, size));
+	}
+	
+	/**
+	 * Sorts the results of a search and keeps the k best of them. When there are more than k results,
+	 * only the best k are kept in a bounded heap whose head is the worst result kept so far, so the
+	 * results are never sorted as a whole. Every result must have all of its query words counted,
+	 * since its final score is computed here, before it is offered to the heap.
+	 * 
+	 * @param results List containing all the generated QueryMetaData objects, which may be reordered
+	 * @param k the maximum number of results to return
+	 * @return List of at most k QueryMetaData objects in sorted order
+	 */
+	protected static List<QueryMetaData> topResults(List<QueryMetaData> results, int k) {
+		for (QueryMetaData result: results) {
+			result.finish();
+		}
+		if (results.size() <= k) {
+			Collections.sort(results);
+			return results;
+		}
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+		PriorityQueue<QueryMetaData> heap = new PriorityQueue<>(k + 1, Collections.reverseOrder());
+		for (QueryMetaData result: results) {
+			if (heap.size() < k) {
+				heap.add(result);
+			} else if (result.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(result);
 			}
 		}
-		Collections.sort(results);
-		return results;
+		List<QueryMetaData> top = new ArrayList<>(heap);
+		Collections.sort(top);
+		return top;
 	}
 	
 	/**
-	 * Builds a given results data structure by searching a given query in the InvertedIndex, and iterating over all the paths
-	 * that index returns. Also maintains a lookup table for easier access to already seen QueryMetaData objects.
+	 * Builds a given results data structure from the postings of a word found in the InvertedIndex, iterating
+	 * over all the documents in the postings. Also maintains a lookup table, indexed by document ID, for easier
+	 * access to already seen QueryMetaData objects.
 	 * 
-	 * @param word String word to search for in the InvertedIndex
-	 * @param lookup HashMap which is the lookup map to store already seen QueryMetaData objects
+	 * @param postings PostingIterator over the postings of the word found in the InvertedIndex
+	 * @param scorer the Scorer to rank the results with
+	 * @param lookup Array which is the lookup table to store already seen QueryMetaData objects
 	 * @param results List containing all the generated QueryMetaData objects.
 	 */
-	private void buildResults(String word, HashMap<String, QueryMetaData> lookup, List<QueryMetaData> results) {
-		for (String path: index.get(word).keySet()) {
-			if (!lookup.containsKey(path)) {
-				QueryMetaData queryData = new QueryMetaData(path);
+	private void buildResults(PostingIterator postings, Scorer scorer, QueryMetaData[] lookup, List<QueryMetaData> results) {
+		double weight = weight(scorer, postings);
+		for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+			if (lookup[document] == null) {
+				QueryMetaData queryData = new QueryMetaData(document, scorer, norm(scorer, document));
 				results.add(queryData);
-				lookup.put(path, queryData);
+				lookup[document] = queryData;
 			}
-			lookup.get(path).update(word);
+			lookup[document].update(postings.frequency(), weight);
+		}
+	}
+	
+	/**
+	 * Returns the weight a Scorer gives to a word, see {@link Scorer#weight(int, int)}. Weights
+	 * are computed once for the current counts, see {@link DocumentTable#norms(Scorer)}.
+	 * 
+	 * @param scorer the Scorer to rank the results with
+	 * @param postings PostingIterator over the postings of the word, which is not moved
+	 * @return the weight of the word
+	 */
+	protected double weight(Scorer scorer, PostingIterator postings) {
+		return documents.norms(scorer).weight(postings.size());
+	}
+	
+	/**
+	 * Returns the norm a Scorer gives to a document, see {@link Scorer#norm(int, double)}. Norms
+	 * are computed once for the current counts, see {@link DocumentTable#norms(Scorer)}.
+	 * 
+	 * @param scorer the Scorer to rank the results with
+	 * @param document the document ID
+	 * @return the norm of the document
+	 */
+	protected double norm(Scorer scorer, int document) {
+		return documents.norms(scorer).norm(document);
+	}
+	
+	/**
+	 * Creates a result for a document whose query words were counted and scored outside of the
+	 * usual search methods, for example by a {@link MaxScoreSearch}.
+	 * 
+	 * @param document the document ID
+	 * @param count the total number of times the query words occur in the document
+	 * @param sum the sum of the scores of the query words in the document
+	 * @param scorer the Scorer the words were scored with
+	 * @return the QueryMetaData of the document
+	 */
+	protected QueryMetaData createResult(int document, int count, double sum, Scorer scorer) {
+		QueryMetaData queryData = new QueryMetaData(document, scorer, 0);
+		queryData.count = count;
+		queryData.sum = sum;
+		return queryData;
+	}
+	
+	/**
+	 * Adds document frequencies gathered outside of the usual search methods, for example from the shards
+	 * of an index, to the results of a search. A document may appear any number of times, and its
+	 * frequencies are added together.
+	 * 
+	 * @param documents Array of document IDs
+	 * @param frequencies Array of the number of query word occurrences in each document, parallel to documents
+	 * @param weights Array of the weight of the query word of each entry, see {@link #weight(Scorer, PostingIterator)}
+	 * @param size the number of entries of the arrays to add
+	 * @param scorer the Scorer to rank the results with
+	 * @param lookup Array which is the lookup table to store already seen QueryMetaData objects
+	 * @param results List containing all the generated QueryMetaData objects.
+	 */
+	protected void addResults(int[] documents, int[] frequencies, double[] weights, int size, Scorer scorer, QueryMetaData[] lookup, List<QueryMetaData> results) {
+		for (int i = 0; i < size; i++) {
+			int document = documents[i];
+			if (lookup[document] == null) {
+				QueryMetaData queryData = new QueryMetaData(document, scorer, norm(scorer, document));
+				results.add(queryData);
+				lookup[document] = queryData;
+			}
+			lookup[document].update(frequencies[i], weights[i]);
 		}
 	}
 	
@@ -127,11 +490,58 @@ public class InvertedIndex {
 	 * @param positions the Index of where the word can be found in the file
 	 */
 	public void add(String stem, String locations, int positions) {
-		index.putIfAbsent(stem, new TreeMap<>());
-		index.get(stem).putIfAbsent(locations, new TreeSet<>());
-		boolean modified = index.get(stem).get(locations).add(positions);
+		int document = documents.add(locations);
+		boolean modified = index.computeIfAbsent(stem, word -> new PostingList(this.positions)).add(document, positions);
 		if (modified) {
-			counts.put(locations, counts.getOrDefault(locations, 0) + 1);
+			documents.addCount(document, 1);
+		}
+		generation++;
+	}
+	
+	/**
+	 * Adds the postings of a word stem, including all their positions, to this InvertedIndex. The
+	 * document IDs of the postings must already belong to this InvertedIndex's DocumentTable, and
+	 * the counts are not changed, since they were counted when the documents were first added.
+	 * 
+	 * @param word the Word stem the postings belong to
+	 * @param postings PostingIterator over the postings to add
+	 */
+	protected void addPostings(String word, PostingIterator postings) {
+		index.computeIfAbsent(word, stem -> new PostingList(positions)).addAll(postings, null);
+		generation++;
+	}
+	
+	/**
+	 * Adds the postings of a word stem in another InvertedIndex to this InvertedIndex, translating the
+	 * document IDs of the other InvertedIndex with a mapping. The counts are not changed.
+	 * 
+	 * @param other the InvertedIndex to copy the postings from
+	 * @param word the Word stem whose postings are added
+	 * @param mapping the ID in this InvertedIndex for each document ID of the other InvertedIndex
+	 */
+	protected void addPostings(InvertedIndex other, String word, int[] mapping) {
+		copyPostings(other, word, index.computeIfAbsent(word, stem -> new PostingList(positions)), mapping);
+		generation++;
+	}
+	
+	/**
+	 * Copies the postings of a word stem in an InvertedIndex to a PostingList, translating the document
+	 * IDs with a mapping. The position lists of a plain InvertedIndex are shared rather than copied.
+	 * 
+	 * @param other the InvertedIndex to copy the postings from
+	 * @param word the Word stem whose postings are copied
+	 * @param target the PostingList to copy the postings to
+	 * @param mapping the ID in the target for each document ID of the other InvertedIndex
+	 */
+	protected static void copyPostings(InvertedIndex other, String word, PostingList target, int[] mapping) {
+		PostingList shared = other.index.get(word);
+		if (shared != null) {
+			target.addAll(shared, mapping);
+			return;
+		}
+		PostingIterator postings = other.getPostings(word);
+		if (postings != null) {
+			target.addAll(postings, mapping);
 		}
 	}
 	
@@ -141,33 +551,27 @@ public class InvertedIndex {
 	 * @param indexSecond the InvertedIndex data structure to add to this one
 	 */
 	public void addAll(InvertedIndex indexSecond) { 
-		for (var entry: indexSecond.index.entrySet()) {
-			String word = entry.getKey();
-			var otherLocations = entry.getValue();
-			var thisLocations = this.index.get(word);
-			
-			if (thisLocations == null) {
-				this.index.put(word, otherLocations);
-			} else {
-				for (var positions: otherLocations.entrySet()) {
-					if (!thisLocations.containsKey(positions.getKey())) {
-						this.index.get(word).put(positions.getKey(), positions.getValue());
-					} else {
-						thisLocations.get(positions.getKey()).addAll(positions.getValue());
-					}
-				}
-			}
+		DocumentTable other = indexSecond.getDocuments();
+		int[] mapping = new int[other.size()];
+		for (int i = 0; i < mapping.length; i++) {
+			mapping[i] = this.documents.add(other.location(i));
 		}
 		
-		for (var entry : indexSecond.counts.entrySet()) {
-			var path = entry.getKey();
-			var size = entry.getValue();
-			if (!this.counts.containsKey(path)) {
-				this.counts.put(path, size);
-			} else {
-				this.counts.put(path, this.counts.get(path) + size);
+		if (indexSecond.index.isEmpty()) {
+			// read-only indexes keep their postings outside of the map, so copy them through their iterators
+			for (String word: indexSecond.getWords()) {
+				addPostings(indexSecond, word, mapping);
 			}
+		} else {
+			for (var entry: indexSecond.index.entrySet()) {
+				this.index.computeIfAbsent(entry.getKey(), word -> new PostingList(positions)).addAll(entry.getValue(), mapping);
+			}
+		}
+		
+		for (int i = 0; i < mapping.length; i++) {
+			this.documents.addCount(mapping[i], other.getCount(i));
 		}
+		generation++;
 	}
 		
 	/**
@@ -176,7 +580,7 @@ public class InvertedIndex {
 	 * @return Unmodifiable Collection of Counts Map.
 	 */
 	public Map<String, Number> getCounts(){
-		return Collections.unmodifiableMap(counts);
+		return Collections.unmodifiableMap(documents.toCounts());
 	}
 	
 	/**
@@ -186,7 +590,8 @@ public class InvertedIndex {
 	 * @return Integer the word count in given file
 	 */
 	public Integer getCount(String locations) {
-		return counts.get(locations);
+		int document = documents.get(locations);
+		return documents.hasCount(document) ? documents.getCount(document) : null;
 	}
 			
 	/**
@@ -205,7 +610,15 @@ public class InvertedIndex {
 	 * @return a Unmodifiable Set containing the file paths where the word stem is found
 	 */
 	public Set<String> getPaths(String word) {
-		return hasWord(word) ? Collections.unmodifiableSet(index.get(word).keySet()) : Collections.emptySet();
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> paths = new TreeSet<>();
+		for (int i = 0; i < postings.size(); i++) {
+			paths.add(documents.location(postings.document(i)));
+		}
+		return Collections.unmodifiableSet(paths);
 	}
 	
 	/**
@@ -217,7 +630,148 @@ public class InvertedIndex {
 	 * @return a Unmodifiable Set containing the word positions in the file path
 	 */
 	public Collection<Integer> getPositions(String word, String locations) {
-		return hasStemFile(word, locations) ? Collections.unmodifiableCollection(index.get(word).get(locations)) : Collections.emptyList();
+		PositionList positions = find(word, locations);
+		return positions != null ? Collections.unmodifiableCollection(positions) : Collections.emptyList();
+	}
+	
+	/**
+	 * Finds the PositionList of a given word within a given file path
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @param locations the Path where a word is found
+	 * @return the PositionList of the word in the file path, or null if not found
+	 */
+	private PositionList find(String word, String locations) {
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		return postings != null && document >= 0 ? postings.get(document) : null;
+	}
+		
+	/**
+	 * Takes a word stem and returns an iterator over its postings, in increasing document ID order
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @return a PostingIterator over the documents containing the word, or null if the word is not found
+	 */
+	public PostingIterator getPostings(String word) {
+		return postings(word);
+	}
+	
+	/**
+	 * Takes a word stem and returns its postings in compressed form, see {@link CompressedPostingList}
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @return the CompressedPostingList of the word, or null if the word is not found
+	 */
+	public CompressedPostingList getCompressedPostings(String word) {
+		PostingList postings = index.get(word);
+		return postings != null ? postings.compress() : null;
+	}
+	
+	/**
+	 * Takes a prefix and returns iterators over the postings of every word stem that starts with it,
+	 * in sorted word order
+	 * 
+	 * @param prefix the Prefix to search within the InvertedIndex
+	 * @return a List of PostingIterator objects, one for each word starting with the prefix
+	 */
+	public List<PostingIterator> getPrefixPostings(String prefix) {
+		return prefixPostings(prefix);
+	}
+	
+	/**
+	 * Looks up the postings of a word stem for searching, see {@link #getPostings(String)}
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @return a PostingIterator over the documents containing the word, or null if the word is not found
+	 */
+	protected PostingIterator postings(String word) {
+		PostingList postings = index.get(word);
+		return postings != null ? postings.iterator() : null;
+	}
+	
+	/**
+	 * Looks up the postings of every word stem starting with a prefix for searching, see
+	 * {@link #getPrefixPostings(String)}
+	 * 
+	 * @param prefix the Prefix to search within the InvertedIndex
+	 * @return a List of PostingIterator objects, one for each word starting with the prefix
+	 */
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		List<PostingIterator> postings = new ArrayList<>();
+		for (var entry: index.tailMap(prefix).entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			postings.add(entry.getValue().iterator());
+		}
+		return postings;
+	}
+	
+	/**
+	 * Looks up every word stem starting with a prefix, see {@link #prefixPostings(String)}
+	 * 
+	 * @param prefix the Prefix to search within the InvertedIndex
+	 * @return a List of the word stems starting with the prefix, in sorted order
+	 */
+	protected List<String> prefixWords(String prefix) {
+		List<String> words = new ArrayList<>();
+		for (String word: index.tailMap(prefix).keySet()) {
+			if (!word.startsWith(prefix)) {
+				break;
+			}
+			words.add(word);
+		}
+		return words;
+	}
+	
+	/**
+	 * Takes a word stem and returns its positions in every file path it is found in, sorted by path
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @return a TreeMap from file path to the positions of the word in that file
+	 */
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		PostingList postings = index.get(word);
+		return postings != null ? postings.toMap(documents) : new TreeMap<>();
+	}
+	
+	/**
+	 * Gets the DocumentTable which holds the file paths and counts of this InvertedIndex
+	 * 
+	 * @return the DocumentTable of this InvertedIndex
+	 */
+	protected DocumentTable getDocuments() {
+		return documents;
+	}
+	
+	/**
+	 * Compiles this InvertedIndex into an immutable, read-optimized snapshot. Later changes to this
+	 * InvertedIndex are not seen by the snapshot.
+	 * 
+	 * @return a FrozenInvertedIndex containing the current words, postings and counts
+	 */
+	public FrozenInvertedIndex freeze() {
+		return new FrozenInvertedIndex(documents.snapshot(), index, positions);
+	}
+		
+	/**
+	 * Removes the postings of every word from this index, keeping its documents and counts. Used by
+	 * indexes that serve every read from a snapshot, to avoid holding the same postings twice. The
+	 * generation is not changed, since the snapshot still holds the same words.
+	 */
+	protected void clearPostings() {
+		index.clear();
+	}
+	
+	/**
+	 * Returns the generation of this index, which changes after every change made to it, so
+	 * results searched in one generation are only still valid while the generation is the same.
+	 * 
+	 * @return the generation of this index
+	 */
+	public long generation() {
+		return generation;
 	}
 		
 	/**
@@ -226,7 +780,7 @@ public class InvertedIndex {
 	 * @return int which is the size of the counts map
 	 */
 	public int countsSize() {
-		return counts.size();
+		return documents.countsSize();
 	}
 	
 	/**
@@ -246,7 +800,8 @@ public class InvertedIndex {
 	 * @return int which is the number of files the word is contained in
 	 */
 	public int indexWordSize(String word) {
-		return getPaths(word).size();
+		PostingList postings = index.get(word);
+		return postings != null ? postings.size() : 0;
 	}
 	
 	/**
@@ -257,7 +812,9 @@ public class InvertedIndex {
 	 * @return the Size of the position Set associated with the given word and path
 	 */
 	public int indexPositionsSize(String word, String locations) {
-		return getPositions(word, locations).size();
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		return postings != null && document >= 0 ? postings.frequencyOf(document) : 0;
 	}
 			
 	/**
@@ -267,7 +824,7 @@ public class InvertedIndex {
 	 * @return boolean if path is contained in counts
 	 */
 	public boolean containsCount(String locations) {
-		return counts.containsKey(locations);
+		return documents.hasCount(documents.get(locations));
 	}
 	
 	/**
@@ -290,7 +847,9 @@ public class InvertedIndex {
 	 * @return boolean if word's data structure contains path
 	 */
 	public boolean hasStemFile(String word, String locations) {
-		return getPaths(word).contains(locations);
+		PostingList postings = index.get(word);
+		int document = documents.get(locations);
+		return postings != null && document >= 0 && postings.contains(document);
 	}
 	
 	/**
@@ -304,17 +863,24 @@ public class InvertedIndex {
 	 * @return boolean if word has position within a given file
 	 */
 	public boolean hasStemFilePosition(String word, String locations, int position) {
-		return getPositions(word, locations).contains(position);
+		PositionList positions = find(word, locations);
+		return positions != null && positions.contains(position);
 	}
 	
 	/**
-	 * Write the index data structure to a given file in a JSON format
+	 * Write the index data structure to a given file in a JSON format. If positions are not retained,
+	 * the frequency of each word in each file is written instead, see
+	 * {@link JsonWriter#writeFrequencyIndex(Map, Path)}.
 	 * 
 	 * @param path the File path to write the contents to
 	 * @throws IOException if unable to write to file
 	 */
 	public void writeIndex(Path path) throws IOException {
-		JsonWriter.writeInvertedIndex(index, path);
+		if (hasPositions()) {
+			JsonWriter.writeInvertedIndex(wordView(this::getLocations), path);
+		} else {
+			JsonWriter.writeFrequencyIndex(wordView(this::getFrequencies), path);
+		}
 	}
 	
 	/**
@@ -324,7 +890,7 @@ public class InvertedIndex {
 	 * @throws IOException if unable to write to file
 	 */
 	public void writeCounts(Path path) throws IOException {
-		JsonWriter.writeObject(counts, path);
+		JsonWriter.writeObject(documents.toCounts(), path);
 	}
 	
 	/**
@@ -334,7 +900,10 @@ public class InvertedIndex {
 	 */
 	@Override
 	public String toString() {
-		return JsonWriter.writeInvertedIndex(index); 
+		if (hasPositions()) {
+			return JsonWriter.writeInvertedIndex(wordView(this::getLocations));
+		}
+		return JsonWriter.writeFrequencyIndex(wordView(this::getFrequencies));
 	}
 	
 	/**
@@ -343,7 +912,64 @@ public class InvertedIndex {
 	 * @return a String containing the counts map in JSON format
 	 */
 	public String countsToString() {
-		return JsonWriter.writeObject(counts); 
+		return JsonWriter.writeObject(documents.toCounts()); 
+	}
+	
+	/**
+	 * Takes a word stem and returns how often it occurs in every file path it is found in, sorted by path
+	 * 
+	 * @param word the Word to search within the InvertedIndex
+	 * @return a TreeMap from file path to the frequency of the word in that file
+	 */
+	private TreeMap<String, Integer> getFrequencies(String word) {
+		TreeMap<String, Integer> frequencies = new TreeMap<>();
+		PostingIterator postings = postings(word);
+		if (postings != null) {
+			for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+				frequencies.put(getDocuments().location(document), postings.frequency());
+			}
+		}
+		return frequencies;
+	}
+	
+	/**
+	 * Returns a read-only view of the index data structure with the postings of each word resolved
+	 * to a map keyed by file path, such as {@link #getLocations(String)}. The nested maps are only
+	 * built while the view is iterated.
+	 * 
+	 * @param <T> the type of the nested maps
+	 * @param values the function building the nested map of a word
+	 * @return a Map view of the index data structure
+	 */
+	private <T> Map<String, T> wordView(Function<String, T> values) {
+		return new AbstractMap<>() {
+			@Override
+			public Set<Entry<String, T>> entrySet() {
+				return new AbstractSet<>() {
+					@Override
+					public Iterator<Entry<String, T>> iterator() {
+						var iterate = getWords().iterator();
+						return new Iterator<>() {
+							@Override
+							public boolean hasNext() {
+								return iterate.hasNext();
+							}
+
+							@Override
+							public Entry<String, T> next() {
+								String word = iterate.next();
+								return new SimpleImmutableEntry<>(word, values.apply(word));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return indexSize();
+					}
+				};
+			}
+		};
 	}
 	
 	/**
@@ -355,31 +981,75 @@ public class InvertedIndex {
 		/** Count which contains the total number of occurrences of a given query in a file */
 		private int count;
 		
-		/** Score the score for a given search query which is count / total number of words in the path */
+		/** Score the score for a given search query, by default count / total number of words in the path */
 		private double score;
 		
-		/** Path location where the query words can be found */
-		private final String path;
+		/** Sum of the scores of the query words found so far, see {@link Scorer#score(int, double, double)} */
+		private double sum;
+		
+		/** Document ID of the location where the query words can be found */
+		private final int document;
+		
+		/** Scorer to rank this result with */
+		private final Scorer scorer;
+		
+		/** Norm of the document, see {@link Scorer#norm(int, double)} */
+		private final double norm;
 		
 		/**
 		 * Constructor for the QueryMetaData object. Initializes variables with given arguments
 		 * 
-		 * @param path the location where the query can be located
+		 * @param document the ID of the location where the query can be located
+		 */
+		public QueryMetaData(int document) {
+			this(document, Scorer.COUNT, 1.0 / documents.getCount(document));
+		}
+		
+		/**
+		 * Constructor for the QueryMetaData object ranked with a given Scorer
+		 * 
+		 * @param document the ID of the location where the query can be located
+		 * @param scorer the Scorer to rank this result with
+		 * @param norm the norm of the document, see {@link Scorer#norm(int, double)}
 		 */
-		public QueryMetaData(String path) {
+		public QueryMetaData(int document, Scorer scorer, double norm) {
 			this.count = 0;
 			this.score = 0;
-			this.path = path;
+			this.sum = 0;
+			this.document = document;
+			this.scorer = scorer;
+			this.norm = norm;
 		}
 
 		/**
-		 * Updates this QueryMetaData object's count and score given a query string.
+		 * Updates this QueryMetaData object's count and score sum given the number of times a query word
+		 * occurs in this location. The score itself is only computed by {@link #finish()}.
+		 * 
+		 * @param frequency number of occurrences of a query word in this location
+		 * @param weight the weight of the query word, see {@link Scorer#weight(int, int)}
+		 */
+		private void update(int frequency, double weight) {	
+			this.count += frequency;
+			this.sum += scorer.score(frequency, weight, norm);
+		}
+		
+		/**
+		 * Updates this QueryMetaData object's count and score sum with several query words at once,
+		 * whose frequencies and scores were already added together, see {@link PrefixCache}.
 		 * 
-		 * @param query String query to search for in the index
+		 * @param frequency total number of occurrences of the query words in this location
+		 * @param sum sum of the scores of the query words in this location
+		 */
+		private void add(int frequency, double sum) {
+			this.count += frequency;
+			this.sum += sum;
+		}
+		
+		/**
+		 * Computes the score of this QueryMetaData object once every query word has been counted.
 		 */
-		private void update(String query) {	
-			this.count += index.get(query).get(path).size();
-			this.score = (double) this.count / counts.get(path);
+		private void finish() {
+			this.score = scorer.finish(count, sum, documents.getCount(document));
 		}
 		
 		/**
@@ -411,7 +1081,7 @@ public class InvertedIndex {
 		 */
 		@Override
 		public String toString() {
-			return "\n \"count:\" " + count + "\n \"score:\" " + String.format("%.8f", score) + "\n \"where:\" " + path + "\n";
+			return "\n \"count:\" " + count + "\n \"score:\" " + String.format("%.8f", score) + "\n \"where:\" " + getPath() + "\n";
 		}
 		
 		/**
@@ -438,7 +1108,7 @@ public class InvertedIndex {
 		 * @return String is the location of the file
 		 */
 		public String getPath() {
-			return path;
+			return documents.location(document);
 		}
 	}
 }
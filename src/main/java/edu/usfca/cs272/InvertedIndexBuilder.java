@@ -1,18 +1,27 @@
 package edu.usfca.cs272;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for building the data structures contained within the InvertedIndex class
@@ -26,6 +35,12 @@ public class InvertedIndexBuilder {
 	/** Logger to use for debugging */
 	public static final Logger log = LogManager.getLogger();
 	
+	/** Largest number of bytes of a file to map at once when parsing mapped files */
+	public static final int MAP_SIZE = 1 << 30;
+	
+	/** Largest total size in bytes of the small files indexed together by one Task in the multithreaded build */
+	public static final long BATCH_SIZE = 1 << 20;
+	
 	/**
 	 * Given a path to a valid file, builds the counts TreeMap
 	 * and the index TreeMap found within the InvertedIndex class
@@ -37,17 +52,109 @@ public class InvertedIndexBuilder {
 	 */
 	public static void parseFile(Path path, InvertedIndex index) throws IOException {
 		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
-			Stemmer stemmer = new SnowballStemmer(ENGLISH);
+			Stemmer stemmer = StemCache.ENGLISH;
+			Tokenizer tokenizer = new Tokenizer();
+			String location = path.toString();
 			String line;
 			int i = 1;
 			while ((line = reader.readLine()) != null) {
-				for (String word: FileStemmer.parse(line)) {
-					index.add(stemmer.stem(word).toString(), path.toString(), i);
+				tokenizer.reset(line);
+				while (tokenizer.next()) {
+					index.add(stemmer.stem(tokenizer.word()).toString(), location, i);
 					i++;
 				}
 			}
 		}
 	}
+	
+	/**
+	 * Same as {@link #parseFile(Path, InvertedIndex)}, but maps the file into memory and splits
+	 * its bytes directly, see {@link Tokenizer#reset(ByteBuffer)}, instead of decoding it into
+	 * a String per line. A file larger than {@link #MAP_SIZE} is mapped in pieces that end at
+	 * a line break.
+	 * 
+	 * @param path the given Path to a readable file.
+	 * @param index the InvertedIndex class the will contain the data structures 
+	 * 			to populate
+	 * @throws IOException if unable to map the file, or if it is not valid UTF-8
+	 */
+	public static void parseMappedFile(Path path, InvertedIndex index) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			String location = path.toString();
+			long size = channel.size();
+			long start = 0;
+			int i = 1;
+			while (start < size) {
+				MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, Math.min(MAP_SIZE, size - start));
+				if (start + buffer.limit() < size) {
+					buffer.limit(pieceEnd(buffer));
+				}
+				i = parseBytes(buffer, location, index, i);
+				start += buffer.limit();
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Adds the words of UTF-8 bytes to an index, see {@link Tokenizer#reset(ByteBuffer)}.
+	 * 
+	 * @param bytes the bytes of one or more whole lines of a file
+	 * @param location the location of the file
+	 * @param index the InvertedIndex to populate
+	 * @param position the position of the first word
+	 * @return the position after the last word
+	 * @throws UncheckedIOException if the bytes are not valid UTF-8
+	 */
+	public static int parseBytes(ByteBuffer bytes, String location, InvertedIndex index, int position) {
+		Stemmer stemmer = StemCache.ENGLISH;
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset(bytes);
+		while (tokenizer.next()) {
+			index.add(stemmer.stem(tokenizer.word()).toString(), location, position);
+			position++;
+		}
+		return position;
+	}
+	
+	/**
+	 * Finds where a piece of a mapped file should end so no line is split, or at least no
+	 * word if a line is longer than the piece.
+	 * 
+	 * @param buffer the mapped piece
+	 * @return the index just after the last line break, or else the last ASCII space, or else the limit
+	 */
+	private static int pieceEnd(MappedByteBuffer buffer) {
+		int space = -1;
+		for (int i = buffer.limit() - 1; i >= 0; i--) {
+			byte b = buffer.get(i);
+			if (b == '\n' || b == '\r') {
+				return i + 1;
+			}
+			if (space < 0 && b >= 0 && Tokenizer.isSpace(b)) {
+				space = i + 1;
+			}
+		}
+		return space > 0 ? space : buffer.limit();
+	}
+	
+	/**
+	 * Parses a file with either {@link #parseMappedFile(Path, InvertedIndex)} or
+	 * {@link #parseFile(Path, InvertedIndex)}.
+	 * 
+	 * @param path the given Path to a readable file.
+	 * @param index the InvertedIndex to populate
+	 * @param mapped whether to map the file into memory
+	 * @throws IOException if unable to read the file
+	 */
+	public static void parseFile(Path path, InvertedIndex index, boolean mapped) throws IOException {
+		if (mapped) {
+			parseMappedFile(path, index);
+		} else {
+			parseFile(path, index);
+		}
+	}
 		
 	/** 
 	 * Given a path, checks to see if the path is to a valid file and calls 
@@ -61,12 +168,25 @@ public class InvertedIndexBuilder {
 	 * @throws IOException if unable to process text file at the given path
 	 */
 	public static void build(Path path, InvertedIndex index) throws IOException {
+		build(path, index, false);
+	}
+	
+	/**
+	 * Same as {@link #build(Path, InvertedIndex)}, but may map each file into memory instead of
+	 * reading it line by line, see {@link #parseMappedFile(Path, InvertedIndex)}.
+	 * 
+	 * @param path the given Path to either a directory or a file
+	 * @param index the InvertedIndex to populate
+	 * @param mapped whether to map each file into memory
+	 * @throws IOException if unable to process text file at the given path
+	 */
+	public static void build(Path path, InvertedIndex index, boolean mapped) throws IOException {
 		if (Files.isDirectory(path)) {
 			for (Path paths : DirectoryTraverser.getTextFiles(path)) {
-				parseFile(paths, index);
+				parseFile(paths, index, mapped);
 			}
 		} else {
-			parseFile(path, index);
+			parseFile(path, index, mapped);
 		}
 	}		
 	
@@ -81,55 +201,237 @@ public class InvertedIndexBuilder {
 	 * @throws IOException if unable to process text file at the given path
 	 */
 	public static void multiThreadedBuild(Path path, ThreadSafeInvertedIndex index, WorkQueue queue) throws IOException {
+		multiThreadedBuild(path, index, queue, false);
+	}
+	
+	/**
+	 * Same as {@link #multiThreadedBuild(Path, ThreadSafeInvertedIndex, WorkQueue)}, but may merge the
+	 * partial indexes built by the tasks in a tree instead, see {@link PartialIndexMerger}, so the
+	 * ThreadSafeInvertedIndex only receives a few large batches once every task is done.
+	 * 
+	 * @param path Path to either a directory or a file
+	 * @param index ThreadSafeInvertedIndex thread safe implementation of InvertedIndex
+	 * @param queue WorkQueue to use for maintaining the Task objects
+	 * @param merge whether to merge the partial indexes in a tree
+	 * @throws IOException if unable to process text file at the given path
+	 */
+	public static void multiThreadedBuild(Path path, ThreadSafeInvertedIndex index, WorkQueue queue, boolean merge) throws IOException {
+		multiThreadedBuild(path, index, queue, merge, false);
+	}
+	
+	/**
+	 * Same as {@link #multiThreadedBuild(Path, ThreadSafeInvertedIndex, WorkQueue, boolean)}, but may
+	 * map each file into memory instead of reading it line by line, see {@link #parseMappedFile(Path, InvertedIndex)}.
+	 * 
+	 * <p>The files are queued largest first, so a large file does not start last and leave the other
+	 * workers idle while it is indexed. Files smaller than the batch size are packed into batches indexed
+	 * by one Task each, where the batch size is {@link #BATCH_SIZE}, or less if there would not be a few
+	 * batches for each worker.</p>
+	 * 
+	 * @param path Path to either a directory or a file
+	 * @param index ThreadSafeInvertedIndex thread safe implementation of InvertedIndex
+	 * @param queue WorkQueue to use for maintaining the Task objects
+	 * @param merge whether to merge the partial indexes in a tree
+	 * @param mapped whether to map each file into memory
+	 * @return the fraction of the build each worker of the queue spent running tasks, keyed by worker name
+	 * @throws IOException if unable to process text file at the given path
+	 */
+	public static Map<String, Double> multiThreadedBuild(Path path, ThreadSafeInvertedIndex index, WorkQueue queue, boolean merge, boolean mapped) throws IOException {
 		log.debug("Starting MultiThreaded Build");
+		long started = System.nanoTime();
+		Map<String, Long> busy = queue.busyTimes();
+		PartialIndexMerger merger = merge ? new PartialIndexMerger(index.hasPositions()) : null;
+		
+		List<Path> files = new ArrayList<>();
 		if (Files.isDirectory(path)) {
-			for (Path paths: DirectoryTraverser.getTextFiles(path)) {
-				Runnable task = new Task(paths, index);
-				queue.execute(task);
-			}
+			files.addAll(DirectoryTraverser.getTextFiles(path));
 		} else {
-			Runnable task = new Task(path, index);
-			queue.execute(task);
+			files.add(path);
 		}
+		Map<Path, Long> sizes = new HashMap<>();
+		long total = 0;
+		for (Path file: files) {
+			long size = sizeOf(file);
+			sizes.put(file, size);
+			total += size;
+		}
+		files.sort(Comparator.comparing((Path file) -> sizes.get(file)).reversed().thenComparing(Comparator.naturalOrder()));
+		
+		long batchSize = Math.max(1, Math.min(BATCH_SIZE, total / Math.max(1, queue.size() * 4L)));
+		List<Path> batch = new ArrayList<>();
+		long batched = 0;
+		for (Path file: files) {
+			long size = sizes.get(file);
+			if (size >= batchSize) {
+				execute(file, size, index, queue, merger, mapped);
+				continue;
+			}
+			batch.add(file);
+			batched += size;
+			if (batched >= batchSize) {
+				queue.execute(new Task(batch, index, merger, mapped));
+				batch = new ArrayList<>();
+				batched = 0;
+			}
+		}
+		if (!batch.isEmpty()) {
+			queue.execute(new Task(batch, index, merger, mapped));
+		}
+		
 		queue.finish();
-		log.debug("Finished MultiThreaded Build");
+		if (merger != null) {
+			merger.finish(index);
+		}
+		
+		double elapsed = Math.max(System.nanoTime() - started, 1);
+		Map<String, Double> utilization = new TreeMap<>();
+		for (var worker: queue.busyTimes().entrySet()) {
+			utilization.put(worker.getKey(), (worker.getValue() - busy.getOrDefault(worker.getKey(), 0L)) / elapsed);
+		}
+		log.debug("Finished MultiThreaded Build, worker utilization: {}", utilization);
+		return utilization;
+	}
+	
+	/**
+	 * Returns the size of a file, or 0 if it cannot be read, in which case the Task that indexes it reports why.
+	 * 
+	 * @param path Path to a text file
+	 * @return the size of the file in bytes
+	 */
+	private static long sizeOf(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Queues the tasks that build the index from a file. A file larger than {@link ChunkedFile#CHUNK_SIZE}
+	 * is split into chunks indexed by separate tasks, see {@link ChunkedFile}, and any other file is
+	 * indexed by a single Task.
+	 * 
+	 * @param path Path to a text file
+	 * @param size the size of the file in bytes, see {@link #sizeOf(Path)}
+	 * @param index ThreadSafeInvertedIndex to build
+	 * @param queue WorkQueue to run the tasks with
+	 * @param merger PartialIndexMerger to hand the partial indexes to, or null to add them to the index
+	 * @param mapped whether a file indexed by a single Task is mapped into memory
+	 */
+	private static void execute(Path path, long size, ThreadSafeInvertedIndex index, WorkQueue queue, PartialIndexMerger merger, boolean mapped) {
+		try {
+			if (size > ChunkedFile.CHUNK_SIZE) {
+				ChunkedFile chunked = ChunkedFile.split(path, ChunkedFile.CHUNK_SIZE);
+				if (chunked != null) {
+					chunked.execute(queue, index, merger);
+					return;
+				}
+			}
+		} catch (IOException e) {
+			log.debug("Unable to split path: ", path);
+		}
+		queue.execute(new Task(List.of(path), index, merger, mapped));
 	}
 	
 	/**
 	 * Private Static Task class that implements Runnable which will populate the WorkQueue, that builds the ThreadSafeInvertedIndex
-	 * from a given file path.
+	 * from a batch of one or more file paths.
 	 */
 	private static class Task implements Runnable {
 		
-		/** Path to a Text file to process and build the index from*/
-		private final Path path;
+		/** Paths to the Text files to process and build the index from*/
+		private final List<Path> paths;
 		
 		/** Shared ThreadSafeInvertedIndex data structure that will be accessed by multiple Task classes*/
 		private final ThreadSafeInvertedIndex index;
 		
+		/** Merger to hand the partial index to instead of adding it to the shared index, or null */
+		private final PartialIndexMerger merger;
+		
+		/** Whether to map the files into memory */
+		private final boolean mapped;
+		
 		/**
 		 * Constructor for this Task class which will build ThreadSafeInvertedIndex index
-		 * @param path Path to a text file to process
+		 * @param paths Paths to the text files to process
 		 * @param index ThreadSafeInvertedIndex data structure to build
+		 * @param merger PartialIndexMerger to hand the partial index to, or null to add it to the index
+		 * @param mapped whether to map the files into memory
 		 */
-		public Task(Path path, ThreadSafeInvertedIndex index) {
-			this.path = path;
+		public Task(List<Path> paths, ThreadSafeInvertedIndex index, PartialIndexMerger merger, boolean mapped) {
+			this.paths = paths;
 			this.index = index;
-			log.debug("Created Task with path: ", path);
+			this.merger = merger;
+			this.mapped = mapped;
+			log.debug("Created Task with paths: {}", paths);
 		}
 
+		/**
+		 * Builds one partial index from every file of the batch. If a file cannot be processed, it is
+		 * skipped, and the first error is thrown once the other files are added.
+		 */
 		@Override
 		public void run() {
-			log.debug("Building index from path: ", path);
-			try {
-				InvertedIndex temp = new InvertedIndex();
-				parseFile(path, temp);
+			log.debug("Building index from paths: {}", paths);
+			IOException error = build(paths);
+			if (error != null) {
+				throw new UncheckedIOException(error);
+			}
+			log.debug("Built index from paths: {}", paths);
+		}
+		
+		/**
+		 * Builds partial indexes from some files and adds them to the index or the merger, skipping
+		 * every file that cannot be processed. A file that fails after some of its words were added
+		 * cannot be taken back out of the partial index, so the files before it are built again
+		 * without it and added on their own, which builds each file at most twice.
+		 * 
+		 * @param files Paths to the text files to process
+		 * @return the first error, or null if every file was processed
+		 */
+		private IOException build(List<Path> files) {
+			IOException error = null;
+			InvertedIndex temp = create();
+			int start = 0;
+			for (int i = 0; i < files.size(); i++) {
+				long generation = temp.generation();
+				try {
+					parseFile(files.get(i), temp, mapped);
+				} catch (IOException e) {
+					log.debug("IOException at path: {}", files.get(i));
+					error = error != null ? error : e;
+					if (temp.generation() != generation) {
+						IOException again = build(files.subList(start, i));
+						error = error != null ? error : again;
+						temp = create();
+						start = i + 1;
+					}
+				}
+			}
+			add(temp);
+			return error;
+		}
+		
+		/**
+		 * Creates an empty partial index.
+		 * 
+		 * @return the partial index
+		 */
+		private InvertedIndex create() {
+			return merger != null ? merger.create() : new InvertedIndex(index.hasPositions());
+		}
+		
+		/**
+		 * Adds a partial index to the merger, or to the index if there is no merger.
+		 * 
+		 * @param temp the partial index
+		 */
+		private void add(InvertedIndex temp) {
+			if (merger != null) {
+				merger.add(temp);
+			} else {
 				index.addAll(temp);
-			} catch (IOException e) {
-				log.debug("IOException at path:", path);
-				throw new UncheckedIOException(e);
 			}
-			log.debug("Built index from path: ", path);
 		}
 	}
 }
@@ -53,7 +53,7 @@ public class JsonWriter {
 
 	/**
 	 * Indents and then writes the text element surrounded by {@code " "} quotation
-	 * marks.
+	 * marks, escaped so it is a valid JSON string, see {@link #escape(String)}.
 	 *
 	 * @param element the element to write
 	 * @param writer the writer to use
@@ -63,10 +63,42 @@ public class JsonWriter {
 	public static void writeQuote(String element, Writer writer, int indent) throws IOException {
 		writeIndent(writer, indent);
 		writer.write('"');
-		writer.write(element);
+		writer.write(escape(element));
 		writer.write('"');
 	}
 
+	/**
+	 * Escapes the quotation marks, backslashes and control characters of text, so it can be
+	 * written between quotation marks as a JSON string. Any other character is kept as it is.
+	 *
+	 * @param text the text to escape
+	 * @return the escaped text
+	 */
+	public static String escape(String text) {
+		StringBuilder builder = null;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c != '"' && c != '\\' && c >= 0x20) {
+				if (builder != null) {
+					builder.append(c);
+				}
+				continue;
+			}
+			if (builder == null) {
+				builder = new StringBuilder(text.length() + 8).append(text, 0, i);
+			}
+			switch (c) {
+				case '"' -> builder.append("\\\"");
+				case '\\' -> builder.append("\\\\");
+				case '\n' -> builder.append("\\n");
+				case '\r' -> builder.append("\\r");
+				case '\t' -> builder.append("\\t");
+				default -> builder.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return builder != null ? builder.toString() : text;
+	}
+
 	/**
 	 * Writes the elements as a pretty JSON array.
 	 *
@@ -386,6 +418,76 @@ public class JsonWriter {
 		}
 	}
 	
+	/**
+	 * Writes an Inverted Index data structure that did not retain word positions as a pretty JSON
+	 * object. The object reports that positions were not retained, and holds the number of times
+	 * each word occurs in each file in place of its positions.
+	 *
+	 * @param index the frequency of each word in each file
+	 * @param writer the Writer to use
+	 * @param indent the initial indent level; the first bracket is not indented,
+	 *   inner elements are indented by one, and the last bracket is indented at the
+	 *   initial indentation level
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writeFrequencyIndex(Map<String, ? extends Map<String, ? extends Number>> index, Writer writer, int indent) throws IOException {
+		writeIndent("{", writer, 0);
+		writer.write("\n");
+		writeQuote("positions", writer, indent + 1);
+		writer.write(": false,\n");
+		writeQuote("frequencies", writer, indent + 1);
+		writer.write(": ");
+		writeIndent("{", writer, 0);
+		var iterate = index.entrySet().iterator();
+		while (iterate.hasNext()) {
+			var entry = iterate.next();
+			writer.write("\n");
+			writeQuote(entry.getKey(), writer, indent + 2);
+			writer.write(": ");
+			writeObject(entry.getValue(), writer, indent + 2);
+			if (iterate.hasNext()) {
+				writer.write(",");
+			}
+		}
+		writer.write("\n");
+		writeIndent("}", writer, indent + 1);
+		writer.write("\n");
+		writeIndent("}", writer, indent);
+	}
+
+	/**
+	 * Writes an Inverted Index data structure that did not retain word positions as a pretty JSON
+	 * object to file.
+	 *
+	 * @param index the frequency of each word in each file
+	 * @param path the file path to use
+	 * @throws IOException if an IO error occurs
+	 */
+	public static void writeFrequencyIndex(Map<String, ? extends Map<String, ? extends Number>> index, Path path)
+			throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path, UTF_8)) {
+			writeFrequencyIndex(index, writer, 0);
+		}
+	}
+
+	/**
+	 * Returns an Inverted Index data structure that did not retain word positions as a pretty JSON
+	 * object.
+	 *
+	 * @param index the frequency of each word in each file
+	 * @return a {@link String} containing the elements in pretty JSON format
+	 */
+	public static String writeFrequencyIndex(Map<String, ? extends Map<String, ? extends Number>> index) {
+		try {
+			StringWriter writer = new StringWriter();
+			writeFrequencyIndex(index, writer, 0);
+			return writer.toString();
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * Writes a Collection of QueryMetaData objects as a pretty JSON object.
 	 * 
@@ -408,7 +510,7 @@ public class JsonWriter {
 				writeIndent("  \"score\": ", writer, indent + 1);
 				writer.write(String.format("%.8f", entry.getScore()) + ",\n");
 				writeIndent("  \"where\": ", writer, indent + 1);
-				writer.write("\"" + entry.getPath() + "\"\n");
+				writer.write("\"" + escape(entry.getPath()) + "\"\n");
 				writeIndent("}", writer, indent + 1);
 			}
 		}
@@ -421,7 +523,7 @@ public class JsonWriter {
 			writeIndent("  \"score\": ", writer, indent + 1);
 			writer.write(String.format("%.8f", entry.getScore()) + ",\n");
 			writeIndent("  \"where\": ", writer, indent + 1);
-			writer.write("\"" + entry.getPath() + "\"\n");
+			writer.write("\"" + escape(entry.getPath()) + "\"\n");
 			writeIndent("}", writer, indent + 1);
 		}
 	}
@@ -0,0 +1,226 @@
+package edu.usfca.cs272;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * A read-only DocumentTable served from a buffer holding a documents file
+ * written by {@link #write(DocumentTable, Path)}, usually mapped from the file so
+ * the locations stay off the heap. The layout of the file is:
+ *
+ * <pre>
+ * int magic, int version, int size
+ * int count of each document
+ * int offset of each location, plus one end offset
+ * int ID of each document, sorted by location
+ * UTF-8 bytes of the locations, back to back
+ * </pre>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class MappedDocumentTable extends DocumentTable {
+
+	/** Buffer holding the documents file */
+	private final ByteBuffer buffer;
+
+	/** Number of documents in this table */
+	private final int size;
+
+	/** Number of documents that have at least one word counted */
+	private final int counted;
+
+	/** Total number of words counted over all documents */
+	private final long total;
+
+	/** Offset of the counts within the buffer */
+	private final int countsStart;
+
+	/** Offset of the location offsets within the buffer */
+	private final int offsetsStart;
+
+	/** Offset of the IDs sorted by location within the buffer */
+	private final int sortedStart;
+
+	/** Offset of the location bytes within the buffer */
+	private final int locationsStart;
+
+	/**
+	 * Constructor for a MappedDocumentTable over a buffer holding a documents file.
+	 *
+	 * @param buffer the buffer holding the documents file
+	 * @param path the path of the file, used in error messages
+	 * @throws IOException if the buffer does not hold a supported documents file
+	 */
+	public MappedDocumentTable(ByteBuffer buffer, Path path) throws IOException {
+		super();
+		MappedInvertedIndex.checkHeader(buffer, path);
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+		this.countsStart = 12;
+		this.offsetsStart = countsStart + 4 * size;
+		this.sortedStart = offsetsStart + 4 * (size + 1);
+		this.locationsStart = sortedStart + 4 * size;
+
+		int found = 0;
+		long words = 0;
+		for (int id = 0; id < size; id++) {
+			if (getCount(id) > 0) {
+				found++;
+				words += getCount(id);
+			}
+		}
+		this.counted = found;
+		this.total = words;
+	}
+
+	/**
+	 * Writes the IDs, locations and counts of a DocumentTable to a documents file.
+	 *
+	 * @param table the DocumentTable to write
+	 * @param path the file to write to
+	 * @throws IOException if unable to write to the file
+	 */
+	public static void write(DocumentTable table, Path path) throws IOException {
+		int size = table.size();
+		Integer[] sorted = new Integer[size];
+		for (int id = 0; id < size; id++) {
+			sorted[id] = id;
+		}
+		Arrays.sort(sorted, (a, b) -> table.location(a).compareTo(table.location(b)));
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MappedInvertedIndex.MAGIC);
+			out.writeInt(MappedInvertedIndex.VERSION);
+			out.writeInt(size);
+			for (int id = 0; id < size; id++) {
+				out.writeInt(table.getCount(id));
+			}
+			ByteArrayOutputStream locations = new ByteArrayOutputStream();
+			for (int id = 0; id < size; id++) {
+				out.writeInt(locations.size());
+				locations.writeBytes(table.location(id).getBytes(StandardCharsets.UTF_8));
+			}
+			out.writeInt(locations.size());
+			for (Integer id: sorted) {
+				out.writeInt(id);
+			}
+			locations.writeTo(out);
+		}
+	}
+
+	/**
+	 * Returns the ID of a location that is already in this table.
+	 *
+	 * @throws UnsupportedOperationException if the location is not in this table
+	 */
+	@Override
+	public int add(String location) {
+		int id = get(location);
+		if (id < 0) {
+			throw new UnsupportedOperationException("A mapped document table cannot be modified");
+		}
+		return id;
+	}
+
+	@Override
+	public DocumentTable copy() {
+		DocumentTable copy = new DocumentTable();
+		for (int id = 0; id < size; id++) {
+			copy.add(location(id));
+			copy.addCount(id, getCount(id));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns this table, which never changes.
+	 */
+	@Override
+	public DocumentTable snapshot() {
+		return this;
+	}
+
+	@Override
+	public int get(String location) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int id = buffer.getInt(sortedStart + 4 * middle);
+			int compared = location(id).compareTo(location);
+			if (compared < 0) {
+				low = middle + 1;
+			} else if (compared > 0) {
+				high = middle - 1;
+			} else {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String location(int id) {
+		int start = buffer.getInt(offsetsStart + 4 * id);
+		int end = buffer.getInt(offsetsStart + 4 * (id + 1));
+		byte[] bytes = new byte[end - start];
+		buffer.get(locationsStart + start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int getCount(int id) {
+		return buffer.getInt(countsStart + 4 * id);
+	}
+
+	/**
+	 * Not supported, a MappedDocumentTable cannot be modified.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addCount(int id, int words) {
+		throw new UnsupportedOperationException("A mapped document table cannot be modified");
+	}
+
+	@Override
+	public boolean hasCount(int id) {
+		return id >= 0 && id < size && getCount(id) > 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int countsSize() {
+		return counted;
+	}
+
+	@Override
+	public long totalCount() {
+		return total;
+	}
+
+	@Override
+	public TreeMap<String, Integer> toCounts() {
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < size; id++) {
+			if (getCount(id) > 0) {
+				map.put(location(id), getCount(id));
+			}
+		}
+		return map;
+	}
+}
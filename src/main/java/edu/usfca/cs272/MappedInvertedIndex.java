@@ -0,0 +1,539 @@
+package edu.usfca.cs272;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A read-only InvertedIndex served from index files that are memory-mapped, so the
+ * postings live off the heap and are paged in by the operating system as they are
+ * searched. This allows searching indexes larger than the heap. The files are written
+ * by {@link #write(InvertedIndex, Path)} into a directory:
+ *
+ * <ul>
+ * <li>{@value #DOCUMENTS}, the locations and counts, see {@link MappedDocumentTable}</li>
+ * <li>{@value #DICTIONARY}, the sorted words and where their postings start</li>
+ * <li>{@value #POSTINGS}, the postings of every word, see {@link CompressedPostingList}</li>
+ * </ul>
+ *
+ * <p>
+ * The layout of the dictionary file is:
+ *
+ * <pre>
+ * int magic, int version, int size
+ * int offset of each word, plus one end offset
+ * long offset of the postings of each word in the postings file
+ * UTF-8 bytes of the words, back to back
+ * </pre>
+ *
+ * The postings file starts with the magic number and version. It is mapped in
+ * regions of {@link #REGION_SIZE} bytes, and the postings of a word never cross
+ * the end of a region.
+ *
+ * <p>
+ * The same files are used to save an index between runs, and can be loaded onto
+ * the heap with {@link #load(Path)} instead of mapped with {@link #open(Path)}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class MappedInvertedIndex extends InvertedIndex {
+
+	/** Magic number at the start of every index file */
+	public static final int MAGIC = 0x53454958;
+
+	/** Version of the index file format */
+	public static final int VERSION = 1;
+
+	/** Name of the documents file */
+	public static final String DOCUMENTS = "documents.bin";
+
+	/** Name of the dictionary file */
+	public static final String DICTIONARY = "dictionary.bin";
+
+	/** Name of the postings file */
+	public static final String POSTINGS = "postings.bin";
+
+	/** Number of bytes of the postings file mapped at a time */
+	public static final long REGION_SIZE = 1L << 30;
+
+	/** Buffer holding the dictionary file */
+	private final ByteBuffer dictionary;
+
+	/** Buffers holding the regions of the postings file */
+	private final ByteBuffer[] regions;
+
+	/** Number of words in this index */
+	private final int size;
+
+	/** Offset of the postings offsets within the dictionary */
+	private final int postingsStart;
+
+	/** Offset of the word bytes within the dictionary */
+	private final int wordsStart;
+
+	/** Whether the postings retain the positions of each word */
+	private final boolean positions;
+
+	/**
+	 * Constructor for a MappedInvertedIndex over the buffers of its files.
+	 *
+	 * @param documents the DocumentTable read from the documents file
+	 * @param dictionary the buffer holding the dictionary file
+	 * @param regions the buffers holding the regions of the postings file
+	 */
+	private MappedInvertedIndex(DocumentTable documents, ByteBuffer dictionary, ByteBuffer[] regions) {
+		super(documents);
+		this.dictionary = dictionary;
+		this.regions = regions;
+		this.size = dictionary.getInt(8);
+		this.postingsStart = 12 + 4 * (size + 1);
+		this.wordsStart = postingsStart + 8 * size;
+		this.positions = size == 0 || postingsOf(0).hasPositions();
+	}
+
+	/**
+	 * Writes the words, postings and counts of an InvertedIndex to index files in a directory,
+	 * which is created if needed.
+	 *
+	 * @param index the InvertedIndex to write
+	 * @param directory the directory to write the index files to
+	 * @throws IOException if unable to write the files
+	 */
+	public static void write(InvertedIndex index, Path directory) throws IOException {
+		Files.createDirectories(directory);
+		MappedDocumentTable.write(index.getDocuments(), directory.resolve(DOCUMENTS));
+
+		Set<String> words = index.getWords();
+		long[] offsets = new long[words.size()];
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int[] starts = new int[words.size() + 1];
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(POSTINGS))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			long position = out.size();
+			int word = 0;
+			for (String stem: words) {
+				byte[] encoded = CompressedPostingList.encode(index.getPostings(stem));
+				if (encoded.length > REGION_SIZE) {
+					throw new IOException("Postings of " + stem + " are too large to map");
+				}
+				long free = REGION_SIZE - position % REGION_SIZE;
+				if (encoded.length > free) {
+					out.write(new byte[(int) free]);
+					position += free;
+				}
+				out.write(encoded);
+				offsets[word] = position;
+				position += encoded.length;
+
+				starts[word] = bytes.size();
+				bytes.writeBytes(stem.getBytes(StandardCharsets.UTF_8));
+				word++;
+			}
+			starts[word] = bytes.size();
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(DICTIONARY))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(offsets.length);
+			for (int start: starts) {
+				out.writeInt(start);
+			}
+			for (long offset: offsets) {
+				out.writeLong(offset);
+			}
+			bytes.writeTo(out);
+		}
+	}
+
+	/**
+	 * Opens the index files in a directory by mapping them into memory.
+	 *
+	 * @param directory the directory holding the index files
+	 * @return a MappedInvertedIndex serving the index files
+	 * @throws IOException if unable to open the files, or they are not supported index files
+	 */
+	public static MappedInvertedIndex open(Path directory) throws IOException {
+		Path documents = directory.resolve(DOCUMENTS);
+		Path dictionary = directory.resolve(DICTIONARY);
+		Path postings = directory.resolve(POSTINGS);
+		ByteBuffer dictionaryBuffer = map(dictionary);
+		checkHeader(dictionaryBuffer, dictionary);
+
+		try (FileChannel channel = FileChannel.open(postings, StandardOpenOption.READ)) {
+			long length = channel.size();
+			ByteBuffer[] regions = new ByteBuffer[(int) ((length + REGION_SIZE - 1) / REGION_SIZE)];
+			for (int i = 0; i < regions.length; i++) {
+				long start = i * REGION_SIZE;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, length - start));
+			}
+			if (regions.length == 0) {
+				throw new IOException("Unsupported index file: " + postings);
+			}
+			checkHeader(regions[0], postings);
+			return new MappedInvertedIndex(new MappedDocumentTable(map(documents), documents), dictionaryBuffer, regions);
+		}
+	}
+
+	/**
+	 * Loads the index files in a directory onto the heap, reading each file from start to end with
+	 * large sequential reads instead of mapping it. Use this when the index fits in the heap, so
+	 * searches never wait on the disk.
+	 *
+	 * @param directory the directory holding the index files
+	 * @return a MappedInvertedIndex serving the loaded index files
+	 * @throws IOException if unable to read the files, or they are not supported index files
+	 */
+	public static MappedInvertedIndex load(Path directory) throws IOException {
+		Path documents = directory.resolve(DOCUMENTS);
+		Path dictionary = directory.resolve(DICTIONARY);
+		Path postings = directory.resolve(POSTINGS);
+		ByteBuffer dictionaryBuffer = read(dictionary, 0, Files.size(dictionary));
+		checkHeader(dictionaryBuffer, dictionary);
+
+		long length = Files.size(postings);
+		ByteBuffer[] regions = new ByteBuffer[(int) ((length + REGION_SIZE - 1) / REGION_SIZE)];
+		for (int i = 0; i < regions.length; i++) {
+			long start = i * REGION_SIZE;
+			regions[i] = read(postings, start, Math.min(REGION_SIZE, length - start));
+		}
+		if (regions.length == 0) {
+			throw new IOException("Unsupported index file: " + postings);
+		}
+		checkHeader(regions[0], postings);
+		return new MappedInvertedIndex(new MappedDocumentTable(read(documents, 0, Files.size(documents)), documents), dictionaryBuffer, regions);
+	}
+
+	/**
+	 * Reads part of a file into a new heap buffer.
+	 *
+	 * @param path the file to read
+	 * @param start the offset in the file to start reading at
+	 * @param length the number of bytes to read
+	 * @return a read-only buffer holding the bytes read
+	 * @throws IOException if unable to read the file
+	 */
+	private static ByteBuffer read(Path path, long start, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Index file is too large to load: " + path);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			channel.position(start);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException("Unexpected end of index file: " + path);
+				}
+			}
+		}
+		return buffer.flip().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Maps a whole file into memory.
+	 *
+	 * @param path the file to map
+	 * @return a read-only buffer over the file
+	 * @throws IOException if unable to map the file
+	 */
+	private static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Index file is too large to map: " + path);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Checks that a buffer starts with the magic number and a supported version.
+	 *
+	 * @param buffer the buffer holding an index file
+	 * @param path the path of the file, used in error messages
+	 * @throws IOException if the buffer does not start with a supported header
+	 */
+	static void checkHeader(ByteBuffer buffer, Path path) throws IOException {
+		if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Unsupported index file: " + path);
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported index file version " + buffer.getInt(4) + ": " + path);
+		}
+	}
+
+	/**
+	 * Decodes the word at a given index of the dictionary.
+	 *
+	 * @param index the index of the word
+	 * @return the word
+	 */
+	private String word(int index) {
+		int start = dictionary.getInt(12 + 4 * index);
+		int end = dictionary.getInt(12 + 4 * (index + 1));
+		byte[] bytes = new byte[end - start];
+		dictionary.get(wordsStart + start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Finds the index of a word in the dictionary.
+	 *
+	 * @param word the word to find
+	 * @return the index of the word, or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(String word) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compared = word(middle).compareTo(word);
+			if (compared < 0) {
+				low = middle + 1;
+			} else if (compared > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -low - 1;
+	}
+
+	/**
+	 * Returns the postings of the word at a given index of the dictionary.
+	 *
+	 * @param index the index of the word
+	 * @return the compressed postings of the word
+	 */
+	private CompressedPostingList postingsOf(int index) {
+		long offset = dictionary.getLong(postingsStart + 8 * index);
+		return new CompressedPostingList(regions[(int) (offset / REGION_SIZE)], (int) (offset % REGION_SIZE));
+	}
+
+	/**
+	 * Returns an iterator positioned on the posting of a document within the postings of a word.
+	 *
+	 * @param word the word
+	 * @param locations the location of the document
+	 * @return the iterator, or null if the word is not in the document
+	 */
+	private PostingIterator find(String word, String locations) {
+		int index = indexOf(word);
+		int document = getDocuments().get(locations);
+		if (index < 0 || document < 0) {
+			return null;
+		}
+		PostingIterator iterator = postingsOf(index).iterator();
+		return iterator.advance(document) == document ? iterator : null;
+	}
+
+	@Override
+	protected PostingIterator postings(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? postingsOf(index).iterator() : null;
+	}
+
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? postingsOf(index) : null;
+	}
+
+	@Override
+	protected List<String> prefixWords(String prefix) {
+		List<String> words = new ArrayList<>();
+		int index = indexOf(prefix);
+		for (int i = index >= 0 ? index : -index - 1; i < size; i++) {
+			String word = word(i);
+			if (!word.startsWith(prefix)) {
+				break;
+			}
+			words.add(word);
+		}
+		return words;
+	}
+
+	@Override
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		List<PostingIterator> postings = new ArrayList<>();
+		int index = indexOf(prefix);
+		for (int i = index >= 0 ? index : -index - 1; i < size && word(i).startsWith(prefix); i++) {
+			postings.add(postingsOf(i).iterator());
+		}
+		return postings;
+	}
+
+	@Override
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		TreeMap<String, PositionList> locations = new TreeMap<>();
+		PostingIterator iterator = postings(word);
+		if (iterator != null) {
+			for (int document = iterator.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = iterator.next()) {
+				locations.put(getDocuments().location(document), readPositions(iterator));
+			}
+		}
+		return locations;
+	}
+
+	/**
+	 * Reads all the positions of the current document of an iterator.
+	 *
+	 * @param iterator the iterator positioned on a document
+	 * @return the positions of the word within the document
+	 */
+	private static PositionList readPositions(PostingIterator iterator) {
+		PositionList positions = new PositionList();
+		for (int i = 0; i < iterator.frequency(); i++) {
+			positions.add(iterator.nextPosition());
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns whether the index files were written with the positions of each word, which is
+	 * the case unless the written index did not retain them.
+	 */
+	@Override
+	public boolean hasPositions() {
+		return positions;
+	}
+
+	/**
+	 * Copies this index onto the heap as a FrozenInvertedIndex.
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		InvertedIndex copy = new InvertedIndex(getDocuments(), positions);
+		for (int i = 0; i < size; i++) {
+			copy.addPostings(word(i), postingsOf(i).iterator());
+		}
+		return copy.freeze();
+	}
+
+	/**
+	 * Not supported, a MappedInvertedIndex cannot be modified.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void add(String stem, String locations, int positions) {
+		throw new UnsupportedOperationException("A mapped index cannot be modified");
+	}
+
+	/**
+	 * Not supported, a MappedInvertedIndex cannot be modified.
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void addAll(InvertedIndex index) {
+		throw new UnsupportedOperationException("A mapped index cannot be modified");
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<>() {
+					/** Index of the next word */
+					private int index = 0;
+
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+
+					@Override
+					public String next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return word(index++);
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String word && indexOf(word) >= 0;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		PostingIterator iterator = postings(word);
+		if (iterator == null) {
+			return Collections.emptySet();
+		}
+		TreeSet<String> paths = new TreeSet<>();
+		for (int document = iterator.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = iterator.next()) {
+			paths.add(getDocuments().location(document));
+		}
+		return Collections.unmodifiableSet(paths);
+	}
+
+	@Override
+	public Collection<Integer> getPositions(String word, String locations) {
+		PostingIterator iterator = find(word, locations);
+		return iterator != null && positions ? Collections.unmodifiableCollection(readPositions(iterator)) : Collections.emptyList();
+	}
+
+	@Override
+	public int indexSize() {
+		return size;
+	}
+
+	@Override
+	public int indexWordSize(String word) {
+		int index = indexOf(word);
+		return index >= 0 ? postingsOf(index).size() : 0;
+	}
+
+	@Override
+	public int indexPositionsSize(String word, String locations) {
+		PostingIterator iterator = find(word, locations);
+		return iterator != null ? iterator.frequency() : 0;
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return indexOf(word) >= 0;
+	}
+
+	@Override
+	public boolean hasStemFile(String word, String locations) {
+		return find(word, locations) != null;
+	}
+
+	@Override
+	public boolean hasStemFilePosition(String word, String locations, int position) {
+		return getPositions(word, locations).contains(position);
+	}
+}
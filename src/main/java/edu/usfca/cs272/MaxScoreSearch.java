@@ -0,0 +1,231 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Document-at-a-time search for the k best documents of a query, which skips
+ * documents that cannot make it into the results using MaxScore pruning. The score
+ * of a document is the sum of the scores of its query words, see {@link Scorer}, so
+ * the largest score of a word over all of its postings bounds what the word can add
+ * to any score. Words are ordered by their bound, and once the k best documents so far
+ * are known, the words whose bounds together cannot reach the worst of them are no
+ * longer used to find new documents, only to finish scoring documents found through the
+ * other words, and only while the document can still make it.
+ *
+ * <p>A document is only skipped if it would score strictly less than the worst of the
+ * k best, since ties are broken by count and location, so the results are the same as
+ * the first k of a full search.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class MaxScoreSearch {
+
+	/** Relative slack added to score bounds, so rounding never prunes a document that could tie */
+	private static final double SLACK = 1e-9;
+
+	/** DocumentTable with the word count of each document */
+	private final DocumentTable table;
+
+	/** Scorer to rank the documents with */
+	private final Scorer scorer;
+
+	/** Norm of each document, indexed by document ID */
+	private final double[] norms;
+
+	/** Postings of each query word, in increasing order of their bounds */
+	private final PostingIterator[] postings;
+
+	/** Weight of each query word, parallel to postings */
+	private final double[] weights;
+
+	/** Sum of the bounds of each query word and every word with a smaller bound */
+	private final double[] cumulative;
+
+	/** Document IDs of the k best documents, in no particular order */
+	public int[] documents;
+
+	/** Total frequency of the query words in each of the k best documents, parallel to documents */
+	public int[] frequencies;
+
+	/** Sum of the scores of the query words in each of the k best documents, parallel to documents */
+	public double[] sums;
+
+	/** Number of documents found */
+	public int size;
+
+	/**
+	 * Constructor for a MaxScoreSearch over the postings of the query words.
+	 *
+	 * @param table DocumentTable with the word count of each document
+	 * @param scorer the Scorer to rank the documents with
+	 * @param norms the norm of each document, indexed by document ID
+	 * @param postings the postings of each query word, positioned before their first posting
+	 * @param weights the weight of each query word, parallel to postings
+	 * @param bounds the largest score over the postings of each word, parallel to postings
+	 */
+	public MaxScoreSearch(DocumentTable table, Scorer scorer, double[] norms, List<PostingIterator> postings, double[] weights, double[] bounds) {
+		Integer[] order = new Integer[postings.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingDouble(i -> bounds[i]));
+
+		this.table = table;
+		this.scorer = scorer;
+		this.norms = norms;
+		this.postings = new PostingIterator[order.length];
+		this.weights = new double[order.length];
+		this.cumulative = new double[order.length];
+		double sum = 0;
+		for (int i = 0; i < order.length; i++) {
+			this.postings[i] = postings.get(order[i]);
+			this.weights[i] = weights[order[i]];
+			sum += bounds[order[i]];
+			this.cumulative[i] = sum;
+		}
+		this.documents = new int[0];
+		this.frequencies = new int[0];
+		this.sums = new double[0];
+		this.size = 0;
+	}
+
+	/**
+	 * Finds the k best documents, and stores them in documents, frequencies, sums and size.
+	 *
+	 * @param k the maximum number of documents to find
+	 */
+	public void search(int k) {
+		if (k <= 0) {
+			return;
+		}
+		PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1);
+		for (PostingIterator iterator: postings) {
+			iterator.next();
+		}
+
+		// words before essential are only used to finish scoring documents found by the others
+		int essential = 0;
+		while (essential < postings.length) {
+			int document = PostingIterator.NO_MORE_DOCUMENTS;
+			for (int i = essential; i < postings.length; i++) {
+				document = Math.min(document, postings[i].document());
+			}
+			if (document == PostingIterator.NO_MORE_DOCUMENTS) {
+				break;
+			}
+
+			int count = 0;
+			double sum = 0;
+			for (int i = essential; i < postings.length; i++) {
+				if (postings[i].document() == document) {
+					count += postings[i].frequency();
+					sum += scorer.score(postings[i].frequency(), weights[i], norms[document]);
+					postings[i].next();
+				}
+			}
+
+			boolean pruned = false;
+			for (int i = essential - 1; i >= 0; i--) {
+				if (best.size() == k && cannotReach(sum + cumulative[i], best.peek().score)) {
+					pruned = true;
+					break;
+				}
+				if (postings[i].advance(document) == document) {
+					count += postings[i].frequency();
+					sum += scorer.score(postings[i].frequency(), weights[i], norms[document]);
+				}
+			}
+			if (pruned) {
+				continue;
+			}
+
+			Candidate candidate = new Candidate(document, count, sum, scorer.finish(count, sum, table.getCount(document)));
+			if (best.size() < k) {
+				best.add(candidate);
+			} else if (candidate.compareTo(best.peek()) > 0) {
+				best.poll();
+				best.add(candidate);
+			}
+
+			if (best.size() == k) {
+				double threshold = best.peek().score;
+				while (essential < postings.length && cannotReach(cumulative[essential], threshold)) {
+					essential++;
+				}
+			}
+		}
+
+		documents = new int[best.size()];
+		frequencies = new int[best.size()];
+		sums = new double[best.size()];
+		for (Candidate candidate: best) {
+			documents[size] = candidate.document;
+			frequencies[size] = candidate.count;
+			sums[size] = candidate.sum;
+			size++;
+		}
+	}
+
+	/**
+	 * Returns whether a document whose score is at most bound scores strictly less than the threshold.
+	 *
+	 * @param bound the largest score the document could have
+	 * @param threshold the score of the worst of the k best documents
+	 * @return true if the document cannot make it into the k best
+	 */
+	private static boolean cannotReach(double bound, double threshold) {
+		return bound * (1 + SLACK) < threshold;
+	}
+
+	/**
+	 * A scored document, ordered so the worst document comes first, with the same tie
+	 * breaking as {@link InvertedIndex.QueryMetaData#compareTo(InvertedIndex.QueryMetaData)}.
+	 */
+	private class Candidate implements Comparable<Candidate> {
+
+		/** Document ID */
+		private final int document;
+
+		/** Total frequency of the query words in the document */
+		private final int count;
+
+		/** Sum of the scores of the query words in the document */
+		private final double sum;
+
+		/** Final score of the document */
+		private final double score;
+
+		/**
+		 * Constructor for a scored document
+		 *
+		 * @param document the document ID
+		 * @param count the total frequency of the query words in the document
+		 * @param sum the sum of the scores of the query words in the document
+		 * @param score the final score of the document
+		 */
+		public Candidate(int document, int count, double sum, double score) {
+			this.document = document;
+			this.count = count;
+			this.sum = sum;
+			this.score = score;
+		}
+
+		@Override
+		public int compareTo(Candidate o) {
+			int dscore = Double.compare(this.score, o.score);
+			if (dscore != 0) {
+				return dscore;
+			}
+			int iscore = Integer.compare(this.count, o.count);
+			if (iscore != 0) {
+				return iscore;
+			}
+			return table.location(o.document).compareToIgnoreCase(table.location(this.document));
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+
+/**
+ * Iterator over the union of the postings of the same word from several
+ * sources, such as the segments of a {@link SegmentedInvertedIndex}. Postings are
+ * returned in increasing document ID order. If more than one source has a posting
+ * for the same document, the frequencies are added together and the positions
+ * are merged into sorted order.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class MergedPostingIterator implements PostingIterator {
+
+	/** The iterators being merged */
+	private final PostingIterator[] iterators;
+
+	/** Number of distinct documents of the merged iterators */
+	private final int size;
+
+	/** The current document ID */
+	private int document;
+
+	/** Frequency of the word in the current document, summed over all iterators */
+	private int frequency;
+
+	/** The single iterator positioned on the current document, or null if there are several */
+	private PostingIterator single;
+
+	/** Merged positions of the current document when several iterators are positioned on it */
+	private int[] positions;
+
+	/** Number of merged positions read so far */
+	private int read;
+
+	/**
+	 * Constructor for a MergedPostingIterator positioned before the first posting.
+	 *
+	 * @param size the number of distinct documents of the iterators, see {@link #countDocuments(PostingIterator...)}
+	 * @param iterators the iterators to merge, none of which may have been moved yet
+	 */
+	public MergedPostingIterator(int size, PostingIterator... iterators) {
+		this.iterators = iterators;
+		this.size = size;
+		this.document = -1;
+		this.frequency = 0;
+		this.single = null;
+		this.positions = null;
+	}
+
+	@Override
+	public int next() {
+		if (document == NO_MORE_DOCUMENTS) {
+			return document;
+		}
+		for (PostingIterator iterator: iterators) {
+			if (iterator.document() == document) {
+				iterator.next();
+			}
+		}
+		return settle();
+	}
+
+	@Override
+	public int advance(int target) {
+		if (document >= target) {
+			return document;
+		}
+		for (PostingIterator iterator: iterators) {
+			if (iterator.document() < target) {
+				iterator.advance(target);
+			}
+		}
+		return settle();
+	}
+
+	/**
+	 * Moves to the smallest document ID any of the iterators is positioned on, and
+	 * sums the frequencies of the iterators positioned on it.
+	 *
+	 * @return the current document ID
+	 */
+	private int settle() {
+		document = NO_MORE_DOCUMENTS;
+		for (PostingIterator iterator: iterators) {
+			document = Math.min(document, iterator.document());
+		}
+		frequency = 0;
+		single = null;
+		positions = null;
+		int matched = 0;
+		for (PostingIterator iterator: iterators) {
+			if (iterator.document() == document && document != NO_MORE_DOCUMENTS) {
+				frequency += iterator.frequency();
+				single = iterator;
+				matched++;
+			}
+		}
+		if (matched > 1) {
+			single = null;
+		}
+		return document;
+	}
+
+	@Override
+	public int document() {
+		return document;
+	}
+
+	@Override
+	public int frequency() {
+		return frequency;
+	}
+
+	@Override
+	public int nextPosition() {
+		if (single != null) {
+			return single.nextPosition();
+		}
+		if (positions == null) {
+			positions = new int[frequency];
+			int count = 0;
+			for (PostingIterator iterator: iterators) {
+				if (iterator.document() == document) {
+					for (int i = 0; i < iterator.frequency(); i++) {
+						positions[count++] = iterator.nextPosition();
+					}
+				}
+			}
+			Arrays.sort(positions);
+			read = 0;
+		}
+		return positions[read++];
+	}
+
+	/**
+	 * Returns whether every merged iterator retained its positions.
+	 */
+	@Override
+	public boolean hasPositions() {
+		for (PostingIterator iterator: iterators) {
+			if (!iterator.hasPositions()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of distinct documents of the merged iterators, which counts a
+	 * document once however many iterators have it.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Counts the distinct documents of several iterators by merging them, which moves
+	 * every iterator to its end.
+	 *
+	 * @param iterators the iterators to count, none of which may have been moved yet
+	 * @return the number of documents any of the iterators has
+	 */
+	public static int countDocuments(PostingIterator... iterators) {
+		PostingIterator merged = new MergedPostingIterator(0, iterators);
+		int count = 0;
+		while (merged.next() != NO_MORE_DOCUMENTS) {
+			count++;
+		}
+		return count;
+	}
+}
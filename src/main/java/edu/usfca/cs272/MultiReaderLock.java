@@ -1,6 +1,8 @@
 package edu.usfca.cs272;
 
 import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -44,6 +46,18 @@ public class MultiReaderLock {
 	/** The thread that holds the write lock. */
 	private Thread activeWriter;
 
+	/** The number of times the read lock was acquired. */
+	private long readAcquisitions;
+
+	/** The number of times the write lock was acquired. */
+	private long writeAcquisitions;
+
+	/** Total nanoseconds spent waiting to acquire the read lock. */
+	private long readWaitTime;
+
+	/** Total nanoseconds spent waiting to acquire the write lock. */
+	private long writeWaitTime;
+
 	/** The log4j2 logger. */
 	private static final Logger log = LogManager.getLogger();
 
@@ -70,6 +84,28 @@ public class MultiReaderLock {
 		writers = 0;
 
 		activeWriter = null;
+
+		readAcquisitions = 0;
+		writeAcquisitions = 0;
+		readWaitTime = 0;
+		writeWaitTime = 0;
+	}
+
+	/**
+	 * Returns statistics on how this lock was used: how many times each lock was acquired,
+	 * and the total nanoseconds threads waited to acquire them.
+	 *
+	 * @return a sorted map from statistic name to value
+	 */
+	public Map<String, Long> statistics() {
+		TreeMap<String, Long> statistics = new TreeMap<>();
+		synchronized (lock) {
+			statistics.put("readAcquisitions", readAcquisitions);
+			statistics.put("readWaitNanos", readWaitTime);
+			statistics.put("writeAcquisitions", writeAcquisitions);
+			statistics.put("writeWaitNanos", writeWaitTime);
+		}
+		return statistics;
 	}
 
 	/**
@@ -162,12 +198,15 @@ public class MultiReaderLock {
 		 */
 		@Override
 		public void lock() {
+			long start = System.nanoTime();
 			try {
 				synchronized (lock) {
 					while (writers > 0 && !isActiveWriter()) {
 						lock.wait();
 					}
 					readers++;
+					readAcquisitions++;
+					readWaitTime += System.nanoTime() - start;
 				}
 			}
 			catch (InterruptedException ex) {
@@ -211,6 +250,7 @@ public class MultiReaderLock {
 		 */
 		@Override
 		public void lock() {
+			long start = System.nanoTime();
 			try {
 				synchronized (lock) {
 					while ((readers > 0 || writers > 0) && !isActiveWriter()) {
@@ -218,6 +258,8 @@ public class MultiReaderLock {
 					}
 					writers++;
 					activeWriter = Thread.currentThread();
+					writeAcquisitions++;
+					writeWaitTime += System.nanoTime() - start;
 				}
 			}
 			catch (InterruptedException ex) {
@@ -4,9 +4,10 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import edu.usfca.cs272.InvertedIndex.QueryMetaData;
@@ -24,16 +25,22 @@ public class MultiThreadedQueryProcessor implements QueryProcessor {
 	public static final Logger log = LogManager.getLogger();
 
 	/** 
-	 * results Data Structure which is a TreeMap containing a query as a key,
-	 * and a Collection of QueryMetaData objects as the value.
+	 * results Data Structure which is a ResultCache containing a query and whether the search
+	 * was partial as a key, and a Collection of QueryMetaData objects as the value.
 	 */
-	private final TreeMap<String, List<InvertedIndex.QueryMetaData>> results;
+	private final ResultCache results;
 				
 	/** safeIndex ThreadSafeInvertedIndex to be used with multi threaded searching */
 	private final ThreadSafeInvertedIndex safeIndex;
 		
 	/** WorkQueue to use to manage the Task objects */
 	private final WorkQueue queue;
+	
+	/** Scorer to rank the results with */
+	private final Scorer scorer;
+	
+	/** Searches in progress, keyed by whether they are partial and their query, completed once their results are cached */
+	private final ConcurrentHashMap<String, CompletableFuture<Void>> pending;
 
 	/**
 	 * Constructor for the MultiThreadedQueryProcessor class with a thread safe InvertedIndex. 
@@ -41,55 +48,77 @@ public class MultiThreadedQueryProcessor implements QueryProcessor {
 	 * @param queue reference to the WorkQueue to manage the Task objects
 	 */
 	public MultiThreadedQueryProcessor(ThreadSafeInvertedIndex safeIndex, WorkQueue queue) {
-		results = new TreeMap<>();
+		this(safeIndex, queue, Scorer.COUNT);
+	}
+	
+	/**
+	 * Constructor for the MultiThreadedQueryProcessor class that ranks results with a given Scorer. 
+	 * @param safeIndex reference to the ThreadSafeInvertedIndex which will be searched
+	 * @param queue reference to the WorkQueue to manage the Task objects
+	 * @param scorer the Scorer to rank the results with
+	 */
+	public MultiThreadedQueryProcessor(ThreadSafeInvertedIndex safeIndex, WorkQueue queue, Scorer scorer) {
+		this(safeIndex, queue, scorer, ResultCache.UNBOUNDED);
+	}
+	
+	/**
+	 * Constructor for the MultiThreadedQueryProcessor class that ranks results with a given Scorer,
+	 * and keeps at most a number of results. 
+	 * @param safeIndex reference to the ThreadSafeInvertedIndex which will be searched
+	 * @param queue reference to the WorkQueue to manage the Task objects
+	 * @param scorer the Scorer to rank the results with
+	 * @param capacity the largest total number of results to keep, see {@link ResultCache}
+	 */
+	public MultiThreadedQueryProcessor(ThreadSafeInvertedIndex safeIndex, WorkQueue queue, Scorer scorer, long capacity) {
+		results = new ResultCache(capacity);
 		this.safeIndex = safeIndex;
 		this.queue = queue;
+		this.scorer = scorer;
+		this.pending = new ConcurrentHashMap<>();
 	}
 	
 	@Override
-	public void processQueries(Path path, boolean partial) throws IOException {
-		QueryProcessor.super.processQueries(path, partial);
+	public void processQueries(Path path, boolean partial, int k) throws IOException {
+		QueryProcessor.super.processQueries(path, partial, k);
 		queue.finish();
 	}
 	
 	@Override
-	public void processQueries(String line, boolean partial) {
-		Runnable task = new Task(line, partial);
+	public void processQueries(String line, boolean partial, int k) {
+		Runnable task = new Task(line, partial, k);
 		queue.execute(task);
 	}
 		
 	@Override
 	public void writeResults(Path path) throws IOException {
 		queue.finish();
-		synchronized (results) {
-			JsonWriter.writeObjectArraysFiles(results, path);
-		}
+		JsonWriter.writeObjectArraysFiles(results.toMap(), path);
 	}
 	
 	@Override
 	public String toString() {
 		queue.finish();
-		synchronized (results) {
-			return results.toString();
-		}
+		return results.toString();
 	}
 		
 	@Override
 	public Set<String> getQueryLines() {
 		queue.finish();
-		synchronized (results) {
-			return Collections.unmodifiableSet(results.keySet());
-		}
+		return Collections.unmodifiableSet(results.toMap().keySet());
 	}
 	
 	@Override
 	public List<QueryMetaData> getQueryResults(String line) {
 		queue.finish();
-		TreeSet<String> stemmedQuery = FileStemmer.uniqueStems(line);
-		String query = String.join(" ", stemmedQuery);
-		synchronized (results) {
-			return results.containsKey(query) ? Collections.unmodifiableList(results.get(query)) : Collections.emptyList();
-		}
+		String query = SearchQuery.parse(line).toString();
+		List<QueryMetaData> found = results.peek(query);
+		return found != null ? Collections.unmodifiableList(found) : Collections.emptyList();
+	}
+	
+	@Override
+	public Map<String, Long> getCacheStatistics() {
+		queue.finish();
+		return results.statistics();
 	}
 		
 	/**
@@ -103,6 +132,9 @@ public class MultiThreadedQueryProcessor implements QueryProcessor {
 		
 		/** partial Boolean whether or not to perform a partial search */
 		private final boolean partial;
+		
+		/** k the maximum number of results to keep */
+		private final int k;
 			
 		/**
 		 * Constructor for this Task object which will search the ThreadSafeInvertedIndex
@@ -110,27 +142,42 @@ public class MultiThreadedQueryProcessor implements QueryProcessor {
 		 * 
 		 * @param line String query to search for in the ThreadSafeInvertedIndex
 		 * @param partial Boolean whether or not the perform a partial search
+		 * @param k the maximum number of results to keep
 		 */
-		public Task(String line, boolean partial) {
+		public Task(String line, boolean partial, int k) {
 			this.line = line;
 			this.partial = partial;
+			this.k = k;
 			log.debug("Created Task with line: ", line);
 		}
 
 		@Override
 		public void run() {
 			log.debug("Searching index with line: ", line);
-			TreeSet<String> stemmedQuery = FileStemmer.uniqueStems(line);
-			String query = String.join(" ", stemmedQuery);
-			synchronized (results) {
-				if (query.isEmpty() || results.containsKey(query)) {
+			SearchQuery parsed = SearchQuery.parse(line);
+			String query = parsed.toString();
+			if (query.isEmpty()) {
+				return;
+			}
+			// a line already being searched is waited for, then its cached results are used
+			String key = (partial ? "partial " : "exact ") + query;
+			while (true) {
+				long generation = safeIndex.generation();
+				if (results.get(query, partial, k, generation) != null) {
 					return;
 				}
-				results.put(query, null);
-			}
-			var local = safeIndex.search(stemmedQuery, partial);
-			synchronized (results) {
-				results.put(query, local);
+				CompletableFuture<Void> searching = new CompletableFuture<>();
+				CompletableFuture<Void> other = pending.putIfAbsent(key, searching);
+				if (other == null) {
+					try {
+						results.put(query, partial, k, generation, safeIndex.search(parsed, partial, k, scorer));
+					} finally {
+						pending.remove(key, searching);
+						searching.complete(null);
+					}
+					break;
+				}
+				other.join();
 			}
 			log.debug("Searched index with line: ", line);
 		}
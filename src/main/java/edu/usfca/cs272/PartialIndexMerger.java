@@ -0,0 +1,93 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Combines the partial InvertedIndex objects built by separate tasks in a tree, so the tasks merge
+ * them in parallel instead of each adding its own to a shared index under its write lock. A partial
+ * index waits at the level of the tree it was built or merged up to until another partial index
+ * reaches the same level, then the task that brought the second one merges them and carries the
+ * result up one level. Like a binary counter, at most one partial index waits at each level, so once
+ * every task is done only a few large partial indexes are left to add to the shared index.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PartialIndexMerger {
+
+	/** The partial index waiting at each level of the tree, or null if there is none */
+	private final List<InvertedIndex> waiting;
+
+	/** Whether new partial indexes should retain word positions */
+	private final boolean positions;
+
+	/**
+	 * Initializes an empty PartialIndexMerger
+	 *
+	 * @param positions whether new partial indexes should retain word positions, which should
+	 *   match the index they are finally added to
+	 */
+	public PartialIndexMerger(boolean positions) {
+		this.waiting = new ArrayList<>();
+		this.positions = positions;
+	}
+
+	/**
+	 * Creates an empty partial index for a task to build
+	 *
+	 * @return a new InvertedIndex
+	 */
+	public InvertedIndex create() {
+		return new InvertedIndex(positions);
+	}
+
+	/**
+	 * Adds a partial index built by a task, merging it with the partial indexes waiting on the way up
+	 * the tree. The merging is done by the calling task without holding any lock.
+	 *
+	 * @param partial the partial index, which must not be used by the caller afterwards
+	 */
+	public void add(InvertedIndex partial) {
+		int level = 0;
+		while (true) {
+			InvertedIndex partner;
+			synchronized (waiting) {
+				if (level == waiting.size()) {
+					waiting.add(null);
+				}
+				partner = waiting.get(level);
+				if (partner == null) {
+					waiting.set(level, partial);
+					return;
+				}
+				waiting.set(level, null);
+			}
+			partner.addAll(partial);
+			partial = partner;
+			level++;
+		}
+	}
+
+	/**
+	 * Adds every waiting partial index to an index, largest first, and empties this merger. Should
+	 * only be called once every task has added its partial index.
+	 *
+	 * @param index the index to add the partial indexes to
+	 */
+	public void finish(InvertedIndex index) {
+		List<InvertedIndex> remaining = new ArrayList<>();
+		synchronized (waiting) {
+			for (int level = waiting.size() - 1; level >= 0; level--) {
+				if (waiting.get(level) != null) {
+					remaining.add(waiting.get(level));
+				}
+			}
+			waiting.clear();
+		}
+		for (InvertedIndex partial: remaining) {
+			index.addAll(partial);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact, sorted collection of word positions backed by a growable primitive
+ * array. Positions are delta encoded, so each element stores the gap from the
+ * previous position instead of the position itself. Positions are expected to
+ * arrive in increasing order, which makes adding a position a simple append.
+ * Out of order or duplicate positions are still handled, just more slowly.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PositionList extends AbstractCollection<Integer> {
+
+	/** The default capacity of a new position list */
+	private static final int DEFAULT_CAPACITY = 2;
+
+	/** Gaps between consecutive positions, the first gap is from zero */
+	private int[] gaps;
+
+	/** Number of positions stored in this list */
+	private int size;
+
+	/** The last (and largest) position stored in this list */
+	private int last;
+
+	/** Constructor for an empty PositionList */
+	public PositionList() {
+		this.gaps = new int[DEFAULT_CAPACITY];
+		this.size = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * Adds a position to this list. Positions larger than the last position are
+	 * appended directly, any other position is merged into its sorted place.
+	 *
+	 * @param position the position to add
+	 * @return true if the position was not already in this list
+	 */
+	public boolean add(int position) {
+		if (size == 0 || position > last) {
+			append(position - last);
+			last = position;
+			return true;
+		}
+		if (contains(position)) {
+			return false;
+		}
+		int[] positions = toArray(new int[size + 1]);
+		positions[size] = position;
+		Arrays.sort(positions);
+		encode(positions, size + 1);
+		return true;
+	}
+
+	@Override
+	public boolean add(Integer position) {
+		return add(position.intValue());
+	}
+
+	/**
+	 * Adds all the positions from another PositionList to this list. If every
+	 * position in the other list comes after this list's positions, the gaps
+	 * are copied over without decoding them.
+	 *
+	 * @param other the PositionList to add
+	 * @return true if this list was modified
+	 */
+	public boolean addAll(PositionList other) {
+		if (other.size == 0) {
+			return false;
+		}
+		if (size == 0 || other.first() > last) {
+			ensureCapacity(size + other.size);
+			System.arraycopy(other.gaps, 0, gaps, size, other.size);
+			gaps[size] = other.gaps[0] - last;
+			size += other.size;
+			last = other.last;
+			return true;
+		}
+		int before = size;
+		int[] merged = new int[size + other.size];
+		int[] mine = toArray(new int[size]);
+		int[] theirs = other.toArray(new int[other.size]);
+		int i = 0, j = 0, k = 0;
+		while (i < mine.length || j < theirs.length) {
+			int next;
+			if (j >= theirs.length || (i < mine.length && mine[i] <= theirs[j])) {
+				next = mine[i++];
+			} else {
+				next = theirs[j++];
+			}
+			if (k == 0 || merged[k - 1] != next) {
+				merged[k++] = next;
+			}
+		}
+		encode(merged, k);
+		return size != before;
+	}
+
+	/**
+	 * Checks to see if a given position is in this list. Stops decoding as soon
+	 * as the running position passes the given position.
+	 *
+	 * @param position the position to search for
+	 * @return true if the position is in this list
+	 */
+	public boolean contains(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		int current = 0;
+		for (int i = 0; i < size; i++) {
+			current += gaps[i];
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Integer position && contains(position.intValue());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the first (and smallest) position in this list.
+	 *
+	 * @return the first position, or 0 if this list is empty
+	 */
+	public int first() {
+		return size == 0 ? 0 : gaps[0];
+	}
+
+	/**
+	 * Returns the last (and largest) position in this list.
+	 *
+	 * @return the last position, or 0 if this list is empty
+	 */
+	public int last() {
+		return last;
+	}
+
+	/**
+	 * Returns the gap stored at a given index, which is the difference between the
+	 * position at that index and the one before it.
+	 *
+	 * @param index the index of the gap
+	 * @return the gap from the previous position, or the first position at index 0
+	 */
+	public int gap(int index) {
+		return gaps[index];
+	}
+
+	/**
+	 * Decodes the positions in this list into the given array, which must be at
+	 * least as large as this list.
+	 *
+	 * @param positions the array to decode the positions into
+	 * @return the given array
+	 */
+	public int[] toArray(int[] positions) {
+		int current = 0;
+		for (int i = 0; i < size; i++) {
+			current += gaps[i];
+			positions[i] = current;
+		}
+		return positions;
+	}
+
+	/**
+	 * Trims the backing array to the number of stored positions.
+	 */
+	public void trimToSize() {
+		if (gaps.length > size) {
+			gaps = Arrays.copyOf(gaps, size);
+		}
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<>() {
+			/** Index of the next gap to decode */
+			private int index = 0;
+
+			/** The last decoded position */
+			private int current = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current += gaps[index++];
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * Appends a gap to the end of this list, growing the backing array if needed.
+	 *
+	 * @param gap the gap from the last position
+	 */
+	private void append(int gap) {
+		ensureCapacity(size + 1);
+		gaps[size++] = gap;
+	}
+
+	/**
+	 * Grows the backing array to at least the given capacity.
+	 *
+	 * @param capacity the minimum capacity needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > gaps.length) {
+			gaps = Arrays.copyOf(gaps, Math.max(capacity, gaps.length + (gaps.length >> 1)));
+		}
+	}
+
+	/**
+	 * Replaces the contents of this list with the first count sorted and unique
+	 * positions in the given array.
+	 *
+	 * @param positions the sorted positions to encode
+	 * @param count the number of positions to encode
+	 */
+	private void encode(int[] positions, int count) {
+		int[] encoded = new int[Math.max(count, DEFAULT_CAPACITY)];
+		int previous = 0;
+		for (int i = 0; i < count; i++) {
+			encoded[i] = positions[i] - previous;
+			previous = positions[i];
+		}
+		gaps = encoded;
+		size = count;
+		last = previous;
+	}
+}
@@ -0,0 +1,473 @@
+package edu.usfca.cs272;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * A parsed query line which may contain quoted phrases, such as {@code "new york"},
+ * and proximity clauses, such as {@code pizza NEAR/3 oven}. A document only matches if
+ * it contains every phrase with its words in consecutive positions, and the two words
+ * of every proximity clause at most the given number of positions apart. Matching
+ * documents are ranked by all of the words of the line, as usual.
+ *
+ * <p>The words of a line without phrases or proximity clauses are exactly its unique
+ * stems, see {@link FileStemmer#uniqueStems(String, Stemmer)}.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PositionalQuery implements SearchQuery {
+
+	/** Regular expression for a proximity operator, with the distance as its group */
+	public static final Pattern NEAR_REGEX = Pattern.compile("\\bNEAR/(\\d+)\\b");
+
+	/** Unique stems of every word in the line, sorted */
+	private final TreeSet<String> words;
+
+	/** Phrase and proximity clauses of the line, in the order they appear */
+	private final List<Clause> clauses;
+
+	/**
+	 * Initializes an empty PositionalQuery
+	 */
+	private PositionalQuery() {
+		this.words = new TreeSet<>();
+		this.clauses = new ArrayList<>();
+	}
+
+	/**
+	 * Parses a query line into its words, phrases and proximity clauses. The words after a
+	 * quotation mark that is never closed are plain words, as if the mark was not there.
+	 *
+	 * @param line the query line
+	 * @param stemmer the stemmer to use
+	 * @return the parsed PositionalQuery
+	 */
+	public static PositionalQuery parse(String line, Stemmer stemmer) {
+		PositionalQuery query = new PositionalQuery();
+		String[] parts = line.split("\"", -1);
+		for (int i = 0; i < parts.length; i++) {
+			// a part after a quote that is never closed is plain words, not a phrase
+			if (i % 2 == 1 && i < parts.length - 1) {
+				query.addPhrase(FileStemmer.listStems(parts[i], stemmer));
+			} else {
+				query.addProximity(parts[i], stemmer);
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Parses a query line into its words, phrases and proximity clauses using the
+	 * default stemmer for English.
+	 *
+	 * @param line the query line
+	 * @return the parsed PositionalQuery
+	 */
+	public static PositionalQuery parse(String line) {
+		return parse(line, StemCache.ENGLISH);
+	}
+
+	/**
+	 * Adds the words of a quoted part of a line, as a phrase if there is more than one.
+	 *
+	 * @param stems the stems of the quoted part, in order
+	 */
+	private void addPhrase(List<String> stems) {
+		words.addAll(stems);
+		if (stems.size() > 1) {
+			clauses.add(new Clause(stems, Clause.PHRASE));
+		}
+	}
+
+	/**
+	 * Adds the words of an unquoted part of a line, and a proximity clause for every
+	 * operator that has a word on both sides of it.
+	 *
+	 * @param part the unquoted part of the line
+	 * @param stemmer the stemmer to use
+	 */
+	private void addProximity(String part, Stemmer stemmer) {
+		Matcher matcher = NEAR_REGEX.matcher(part);
+		int start = 0;
+		String left = null;
+		int distance = -1;
+		while (true) {
+			boolean found = matcher.find();
+			List<String> stems = FileStemmer.listStems(part.substring(start, found ? matcher.start() : part.length()), stemmer);
+			words.addAll(stems);
+			if (distance >= 0 && left != null && !stems.isEmpty()) {
+				clauses.add(new Clause(List.of(left, stems.get(0)), distance));
+			}
+			if (!found) {
+				return;
+			}
+			left = stems.isEmpty() ? null : stems.get(stems.size() - 1);
+			distance = parseDistance(matcher.group(1));
+			start = matcher.end();
+		}
+	}
+
+	/**
+	 * Parses the distance of a proximity operator, see {@link #NEAR_REGEX}. A distance too
+	 * large for an int is as good as no limit, so it is treated as the largest int.
+	 *
+	 * @param digits the digits of the distance
+	 * @return the distance, at most {@link Integer#MAX_VALUE}
+	 */
+	public static int parseDistance(String digits) {
+		try {
+			return Integer.parseInt(digits);
+		} catch (NumberFormatException e) {
+			return Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Returns whether this query has any phrase or proximity clauses.
+	 *
+	 * @return true if matching this query needs word positions
+	 */
+	public boolean isPositional() {
+		return !clauses.isEmpty();
+	}
+
+	/**
+	 * Returns the unique stems of every word in the line, including the words of its clauses.
+	 *
+	 * @return an unmodifiable sorted Set of stems
+	 */
+	@Override
+	public Set<String> getWords() {
+		return Collections.unmodifiableSet(words);
+	}
+
+	/**
+	 * Returns the phrase and proximity clauses of the line.
+	 *
+	 * @return an unmodifiable List of clauses, in the order they appear
+	 */
+	public List<Clause> getClauses() {
+		return Collections.unmodifiableList(clauses);
+	}
+
+	/**
+	 * Returns an iterator over the documents of an index that match every clause of this
+	 * query, or null if it has no clauses. The clause words are always matched exactly.
+	 *
+	 * @param index the index to match against
+	 * @param partial ignored, since clause words are always matched exactly
+	 * @return an iterator over the IDs of the matching documents, or null
+	 */
+	@Override
+	public PostingIterator matches(InvertedIndex index, boolean partial) {
+		return isPositional() ? Matches.of(index, clauses) : null;
+	}
+
+	/**
+	 * Returns the query as a String, which is its stems joined by spaces followed by its
+	 * clauses, so lines with the same words and clauses are the same query.
+	 *
+	 * @return the String form of this query
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(String.join(" ", words));
+		for (Clause clause: clauses) {
+			builder.append(' ').append(clause);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Moves every iterator to the first document at or after a target that all of them
+	 * contain, advancing whichever iterator is behind to the furthest document seen.
+	 *
+	 * @param postings the iterators to intersect
+	 * @param target the document ID to start from
+	 * @return the first common document ID, or {@link PostingIterator#NO_MORE_DOCUMENTS} if there are none
+	 */
+	public static int intersect(PostingIterator[] postings, int target) {
+		int document = target;
+		int agreed = 0;
+		int i = 0;
+		while (agreed < postings.length) {
+			int found = postings[i].advance(document);
+			if (found == PostingIterator.NO_MORE_DOCUMENTS) {
+				return found;
+			}
+			if (found == document) {
+				agreed++;
+			} else {
+				document = found;
+				agreed = 1;
+			}
+			i = (i + 1) % postings.length;
+		}
+		return document;
+	}
+
+	/**
+	 * A phrase, whose words must appear in consecutive positions, or a proximity clause,
+	 * whose two words must appear at most a distance apart in either order.
+	 */
+	public static class Clause {
+
+		/** Distance of a phrase, which is not a proximity clause */
+		public static final int PHRASE = -1;
+
+		/** Stems of the words of the clause, in order */
+		private final List<String> words;
+
+		/** Largest distance between the words of a proximity clause, or {@link #PHRASE} */
+		private final int distance;
+
+		/**
+		 * Constructor for a Clause
+		 *
+		 * @param words the stems of the words, in order
+		 * @param distance the largest distance between the two words of a proximity clause, or {@link #PHRASE}
+		 */
+		public Clause(List<String> words, int distance) {
+			this.words = List.copyOf(words);
+			this.distance = distance;
+		}
+
+		/**
+		 * Returns the stems of the words of this clause.
+		 *
+		 * @return an unmodifiable List of stems, in order
+		 */
+		public List<String> getWords() {
+			return words;
+		}
+
+		/**
+		 * Returns an iterator over the documents of an index that match this clause.
+		 *
+		 * @param index the index to match against
+		 * @return an iterator over the IDs of the matching documents
+		 */
+		public PostingIterator matches(InvertedIndex index) {
+			return Matches.of(index, List.of(this));
+		}
+
+		/**
+		 * Checks whether the current document of every iterator, which must be the same
+		 * document, matches this clause. Positions are read in a single streaming merge
+		 * that stops at the first match. Without positions every document matches.
+		 *
+		 * @param postings an iterator over the postings of each word of this clause, in order
+		 * @return true if the current document matches
+		 */
+		public boolean matches(PostingIterator[] postings) {
+			for (PostingIterator iterator: postings) {
+				if (!iterator.hasPositions()) {
+					return true;
+				}
+			}
+			return distance == PHRASE ? matchesPhrase(postings) : matchesNear(postings[0], postings[1]);
+		}
+
+		/**
+		 * Checks whether the words appear in consecutive positions, by aligning the
+		 * position of each word less its offset in the phrase.
+		 *
+		 * @param postings an iterator over the postings of each word, in order
+		 * @return true if the current document contains the phrase
+		 */
+		private static boolean matchesPhrase(PostingIterator[] postings) {
+			int[] aligned = new int[postings.length];
+			int[] remaining = new int[postings.length];
+			int target = Integer.MIN_VALUE;
+			for (int i = 0; i < postings.length; i++) {
+				remaining[i] = postings[i].frequency() - 1;
+				aligned[i] = postings[i].nextPosition() - i;
+				target = Math.max(target, aligned[i]);
+			}
+
+			boolean matched = false;
+			while (!matched) {
+				matched = true;
+				for (int i = 0; i < postings.length; i++) {
+					while (aligned[i] < target) {
+						if (remaining[i] == 0) {
+							return false;
+						}
+						remaining[i]--;
+						aligned[i] = postings[i].nextPosition() - i;
+					}
+					if (aligned[i] > target) {
+						target = aligned[i];
+						matched = false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Checks whether the two words appear at most the distance apart, by merging
+		 * their positions and always moving the word that is behind. If both words are
+		 * the same, two different occurrences are needed.
+		 *
+		 * @param left an iterator over the postings of the first word
+		 * @param right an iterator over the postings of the second word
+		 * @return true if the current document has the words near each other
+		 */
+		private boolean matchesNear(PostingIterator left, PostingIterator right) {
+			int leftRemaining = left.frequency() - 1;
+			int rightRemaining = right.frequency() - 1;
+			int leftPosition = left.nextPosition();
+			int rightPosition = right.nextPosition();
+			boolean same = words.get(0).equals(words.get(1));
+			while (Math.abs(leftPosition - rightPosition) > distance || (same && leftPosition == rightPosition)) {
+				if (leftPosition <= rightPosition) {
+					if (leftRemaining-- == 0) {
+						return false;
+					}
+					leftPosition = left.nextPosition();
+				} else {
+					if (rightRemaining-- == 0) {
+						return false;
+					}
+					rightPosition = right.nextPosition();
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			if (distance == PHRASE) {
+				return "\"" + String.join(" ", words) + "\"";
+			}
+			return words.get(0) + " NEAR/" + distance + " " + words.get(1);
+		}
+	}
+
+	/**
+	 * Iterator over the documents that match a list of clauses. Only the documents that
+	 * contain every word of every clause are visited, by intersecting the postings of
+	 * those words, and each is checked against the clauses using the stored positions.
+	 */
+	private static class Matches implements PostingIterator {
+
+		/** Clauses to match */
+		private final List<Clause> clauses;
+
+		/** Postings of the words of each clause, parallel to clauses */
+		private final List<PostingIterator[]> clausePostings;
+
+		/** Postings of the words of every clause together */
+		private final PostingIterator[] required;
+
+		/** Current document ID */
+		private int document;
+
+		/**
+		 * Constructor for a Matches iterator
+		 *
+		 * @param clauses the clauses to match
+		 * @param clausePostings the postings of the words of each clause, parallel to clauses
+		 * @param required the postings of the words of every clause together
+		 */
+		private Matches(List<Clause> clauses, List<PostingIterator[]> clausePostings, PostingIterator[] required) {
+			this.clauses = clauses;
+			this.clausePostings = clausePostings;
+			this.required = required;
+			this.document = -1;
+		}
+
+		/**
+		 * Returns an iterator over the documents of an index that match every clause.
+		 *
+		 * @param index the index to match against
+		 * @param clauses the clauses to match
+		 * @return an iterator over the IDs of the matching documents
+		 */
+		private static PostingIterator of(InvertedIndex index, List<Clause> clauses) {
+			List<PostingIterator[]> clausePostings = new ArrayList<>();
+			List<PostingIterator> required = new ArrayList<>();
+			for (Clause clause: clauses) {
+				PostingIterator[] postings = new PostingIterator[clause.getWords().size()];
+				for (int i = 0; i < postings.length; i++) {
+					postings[i] = index.postings(clause.getWords().get(i));
+					if (postings[i] == null) {
+						return PostingIterator.empty();
+					}
+					required.add(postings[i]);
+				}
+				clausePostings.add(postings);
+			}
+			PostingIterator[] all = required.toArray(new PostingIterator[0]);
+			Arrays.sort(all, Comparator.comparingInt(PostingIterator::size));
+			return new Matches(clauses, clausePostings, all);
+		}
+
+		@Override
+		public int next() {
+			return advance(document + 1);
+		}
+
+		@Override
+		public int advance(int target) {
+			if (document >= target) {
+				return document;
+			}
+			document = intersect(required, target);
+			while (document != NO_MORE_DOCUMENTS && !matchesAll()) {
+				document = intersect(required, document + 1);
+			}
+			return document;
+		}
+
+		/**
+		 * Checks whether the current document matches every clause.
+		 *
+		 * @return true if the current document matches
+		 */
+		private boolean matchesAll() {
+			for (int i = 0; i < clauses.size(); i++) {
+				if (!clauses.get(i).matches(clausePostings.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int document() {
+			return document;
+		}
+
+		@Override
+		public int frequency() {
+			return 1;
+		}
+
+		@Override
+		public int nextPosition() {
+			throw new UnsupportedOperationException("Matching documents have no positions.");
+		}
+
+		@Override
+		public boolean hasPositions() {
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return required.length == 0 ? 0 : required[0].size();
+		}
+	}
+}
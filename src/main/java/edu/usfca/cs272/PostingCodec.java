@@ -0,0 +1,77 @@
+package edu.usfca.cs272;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for variable-byte (VByte) encoding of the integers stored in
+ * compressed postings. Each byte holds seven bits of the value, least
+ * significant group first, and the high bit is set on every byte except the
+ * last one. Small values such as the gaps between sorted document IDs or word
+ * positions take a single byte.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PostingCodec {
+
+	/**
+	 * Writes a non-negative integer in variable-byte format.
+	 *
+	 * @param out the stream to write to
+	 * @param value the value to write
+	 */
+	public static void writeVInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Writes an integer in fixed-width, four byte big-endian format.
+	 *
+	 * @param out the stream to write to
+	 * @param value the value to write
+	 */
+	public static void writeInt(ByteArrayOutputStream out, int value) {
+		out.write(value >>> 24);
+		out.write(value >>> 16);
+		out.write(value >>> 8);
+		out.write(value);
+	}
+
+	/**
+	 * Reads a variable-byte integer starting at the buffer's position, and moves
+	 * the position past it.
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the decoded value
+	 */
+	public static int readVInt(ByteBuffer buffer) {
+		byte b = buffer.get();
+		int value = b & 0x7F;
+		for (int shift = 7; b < 0; shift += 7) {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+		}
+		return value;
+	}
+
+	/**
+	 * Moves the buffer's position past a number of variable-byte integers without
+	 * decoding them.
+	 *
+	 * @param buffer the buffer to skip through
+	 * @param count the number of integers to skip
+	 */
+	public static void skipVInts(ByteBuffer buffer, int count) {
+		while (count > 0) {
+			if (buffer.get() >= 0) {
+				count--;
+			}
+		}
+	}
+}
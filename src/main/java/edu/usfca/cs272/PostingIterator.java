@@ -0,0 +1,114 @@
+package edu.usfca.cs272;
+
+/**
+ * Interface for iterating over the postings of a single word in increasing
+ * document ID order. A new iterator is positioned before its first posting, so
+ * {@link #next()} or {@link #advance(int)} must be called before reading the
+ * current document, its frequency, or its positions.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public interface PostingIterator {
+
+	/** Document ID returned once the iterator has no more postings */
+	public static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+
+	/**
+	 * Moves to the next posting.
+	 *
+	 * @return the next document ID, or {@link #NO_MORE_DOCUMENTS} if there are none
+	 */
+	public int next();
+
+	/**
+	 * Moves to the first posting with a document ID greater than or equal to the
+	 * target. Implementations may skip over postings without decoding them.
+	 *
+	 * @param target the document ID to advance to
+	 * @return the current document ID, or {@link #NO_MORE_DOCUMENTS} if there are none
+	 */
+	public default int advance(int target) {
+		int document = document();
+		while (document < target) {
+			document = next();
+		}
+		return document;
+	}
+
+	/**
+	 * Returns the current document ID.
+	 *
+	 * @return the current document ID, -1 before the first call to next, or
+	 *   {@link #NO_MORE_DOCUMENTS} once exhausted
+	 */
+	public int document();
+
+	/**
+	 * Returns the number of times the word occurs in the current document.
+	 *
+	 * @return the frequency of the word in the current document
+	 */
+	public int frequency();
+
+	/**
+	 * Returns the next position of the word in the current document. May be
+	 * called up to {@link #frequency()} times per document.
+	 *
+	 * @return the next position of the word in the current document
+	 * @throws UnsupportedOperationException if positions were not retained
+	 */
+	public int nextPosition();
+
+	/**
+	 * Returns whether the positions of the word were retained, or only how often
+	 * the word occurs in each document, see {@link #nextPosition()}.
+	 *
+	 * @return true if the positions can be read
+	 */
+	public default boolean hasPositions() {
+		return true;
+	}
+
+	/**
+	 * Returns the total number of postings this iterator covers.
+	 *
+	 * @return the number of documents containing the word
+	 */
+	public int size();
+
+	/**
+	 * Returns an iterator without any postings.
+	 *
+	 * @return an empty PostingIterator
+	 */
+	public static PostingIterator empty() {
+		return new PostingIterator() {
+			@Override
+			public int next() {
+				return NO_MORE_DOCUMENTS;
+			}
+
+			@Override
+			public int document() {
+				return NO_MORE_DOCUMENTS;
+			}
+
+			@Override
+			public int frequency() {
+				return 0;
+			}
+
+			@Override
+			public int nextPosition() {
+				throw new UnsupportedOperationException("Empty iterator has no positions.");
+			}
+
+			@Override
+			public int size() {
+				return 0;
+			}
+		};
+	}
+}
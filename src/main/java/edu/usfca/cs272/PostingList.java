@@ -0,0 +1,408 @@
+package edu.usfca.cs272;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Class responsible for storing the postings of a single word: the IDs of the
+ * documents the word occurs in, kept in increasing order, and the positions of
+ * the word within each of those documents. Documents are normally added in
+ * increasing ID order, which makes adding a posting a simple append.
+ *
+ * <p>
+ * A PostingList may also be created without positions, in which case only the
+ * number of times the word occurs in each document is kept. Each position added
+ * is then assumed to be new, since there is nothing to compare it against.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PostingList {
+
+	/** The default capacity of a new posting list */
+	private static final int DEFAULT_CAPACITY = 2;
+
+	/** Sorted IDs of the documents containing the word */
+	private int[] documents;
+
+	/** Positions of the word, parallel to the documents array, or null if positions are not retained */
+	private PositionList[] positions;
+
+	/** Frequencies of the word, parallel to the documents array, only used if positions are not retained */
+	private int[] frequencies;
+
+	/** Number of documents in this posting list */
+	private int size;
+
+	/** Constructor for an empty PostingList */
+	public PostingList() {
+		this(true);
+	}
+
+	/**
+	 * Constructor for an empty PostingList
+	 *
+	 * @param positions whether to retain the positions of the word, or only its frequencies
+	 */
+	public PostingList(boolean positions) {
+		this.documents = new int[DEFAULT_CAPACITY];
+		this.positions = positions ? new PositionList[DEFAULT_CAPACITY] : null;
+		this.frequencies = positions ? null : new int[DEFAULT_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns whether this list retains the positions of the word.
+	 *
+	 * @return true if positions are retained, false if only frequencies are
+	 */
+	public boolean hasPositions() {
+		return positions != null;
+	}
+
+	/**
+	 * Adds a position of the word within a given document.
+	 *
+	 * @param document the document ID
+	 * @param position the position of the word in the document
+	 * @return true if the position was not already stored, which is always the case
+	 *   if positions are not retained
+	 */
+	public boolean add(int document, int position) {
+		if (positions == null) {
+			addFrequency(document, 1);
+			return true;
+		}
+		return getOrCreate(document).add(position);
+	}
+
+	/**
+	 * Adds to the number of times the word occurs in a given document, for a list
+	 * that does not retain positions.
+	 *
+	 * @param document the document ID
+	 * @param frequency the number of occurrences to add
+	 * @throws UnsupportedOperationException if this list retains positions
+	 */
+	public void addFrequency(int document, int frequency) {
+		if (positions != null) {
+			throw new UnsupportedOperationException("Positions must be added to a list that retains them");
+		}
+		int index = indexOf(document);
+		if (index >= 0) {
+			frequencies[index] += frequency;
+		} else {
+			insert(-index - 1, document, null, frequency);
+		}
+	}
+
+	/**
+	 * Adds all the postings of another PostingList to this list. The document IDs
+	 * of the other list are translated using the given mapping, and position
+	 * lists of documents new to this list are shared rather than copied.
+	 *
+	 * @param other the PostingList to add
+	 * @param mapping the ID in this list for each document ID of the other list
+	 * @throws UnsupportedOperationException if this list retains positions but the other does not
+	 */
+	public void addAll(PostingList other, int[] mapping) {
+		if (positions != null && other.positions == null) {
+			throw new UnsupportedOperationException("Positions were not retained by the postings to add");
+		}
+		ensureCapacity(size + other.size);
+		for (int i = 0; i < other.size; i++) {
+			int document = mapping[other.documents[i]];
+			if (positions == null) {
+				addFrequency(document, other.frequency(i));
+				continue;
+			}
+			int index = indexOf(document);
+			if (index >= 0) {
+				positions[index].addAll(other.positions[i]);
+			} else {
+				insert(-index - 1, document, other.positions[i], 0);
+			}
+		}
+	}
+
+	/**
+	 * Adds all the postings of an iterator to this list, translating their document
+	 * IDs using the given mapping.
+	 *
+	 * @param postings the postings to add
+	 * @param mapping the ID in this list for each document ID of the postings, or
+	 *   null to keep the IDs
+	 * @throws UnsupportedOperationException if this list retains positions but the postings do not
+	 */
+	public void addAll(PostingIterator postings, int[] mapping) {
+		if (positions != null && !postings.hasPositions()) {
+			throw new UnsupportedOperationException("Positions were not retained by the postings to add");
+		}
+		for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+			int mapped = mapping != null ? mapping[document] : document;
+			if (positions == null) {
+				addFrequency(mapped, postings.frequency());
+				continue;
+			}
+			PositionList list = getOrCreate(mapped);
+			for (int i = 0; i < postings.frequency(); i++) {
+				list.add(postings.nextPosition());
+			}
+		}
+	}
+
+	/**
+	 * Returns the positions of the word within a given document.
+	 *
+	 * @param document the document ID
+	 * @return the positions, or null if the word is not in the document or positions
+	 *   are not retained
+	 */
+	public PositionList get(int document) {
+		int index = indexOf(document);
+		return index >= 0 && positions != null ? positions[index] : null;
+	}
+
+	/**
+	 * Checks whether the word occurs in a given document.
+	 *
+	 * @param document the document ID
+	 * @return true if the word occurs in the document
+	 */
+	public boolean contains(int document) {
+		return indexOf(document) >= 0;
+	}
+
+	/**
+	 * Returns the number of times the word occurs in a given document.
+	 *
+	 * @param document the document ID
+	 * @return the frequency of the word within the document, or 0 if it does not occur in it
+	 */
+	public int frequencyOf(int document) {
+		int index = indexOf(document);
+		return index >= 0 ? frequency(index) : 0;
+	}
+
+	/**
+	 * Returns the number of documents in this posting list.
+	 *
+	 * @return the number of documents containing the word
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the document ID at a given index of this list.
+	 *
+	 * @param index the index of the posting
+	 * @return the document ID
+	 */
+	public int document(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Returns the positions at a given index of this list.
+	 *
+	 * @param index the index of the posting
+	 * @return the positions of the word within the document, or null if positions
+	 *   are not retained
+	 */
+	public PositionList positions(int index) {
+		return positions != null ? positions[index] : null;
+	}
+
+	/**
+	 * Returns the number of times the word occurs in the document at a given
+	 * index of this list.
+	 *
+	 * @param index the index of the posting
+	 * @return the frequency of the word within the document
+	 */
+	public int frequency(int index) {
+		return positions != null ? positions[index].size() : frequencies[index];
+	}
+
+	/**
+	 * Returns a new iterator over the postings in this list. Advancing the iterator
+	 * gallops over the document IDs instead of stepping through each one.
+	 *
+	 * @return a PostingIterator positioned before the first posting
+	 */
+	public PostingIterator iterator() {
+		return new PostingIterator() {
+			/** Index of the current posting */
+			private int index = -1;
+
+			/** Index of the next gap to read from the current positions */
+			private int read = 0;
+
+			/** The last position read from the current positions */
+			private int position = 0;
+
+			@Override
+			public int next() {
+				index++;
+				read = 0;
+				position = 0;
+				return document();
+			}
+
+			@Override
+			public int advance(int target) {
+				if (index >= size || (index >= 0 && documents[index] >= target)) {
+					return document();
+				}
+				int low = index + 1;
+				int step = 1;
+				while (low + step < size && documents[low + step] < target) {
+					low += step;
+					step <<= 1;
+				}
+				int found = Arrays.binarySearch(documents, low, Math.min(low + step + 1, size), target);
+				index = found >= 0 ? found : -found - 1;
+				read = 0;
+				position = 0;
+				return document();
+			}
+
+			@Override
+			public int document() {
+				if (index < 0) {
+					return -1;
+				}
+				return index < size ? documents[index] : NO_MORE_DOCUMENTS;
+			}
+
+			@Override
+			public int frequency() {
+				return PostingList.this.frequency(index);
+			}
+
+			@Override
+			public int nextPosition() {
+				if (positions == null) {
+					throw new UnsupportedOperationException("Positions were not retained");
+				}
+				position += positions[index].gap(read++);
+				return position;
+			}
+
+			@Override
+			public boolean hasPositions() {
+				return positions != null;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Compresses this posting list, see {@link CompressedPostingList}.
+	 *
+	 * @return the compressed form of this posting list
+	 */
+	public CompressedPostingList compress() {
+		return CompressedPostingList.compress(iterator());
+	}
+
+	/**
+	 * Builds a map of the postings with each document ID resolved to its
+	 * location, sorted by location.
+	 *
+	 * @param table the DocumentTable used to resolve document IDs
+	 * @return a TreeMap from document location to positions, which are empty if
+	 *   positions are not retained
+	 */
+	public TreeMap<String, PositionList> toMap(DocumentTable table) {
+		TreeMap<String, PositionList> map = new TreeMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(table.location(documents[i]), positions != null ? positions[i] : new PositionList());
+		}
+		return map;
+	}
+
+	/**
+	 * Finds the positions of a given document, creating them if necessary.
+	 *
+	 * @param document the document ID
+	 * @return the positions of the word within the document
+	 */
+	private PositionList getOrCreate(int document) {
+		int index = indexOf(document);
+		if (index >= 0) {
+			return positions[index];
+		}
+		PositionList created = new PositionList();
+		ensureCapacity(size + 1);
+		insert(-index - 1, document, created, 0);
+		return created;
+	}
+
+	/**
+	 * Finds the index of a given document ID. Checks the last document first, since
+	 * that is where documents are usually added.
+	 *
+	 * @param document the document ID to find
+	 * @return the index of the document, or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(int document) {
+		if (size == 0 || document > documents[size - 1]) {
+			return -size - 1;
+		}
+		if (document == documents[size - 1]) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Inserts a posting at a given index, shifting any later postings over.
+	 *
+	 * @param index the index to insert at
+	 * @param document the document ID
+	 * @param list the positions of the word within the document, if positions are retained
+	 * @param frequency the frequency of the word within the document, if positions are not retained
+	 */
+	private void insert(int index, int document, PositionList list, int frequency) {
+		ensureCapacity(size + 1);
+		if (index < size) {
+			System.arraycopy(documents, index, documents, index + 1, size - index);
+			if (positions != null) {
+				System.arraycopy(positions, index, positions, index + 1, size - index);
+			} else {
+				System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+			}
+		}
+		documents[index] = document;
+		if (positions != null) {
+			positions[index] = list;
+		} else {
+			frequencies[index] = frequency;
+		}
+		size++;
+	}
+
+	/**
+	 * Grows the backing arrays to at least the given capacity.
+	 *
+	 * @param capacity the minimum capacity needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > documents.length) {
+			int grown = Math.max(capacity, documents.length + (documents.length >> 1));
+			documents = Arrays.copyOf(documents, grown);
+			if (positions != null) {
+				positions = Arrays.copyOf(positions, grown);
+			} else {
+				frequencies = Arrays.copyOf(frequencies, grown);
+			}
+		}
+	}
+}
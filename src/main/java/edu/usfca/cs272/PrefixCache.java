@@ -0,0 +1,197 @@
+package edu.usfca.cs272;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the merged postings of prefixes searched by a partial search, so a
+ * prefix that is searched again skips both finding the words that start with it and
+ * merging their postings. Each entry holds, for every document containing one of the
+ * words, the total frequency of the words and the sum of their scores, which depend on
+ * the Scorer, so entries are keyed by the prefix and the Scorer.
+ *
+ * <p>Once the total number of documents held reaches the capacity, new prefixes are still
+ * merged but no longer cached, which keeps the prefixes searched first, like a {@link StemCache}.
+ * Entries are also keyed by the version of the index they were merged from, see
+ * {@link InvertedIndex#generation()}, and the cache is cleared as soon as it is used with a
+ * different version. Every index has its own cache, so the cache of a snapshot, see
+ * {@link InvertedIndex#freeze()}, is discarded with it. Lookups and additions do not lock,
+ * so one cache may be shared by every thread reading the same index.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PrefixCache {
+
+	/** Default largest total number of documents to hold */
+	public static final int DEFAULT_CAPACITY = 1 << 18;
+
+	/** Fewest words a prefix must expand to for its postings to be worth merging and caching */
+	public static final int MIN_WORDS = 2;
+
+	/** Merged postings of each prefix */
+	private final ConcurrentHashMap<Key, Postings> entries;
+
+	/** Largest total number of documents to hold */
+	private final long capacity;
+
+	/** Total number of documents held */
+	private final AtomicLong weight;
+
+	/** Version of the index the entries were merged from */
+	private volatile long version;
+
+	/**
+	 * Initializes a PrefixCache with the default capacity.
+	 */
+	public PrefixCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes a PrefixCache that holds at most a number of documents.
+	 *
+	 * @param capacity the largest total number of documents to hold
+	 */
+	public PrefixCache(long capacity) {
+		this.entries = new ConcurrentHashMap<>();
+		this.capacity = capacity;
+		this.weight = new AtomicLong();
+	}
+
+	/**
+	 * Returns the merged postings of a prefix, if they were merged from the same version of the index.
+	 *
+	 * @param prefix the prefix
+	 * @param scorer the Scorer the postings were scored with
+	 * @param version the current version of the index
+	 * @return the merged postings, or null if there are none
+	 */
+	public Postings get(String prefix, Scorer scorer, long version) {
+		return version == this.version ? entries.get(new Key(prefix, scorer, version)) : null;
+	}
+
+	/**
+	 * Adds the merged postings of a prefix, unless the cache would then hold more documents
+	 * than its capacity.
+	 *
+	 * @param prefix the prefix
+	 * @param scorer the Scorer the postings were scored with
+	 * @param version the version of the index the postings were merged from
+	 * @param postings the merged postings
+	 */
+	public void put(String prefix, Scorer scorer, long version, Postings postings) {
+		if (version != this.version) {
+			checkVersion(version);
+		}
+		if (weight.addAndGet(postings.size()) > capacity) {
+			weight.addAndGet(-postings.size());
+			return;
+		}
+		if (entries.putIfAbsent(new Key(prefix, scorer, version), postings) != null) {
+			weight.addAndGet(-postings.size());
+		}
+	}
+
+	/**
+	 * Clears the cache if the index changed since the entries were merged. Entries keep the
+	 * version they were merged from, so one added by a search of an older version while the
+	 * cache is cleared is never returned for a newer one.
+	 *
+	 * @param version the current version of the index
+	 */
+	private synchronized void checkVersion(long version) {
+		if (version != this.version) {
+			entries.clear();
+			weight.set(0);
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Returns the number of prefixes held.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Merged postings of the words starting with a prefix, in increasing document ID order.
+	 */
+	public static class Postings {
+
+		/** Document IDs */
+		public final int[] documents;
+
+		/** Total frequency of the words in each document, parallel to documents */
+		public final int[] frequencies;
+
+		/** Sum of the scores of the words in each document, parallel to documents */
+		public final double[] sums;
+
+		/**
+		 * Constructor for merged Postings
+		 *
+		 * @param documents the document IDs, in increasing order
+		 * @param frequencies the total frequency of the words in each document
+		 * @param sums the sum of the scores of the words in each document
+		 */
+		public Postings(int[] documents, int[] frequencies, double[] sums) {
+			this.documents = documents;
+			this.frequencies = frequencies;
+			this.sums = sums;
+		}
+
+		/**
+		 * Returns the number of documents.
+		 *
+		 * @return the number of documents containing one of the words
+		 */
+		public int size() {
+			return documents.length;
+		}
+	}
+
+	/**
+	 * Key of a cache entry, which is a prefix, the Scorer its postings were scored with and
+	 * the version of the index they were merged from.
+	 */
+	private static class Key {
+
+		/** The prefix */
+		private final String prefix;
+
+		/** The Scorer the postings were scored with */
+		private final Scorer scorer;
+
+		/** The version of the index the postings were merged from */
+		private final long version;
+
+		/**
+		 * Constructor for a Key
+		 *
+		 * @param prefix the prefix
+		 * @param scorer the Scorer the postings were scored with
+		 * @param version the version of the index the postings were merged from
+		 */
+		public Key(String prefix, Scorer scorer, long version) {
+			this.prefix = prefix;
+			this.scorer = scorer;
+			this.version = version;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key other && scorer == other.scorer && version == other.version && prefix.equals(other.prefix);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(prefix, System.identityHashCode(scorer), version);
+		}
+	}
+}
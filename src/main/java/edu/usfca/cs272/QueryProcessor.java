@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import edu.usfca.cs272.InvertedIndex.QueryMetaData;
 
@@ -27,22 +28,49 @@ public interface QueryProcessor {
 	 * @throws IOException if unable to open the query File or other exception
 	 */
 	default void processQueries(Path path, boolean partial) throws IOException {
+		processQueries(path, partial, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Same as {@link #processQueries(Path, boolean)}, but only keeps the k best results of each line.
+	 * 
+	 * @param path the Path to a given query file
+	 * @param partial Boolean whether or not to perform a partial search
+	 * @param k the maximum number of results to keep for each line
+	 * @throws IOException if unable to open the query File or other exception
+	 */
+	default void processQueries(Path path, boolean partial, int k) throws IOException {
 		try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
 			String line;
 			while ((line = reader.readLine()) != null) {
-				processQueries(line, partial);
+				processQueries(line, partial, k);
 			}
 		}
 	}
 	
 	/**
 	 * Given a line of queries, builds the results data structure with the line as the key, and the resultant
-	 * TreeSet of QueryMetaData objects that is returned by partialSearch/exactSeach as the value. 
+	 * TreeSet of QueryMetaData objects that is returned by partialSearch/exactSeach as the value. The line
+	 * may contain quoted phrases and NEAR/k proximity clauses, see {@link PositionalQuery}, or the boolean
+	 * operators AND, OR and NOT, see {@link BooleanQuery}.
 	 * 
 	 * @param line String of queries to search for in the InvertedIndex data structure
 	 * @param partial Boolean whether or not to perform a partial search
 	 */
-	public void processQueries(String line, boolean partial);
+	default void processQueries(String line, boolean partial) {
+		processQueries(line, partial, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Same as {@link #processQueries(String, boolean)}, but only keeps the k best results of the line.
+	 * A line that was already processed is only searched again if the index changed since, or if
+	 * more results are needed.
+	 * 
+	 * @param line String of queries to search for in the InvertedIndex data structure
+	 * @param partial Boolean whether or not to perform a partial search
+	 * @param k the maximum number of results to keep
+	 */
+	public void processQueries(String line, boolean partial, int k);
 	
 	/**
 	 * Writes the results map to a given file in a JSON format
@@ -73,4 +101,11 @@ public interface QueryProcessor {
 	 * @return List of QueryMetaData objects which are the results for the given query
 	 */
 	public List<QueryMetaData> getQueryResults(String line);
+	
+	/**
+	 * Returns statistics on how the results data structure was used, see {@link ResultCache#statistics()}
+	 * 
+	 * @return a sorted map from statistic name to value
+	 */
+	public Map<String, Long> getCacheStatistics();
 }
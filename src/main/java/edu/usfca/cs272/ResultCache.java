@@ -0,0 +1,255 @@
+package edu.usfca.cs272;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import edu.usfca.cs272.InvertedIndex.QueryMetaData;
+
+/**
+ * Bounded cache of the results of query lines, keyed by the String form of the parsed
+ * query and whether the search was partial. The least recently used entries are evicted
+ * once the total number of results held is over the capacity. Every entry remembers the
+ * generation of the index it was searched in, see {@link InvertedIndex#generation()}, and
+ * is dropped instead of returned once the index has changed.
+ *
+ * <p>All methods are synchronized, so one cache may be shared by several threads.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ResultCache {
+
+	/** Capacity of a cache that never evicts */
+	public static final long UNBOUNDED = Long.MAX_VALUE;
+
+	/** Entries in order of use, least recently used first */
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/** Largest total number of results to hold */
+	private final long capacity;
+
+	/** Total number of results held, counting each entry as one more than its results */
+	private long weight;
+
+	/** Number of entries stored so far, to tell which of two entries is newer */
+	private long stored;
+
+	/** Number of lookups that returned results */
+	private long hits;
+
+	/** Number of lookups that did not */
+	private long misses;
+
+	/** Number of entries evicted to stay within the capacity */
+	private long evictions;
+
+	/** Number of entries dropped because the index changed */
+	private long invalidations;
+
+	/**
+	 * Initializes a ResultCache that never evicts.
+	 */
+	public ResultCache() {
+		this(UNBOUNDED);
+	}
+
+	/**
+	 * Initializes a ResultCache that holds at most a number of results.
+	 *
+	 * @param capacity the largest total number of results to hold
+	 */
+	public ResultCache(long capacity) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the results of a query, if they were searched in the current generation
+	 * of the index with at least k results. Results searched with a larger k are cut
+	 * down to the best k.
+	 *
+	 * @param query the String form of the parsed query
+	 * @param partial whether the search is partial
+	 * @param k the number of results needed
+	 * @param generation the current generation of the index
+	 * @return at most k cached results, or null if there are none that can be used
+	 */
+	public synchronized List<QueryMetaData> get(String query, boolean partial, int k, long generation) {
+		Key key = new Key(query, partial);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.generation != generation) {
+			remove(key);
+			invalidations++;
+			entry = null;
+		}
+		if (entry == null || entry.k < k) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.results.size() > k ? entry.results.subList(0, k) : entry.results;
+	}
+
+	/**
+	 * Returns the newest results of a query, whether the search was partial or not,
+	 * without checking the generation or counting the lookup.
+	 *
+	 * @param query the String form of the parsed query
+	 * @return the cached results, or null if there are none
+	 */
+	public synchronized List<QueryMetaData> peek(String query) {
+		Entry exact = entries.get(new Key(query, false));
+		Entry partial = entries.get(new Key(query, true));
+		if (exact == null || (partial != null && partial.order > exact.order)) {
+			exact = partial;
+		}
+		return exact == null ? null : exact.results;
+	}
+
+	/**
+	 * Adds the results of a query, evicting the least recently used entries if the
+	 * cache holds more results than its capacity. The newest entry is always kept.
+	 *
+	 * @param query the String form of the parsed query
+	 * @param partial whether the search was partial
+	 * @param k the number of results that was searched for
+	 * @param generation the generation of the index when the search started
+	 * @param results the results of the search
+	 */
+	public synchronized void put(String query, boolean partial, int k, long generation, List<QueryMetaData> results) {
+		Key key = new Key(query, partial);
+		remove(key);
+		entries.put(key, new Entry(results, k, generation, stored++));
+		weight += results.size() + 1;
+
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+		while (weight > capacity && entries.size() > 1) {
+			Entry evicted = iterator.next().getValue();
+			iterator.remove();
+			weight -= evicted.results.size() + 1;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes an entry if there is one.
+	 *
+	 * @param key the key of the entry
+	 */
+	private void remove(Key key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			weight -= entry.results.size() + 1;
+		}
+	}
+
+	/**
+	 * Returns the newest results of every query held, sorted by query.
+	 *
+	 * @return a sorted map from query to its results
+	 */
+	public synchronized TreeMap<String, List<QueryMetaData>> toMap() {
+		TreeMap<String, List<QueryMetaData>> results = new TreeMap<>();
+		TreeMap<String, Long> orders = new TreeMap<>();
+		for (var entry: entries.entrySet()) {
+			String query = entry.getKey().query;
+			Long order = orders.get(query);
+			if (order == null || order < entry.getValue().order) {
+				orders.put(query, entry.getValue().order);
+				results.put(query, entry.getValue().results);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns statistics on how this cache was used.
+	 *
+	 * @return a sorted map from statistic name to value
+	 */
+	public synchronized Map<String, Long> statistics() {
+		TreeMap<String, Long> statistics = new TreeMap<>();
+		statistics.put("hits", hits);
+		statistics.put("misses", misses);
+		statistics.put("evictions", evictions);
+		statistics.put("invalidations", invalidations);
+		statistics.put("entries", (long) entries.size());
+		statistics.put("weight", weight);
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+
+	/**
+	 * Key of a cache entry, which is a query and whether the search was partial.
+	 */
+	private static class Key {
+
+		/** String form of the parsed query */
+		private final String query;
+
+		/** Whether the search was partial */
+		private final boolean partial;
+
+		/**
+		 * Constructor for a Key
+		 *
+		 * @param query the String form of the parsed query
+		 * @param partial whether the search was partial
+		 */
+		public Key(String query, boolean partial) {
+			this.query = query;
+			this.partial = partial;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key other && partial == other.partial && query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, partial);
+		}
+	}
+
+	/**
+	 * Cached results of a query.
+	 */
+	private static class Entry {
+
+		/** Results of the search */
+		private final List<QueryMetaData> results;
+
+		/** Number of results that was searched for */
+		private final int k;
+
+		/** Generation of the index when the search started */
+		private final long generation;
+
+		/** Number of entries stored before this one */
+		private final long order;
+
+		/**
+		 * Constructor for an Entry
+		 *
+		 * @param results the results of the search
+		 * @param k the number of results that was searched for
+		 * @param generation the generation of the index when the search started
+		 * @param order the number of entries stored before this one
+		 */
+		public Entry(List<QueryMetaData> results, int k, long generation, long order) {
+			this.results = results;
+			this.k = k;
+			this.generation = generation;
+			this.order = order;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package edu.usfca.cs272;
+
+/**
+ * Interface for the ranking functions used to score search results. The score of a
+ * document is built from one score for each query word found in it, which may depend
+ * on a weight of the word, such as its inverse document frequency, and on a norm of
+ * the document, such as its length. Weights and norms only depend on the index, so
+ * they are computed once per word and per document rather than once per posting.
+ *
+ * <p>Word scores must not be negative, and the final score of a document must be the
+ * sum of its word scores, up to rounding,
+ * so searches for the k best results can bound the score of a document by the largest
+ * score each of its words can have, see {@link MaxScoreSearch}.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public interface Scorer {
+
+	/** Scores documents by how many of their words are query words, the default */
+	public static final Scorer COUNT = new CountScorer();
+
+	/** Scores documents with TF-IDF */
+	public static final Scorer TFIDF = new TfIdfScorer();
+
+	/** Scores documents with Okapi BM25 */
+	public static final Scorer BM25 = new Bm25Scorer(Bm25Scorer.DEFAULT_K1, Bm25Scorer.DEFAULT_B);
+
+	/**
+	 * Returns the Scorer with a given name, ignoring case.
+	 *
+	 * @param name the name of the Scorer, one of count, tfidf or bm25
+	 * @return the Scorer, or null if there is none with the given name
+	 */
+	public static Scorer of(String name) {
+		if (name == null) {
+			return null;
+		}
+		return switch (name.toLowerCase()) {
+			case "count" -> COUNT;
+			case "tfidf" -> TFIDF;
+			case "bm25" -> BM25;
+			default -> null;
+		};
+	}
+
+	/**
+	 * Computes the norm of a document, which is passed to {@link #score(int, double, double)}
+	 * for every query word found in the document.
+	 *
+	 * @param length the number of words in the document
+	 * @param averageLength the average number of words in a document of the index
+	 * @return the norm of the document
+	 */
+	public double norm(int length, double averageLength);
+
+	/**
+	 * Computes the weight of a word, which is passed to {@link #score(int, double, double)}
+	 * for every document the word is found in.
+	 *
+	 * @param documentFrequency the number of documents the word is found in
+	 * @param documents the number of documents in the index
+	 * @return the weight of the word
+	 */
+	public double weight(int documentFrequency, int documents);
+
+	/**
+	 * Computes the score a query word adds to a document.
+	 *
+	 * @param frequency the number of times the word occurs in the document
+	 * @param weight the weight of the word
+	 * @param norm the norm of the document
+	 * @return the score of the word in the document
+	 */
+	public double score(int frequency, double weight, double norm);
+
+	/**
+	 * Computes the final score of a document from the scores of its query words. May be
+	 * overridden to compute the same value more precisely, but must not change the order
+	 * of two documents by more than rounding.
+	 *
+	 * @param count the total number of times the query words occur in the document
+	 * @param sum the sum of the scores of the query words in the document
+	 * @param length the number of words in the document
+	 * @return the final score of the document
+	 */
+	public default double finish(int count, double sum, int length) {
+		return sum;
+	}
+}
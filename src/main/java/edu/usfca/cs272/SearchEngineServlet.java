@@ -9,6 +9,7 @@ import java.time.LocalDate;
 import java.time.format.TextStyle;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,6 +37,9 @@ public class SearchEngineServlet extends HttpServlet {
 	/** String title for this Servlet */
 	private static final String TITLE = "Boogle";
 	
+	/** Maximum number of results shown for a query */
+	private static final int RESULTS = 50;
+	
 	/** QueryProcessor to process user queries and output results from its InvertedIndex reference */
 	private final QueryProcessor query;
 	
@@ -116,14 +120,23 @@ public class SearchEngineServlet extends HttpServlet {
 				failed = "<p>Failed to crawl new link or link has already been crawled </p>";
 			} else {
 				crawler.crawlWeb(newLink, 20, safeIndex);
+				safeIndex.refresh();
 			}
 		}
-		String usrQuery = request.getParameter("query");
-		usrQuery = usrQuery == null || usrQuery.isBlank() ? "" : usrQuery;
-		usrQuery = StringEscapeUtils.escapeHtml4(usrQuery);
-		query.processQueries(usrQuery, true);
-		links = new HashSet<>();
-		List<InvertedIndex.QueryMetaData> results = query.getQueryResults(usrQuery);
+		String line = request.getParameter("query");
+		line = line == null || line.isBlank() ? "" : line;
+		// searched before escaping, so quoted phrases are kept
+		String usrQuery = StringEscapeUtils.escapeHtml4(line);
+		Scorer scorer = Scorer.of(request.getParameter("scorer"));
+		List<InvertedIndex.QueryMetaData> results;
+		if (scorer == null) {
+			query.processQueries(line, true, RESULTS);
+			results = query.getQueryResults(line);
+		} else {
+			// the QueryProcessor keeps the results of its own Scorer, so search the index directly
+			results = safeIndex.search(SearchQuery.parse(line), true, RESULTS, scorer);
+		}
+		links = new LinkedHashSet<>();
 		for (InvertedIndex.QueryMetaData result: results) {
 			synchronized (links) {
 				links.add("<li><a href=\"" + result.getPath() + "\">" + result.getPath() + "</a></li>");
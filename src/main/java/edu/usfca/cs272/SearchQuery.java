@@ -0,0 +1,73 @@
+package edu.usfca.cs272;
+
+import java.util.Set;
+import opennlp.tools.stemmer.Stemmer;
+
+/**
+ * Interface for a parsed query line. A query decides which documents match, and
+ * the documents that match are ranked by the words of the query, see
+ * {@link InvertedIndex#search(SearchQuery, boolean, int, Scorer)}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public interface SearchQuery {
+
+	/**
+	 * Returns the unique stems the matching documents are ranked by.
+	 *
+	 * @return an unmodifiable sorted Set of stems
+	 */
+	public Set<String> getWords();
+
+	/**
+	 * Returns an iterator over the documents of an index that match this query, or
+	 * null if every document containing one of the words matches, in which case the
+	 * usual search for the words is used.
+	 *
+	 * @param index the index to match against
+	 * @param partial Boolean if a word also matches every word starting with it
+	 * @return an iterator over the IDs of the matching documents, or null
+	 */
+	public PostingIterator matches(InvertedIndex index, boolean partial);
+
+	/**
+	 * Returns the query as a String, which is the same for every line that is the
+	 * same query, so it can be used as a key for caching results.
+	 *
+	 * @return the String form of this query
+	 */
+	@Override
+	public String toString();
+
+	/**
+	 * Parses a query line, as a {@link BooleanQuery} if it uses any boolean operators
+	 * and as a {@link PositionalQuery} otherwise. A line whose operators only join words
+	 * by {@code OR}, see {@link BooleanQuery#isDisjunction()}, is parsed as a PositionalQuery
+	 * instead, so it is searched and cached like any other line of words.
+	 *
+	 * @param line the query line
+	 * @param stemmer the stemmer to use
+	 * @return the parsed SearchQuery
+	 */
+	public static SearchQuery parse(String line, Stemmer stemmer) {
+		if (BooleanQuery.isBoolean(line)) {
+			BooleanQuery query = BooleanQuery.parse(line, stemmer);
+			if (!query.isDisjunction()) {
+				return query;
+			}
+		}
+		return PositionalQuery.parse(line, stemmer);
+	}
+
+	/**
+	 * Parses a query line using the default stemmer for English, see {@link #parse(String, Stemmer)}.
+	 *
+	 * @param line the query line
+	 * @return the parsed SearchQuery
+	 */
+	public static SearchQuery parse(String line) {
+		return parse(line, StemCache.ENGLISH);
+	}
+}
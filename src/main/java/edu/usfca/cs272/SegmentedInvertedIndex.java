@@ -0,0 +1,694 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A ThreadSafe InvertedIndex made of immutable segments, so writers never block readers. New
+ * documents are added to a small in-memory buffer, which is flushed as a new {@link FrozenInvertedIndex}
+ * segment once it is full. Reads fan out across the segments of the current snapshot without any
+ * locking, and a background merger thread combines small segments into larger ones. All segments
+ * share one {@link ConcurrentDocumentTable}, so a document has the same ID in every segment.
+ *
+ * <p>
+ * Documents in the buffer are counted right away, but their words are not searchable until the
+ * buffer is flushed, see {@link #refresh()}.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class SegmentedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** Logger to use for debugging */
+	private static final Logger log = LogManager.getLogger();
+
+	/** Default number of word positions the buffer holds before it is flushed */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/** Number of adjacent segments combined by one merge */
+	public static final int MERGE_FACTOR = 4;
+
+	/** Number of segments above which the merger starts combining them */
+	public static final int MAX_SEGMENTS = 2 * MERGE_FACTOR;
+
+	/** DocumentTable shared by the buffer and every segment */
+	private final ConcurrentDocumentTable documents;
+
+	/** Number of word positions the buffer holds before it is flushed */
+	private final int bufferSize;
+
+	/** Lock held while changing the buffer or publishing a new snapshot */
+	private final Object writeLock;
+
+	/** Lock held for the whole of a merge, so only one merge runs at a time */
+	private final Object mergeLock;
+
+	/** In-memory buffer holding the documents added since the last flush, guarded by writeLock */
+	private InvertedIndex buffer;
+
+	/** Number of word positions in the buffer, guarded by writeLock */
+	private int buffered;
+
+	/** Location of the last single word added, guarded by writeLock */
+	private String lastLocation;
+
+	/** The current segments, replaced as a whole whenever a segment is flushed or merged */
+	private volatile Segments segments;
+
+	/** Number of times the segments were replaced, changed after each replacement under writeLock */
+	private volatile long generation;
+
+	/** Monitor the merger thread waits on until it is asked to check the segments */
+	private final Object signal;
+
+	/** Whether the merger has been asked to check the segments, guarded by signal */
+	private boolean pending;
+
+	/** Whether this index has been shut down, guarded by signal */
+	private boolean shutdown;
+
+	/** Background thread combining small segments */
+	private final Thread merger;
+
+	/**
+	 * Initializes an empty SegmentedInvertedIndex with the default buffer size
+	 */
+	public SegmentedInvertedIndex() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Initializes an empty SegmentedInvertedIndex
+	 *
+	 * @param bufferSize the number of word positions the buffer holds before it is flushed
+	 */
+	public SegmentedInvertedIndex(int bufferSize) {
+		this(bufferSize, true);
+	}
+
+	/**
+	 * Initializes an empty SegmentedInvertedIndex
+	 *
+	 * @param bufferSize the number of word positions the buffer holds before it is flushed
+	 * @param positions whether to retain the positions of each word
+	 */
+	public SegmentedInvertedIndex(int bufferSize, boolean positions) {
+		super(positions);
+		this.documents = new ConcurrentDocumentTable();
+		this.bufferSize = Math.max(bufferSize, 1);
+		this.writeLock = new Object();
+		this.mergeLock = new Object();
+		this.buffer = new InvertedIndex(documents, positions);
+		this.buffered = 0;
+		this.lastLocation = null;
+		this.segments = new Segments(documents, List.of(), positions);
+		this.signal = new Object();
+		this.pending = false;
+		this.shutdown = false;
+		this.merger = new Thread(this::mergeSegments, "Segment Merger");
+		this.merger.setDaemon(true);
+		this.merger.start();
+	}
+
+	/**
+	 * Initializes a SegmentedInvertedIndex on top of a read-only base index, such as a
+	 * {@link MappedInvertedIndex}. The base index is searched as the oldest segment and is never
+	 * merged, and new documents are added in segments on top of it.
+	 *
+	 * @param base the read-only index to start from, which must not change afterwards
+	 */
+	public SegmentedInvertedIndex(InvertedIndex base) {
+		this(DEFAULT_BUFFER_SIZE, base.hasPositions());
+		DocumentTable table = base.getDocuments();
+		for (int id = 0; id < table.size(); id++) {
+			documents.add(table.location(id));
+			documents.addCount(id, table.getCount(id));
+		}
+		segments = new Segments(documents, List.of(base), hasPositions());
+	}
+
+	/**
+	 * Adds a word to the buffer. The buffer is only flushed when the location changes, so the words
+	 * of a document crawled or parsed word by word end up in the same segment.
+	 */
+	@Override
+	public void add(String stem, String locations, int positions) {
+		synchronized (writeLock) {
+			if (buffered >= bufferSize && !locations.equals(lastLocation)) {
+				flush();
+			}
+			buffer.add(stem, locations, positions);
+			buffered++;
+			lastLocation = locations;
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex index) {
+		DocumentTable other = index.getDocuments();
+		int words = 0;
+		for (int i = 0; i < other.size(); i++) {
+			words += other.getCount(i);
+		}
+		synchronized (writeLock) {
+			buffer.addAll(index);
+			buffered += words;
+			lastLocation = null;
+			if (buffered >= bufferSize) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Flushes the buffer as a new segment, making the documents in it searchable
+	 */
+	@Override
+	public void refresh() {
+		synchronized (writeLock) {
+			flush();
+		}
+	}
+
+	/**
+	 * Flushes the buffer and merges every segment into one, which is returned. A base segment that
+	 * is not frozen, such as a {@link MappedInvertedIndex}, is copied onto the heap.
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		refresh();
+		synchronized (mergeLock) {
+			List<InvertedIndex> all = segments.segments;
+			if (all.size() == 1 && all.get(0) instanceof FrozenInvertedIndex frozen) {
+				return frozen;
+			}
+			FrozenInvertedIndex merged = merge(all);
+			if (all.isEmpty()) {
+				return merged;
+			}
+			publish(all, merged);
+			return merged;
+		}
+	}
+
+	/**
+	 * Stops the background merger. Segments are no longer merged, but the index can still be used.
+	 */
+	public void shutdown() {
+		synchronized (signal) {
+			shutdown = true;
+			signal.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of segments currently searched
+	 *
+	 * @return the number of segments
+	 */
+	public int segmentsSize() {
+		return segments.segments.size();
+	}
+
+	/**
+	 * Flushes the buffer as a new segment and wakes up the merger. Must be called while holding the
+	 * write lock.
+	 */
+	private void flush() {
+		if (buffered == 0) {
+			return;
+		}
+		FrozenInvertedIndex segment = buffer.freeze();
+		buffer = new InvertedIndex(documents, hasPositions());
+		buffered = 0;
+		List<InvertedIndex> updated = new ArrayList<>(segments.segments);
+		updated.add(segment);
+		segments = new Segments(documents, updated, hasPositions());
+		generation++;
+		log.debug("Flushed segment with {} words, {} segments", segment.indexSize(), updated.size());
+
+		synchronized (signal) {
+			pending = true;
+			signal.notifyAll();
+		}
+	}
+
+	/**
+	 * Replaces adjacent segments by the segment they were merged into, and publishes the result.
+	 *
+	 * @param merged the segments that were merged, which must still be adjacent in the current segments
+	 * @param segment the segment they were merged into
+	 */
+	private void publish(List<InvertedIndex> merged, InvertedIndex segment) {
+		synchronized (writeLock) {
+			List<InvertedIndex> current = segments.segments;
+			int start = current.indexOf(merged.get(0));
+			List<InvertedIndex> updated = new ArrayList<>(current.subList(0, start));
+			updated.add(segment);
+			updated.addAll(current.subList(start + merged.size(), current.size()));
+			segments = new Segments(documents, updated, hasPositions());
+			generation++;
+		}
+	}
+
+	/**
+	 * Merges segments into a single segment. Later segments only ever add documents or positions,
+	 * so the postings of each word are combined in segment order.
+	 *
+	 * @param merging the adjacent segments to merge, oldest first
+	 * @return the merged segment
+	 */
+	private FrozenInvertedIndex merge(List<InvertedIndex> merging) {
+		InvertedIndex merged = new InvertedIndex(documents, hasPositions());
+		for (InvertedIndex segment: merging) {
+			for (String word: segment.getWords()) {
+				merged.addPostings(word, segment.getPostings(word));
+			}
+		}
+		return merged.freeze();
+	}
+
+	/**
+	 * Picks the adjacent segments to merge next, which are the {@link #MERGE_FACTOR} adjacent frozen
+	 * segments with the fewest postings once there are more than {@link #MAX_SEGMENTS} segments.
+	 *
+	 * @param current the current segments
+	 * @return the segments to merge, or null if no merge is needed
+	 */
+	private static List<InvertedIndex> pickMerge(List<InvertedIndex> current) {
+		if (current.size() <= MAX_SEGMENTS) {
+			return null;
+		}
+		int best = 0;
+		long smallest = Long.MAX_VALUE;
+		for (int start = 0; start + MERGE_FACTOR <= current.size(); start++) {
+			long postings = 0;
+			for (int i = start; i < start + MERGE_FACTOR; i++) {
+				if (current.get(i) instanceof FrozenInvertedIndex segment) {
+					postings += segment.postingsSize();
+				} else {
+					postings = Long.MAX_VALUE;
+					break;
+				}
+			}
+			if (postings < smallest) {
+				smallest = postings;
+				best = start;
+			}
+		}
+		return smallest < Long.MAX_VALUE ? current.subList(best, best + MERGE_FACTOR) : null;
+	}
+
+	/**
+	 * Body of the merger thread, which waits for flushes and merges segments until there are no more
+	 * than {@link #MAX_SEGMENTS} of them.
+	 */
+	private void mergeSegments() {
+		while (true) {
+			synchronized (signal) {
+				while (!pending && !shutdown) {
+					try {
+						signal.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				if (shutdown) {
+					return;
+				}
+				pending = false;
+			}
+
+			synchronized (mergeLock) {
+				List<InvertedIndex> merging = pickMerge(segments.segments);
+				while (merging != null) {
+					FrozenInvertedIndex merged = merge(merging);
+					publish(merging, merged);
+					log.debug("Merged {} segments into one with {} words", merging.size(), merged.indexSize());
+					merging = pickMerge(segments.segments);
+				}
+			}
+		}
+	}
+
+	@Override
+	protected DocumentTable getDocuments() {
+		return documents;
+	}
+
+	@Override
+	protected PostingIterator postings(String word) {
+		return segments.postings(word);
+	}
+
+	@Override
+	protected List<String> prefixWords(String prefix) {
+		return segments.prefixWords(prefix);
+	}
+
+	@Override
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		return segments.prefixPostings(prefix);
+	}
+
+	@Override
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		return segments.getLocations(word);
+	}
+
+	@Override
+	public PostingIterator getPostings(String word) {
+		return segments.getPostings(word);
+	}
+
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		return segments.getCompressedPostings(word);
+	}
+
+	@Override
+	public List<PostingIterator> getPrefixPostings(String prefix) {
+		return segments.getPrefixPostings(prefix);
+	}
+
+	@Override
+	public List<QueryMetaData> search(SearchQuery query, boolean partial, int k, Scorer scorer) {
+		return segments.search(query, partial, k, scorer);
+	}
+
+	@Override
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
+		return segments.exactSearch(queries, k, scorer);
+	}
+
+	@Override
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
+		return segments.partialSearch(queries, k, scorer);
+	}
+
+	@Override
+	public Map<String, Number> getCounts() {
+		return segments.getCounts();
+	}
+
+	@Override
+	public Integer getCount(String locations) {
+		return segments.getCount(locations);
+	}
+
+	@Override
+	public Set<String> getWords() {
+		return segments.getWords();
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		return segments.getPaths(word);
+	}
+
+	@Override
+	public Collection<Integer> getPositions(String word, String locations) {
+		return segments.getPositions(word, locations);
+	}
+
+	/**
+	 * Returns the number of times the searchable segments were replaced, since documents in the
+	 * buffer are not searched until it is flushed.
+	 */
+	@Override
+	public long generation() {
+		return generation;
+	}
+
+	@Override
+	public int countsSize() {
+		return segments.countsSize();
+	}
+
+	@Override
+	public int indexSize() {
+		return segments.indexSize();
+	}
+
+	@Override
+	public int indexWordSize(String word) {
+		return segments.indexWordSize(word);
+	}
+
+	@Override
+	public int indexPositionsSize(String word, String locations) {
+		return segments.indexPositionsSize(word, locations);
+	}
+
+	@Override
+	public boolean containsCount(String locations) {
+		return segments.containsCount(locations);
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		return segments.hasWord(word);
+	}
+
+	@Override
+	public boolean hasStemFile(String word, String locations) {
+		return segments.hasStemFile(word, locations);
+	}
+
+	@Override
+	public boolean hasStemFilePosition(String word, String locations, int position) {
+		return segments.hasStemFilePosition(word, locations, position);
+	}
+
+	@Override
+	public void writeIndex(Path path) throws IOException {
+		segments.writeIndex(path);
+	}
+
+	@Override
+	public void writeCounts(Path path) throws IOException {
+		segments.writeCounts(path);
+	}
+
+	@Override
+	public String toString() {
+		return segments.toString();
+	}
+
+	@Override
+	public String countsToString() {
+		return segments.countsToString();
+	}
+
+	/**
+	 * Immutable, read-only view over a list of segments. Postings of a word found in more than one
+	 * segment are combined with a {@link MergedPostingIterator}.
+	 */
+	private static class Segments extends InvertedIndex {
+
+		/** The segments of this view, oldest first */
+		private final List<InvertedIndex> segments;
+
+		/** Number of distinct documents of each word found in several segments, counted the first time it is searched */
+		private final ConcurrentHashMap<String, Integer> frequencies;
+
+		/**
+		 * Constructor for a view over the given segments.
+		 *
+		 * @param documents the DocumentTable shared by the segments
+		 * @param segments the segments, oldest first
+		 * @param positions whether the segments retain the positions of each word
+		 */
+		public Segments(DocumentTable documents, List<InvertedIndex> segments, boolean positions) {
+			super(documents, positions);
+			this.segments = List.copyOf(segments);
+			this.frequencies = new ConcurrentHashMap<>();
+		}
+
+		@Override
+		protected PostingIterator postings(String word) {
+			List<PostingIterator> found = new ArrayList<>();
+			for (InvertedIndex segment: segments) {
+				PostingIterator postings = segment.getPostings(word);
+				if (postings != null) {
+					found.add(postings);
+				}
+			}
+			if (found.isEmpty()) {
+				return null;
+			}
+			if (found.size() == 1) {
+				return found.get(0);
+			}
+			// a document spanning segments, such as a chunked file, is only counted once by its document frequency
+			int size = frequencies.computeIfAbsent(word, stem -> {
+				List<PostingIterator> counted = new ArrayList<>();
+				for (InvertedIndex segment: segments) {
+					PostingIterator postings = segment.getPostings(stem);
+					if (postings != null) {
+						counted.add(postings);
+					}
+				}
+				return MergedPostingIterator.countDocuments(counted.toArray(PostingIterator[]::new));
+			});
+			return new MergedPostingIterator(size, found.toArray(PostingIterator[]::new));
+		}
+
+		@Override
+		protected List<String> prefixWords(String prefix) {
+			if (segments.size() == 1) {
+				return segments.get(0).prefixWords(prefix);
+			}
+			TreeSet<String> words = new TreeSet<>();
+			for (InvertedIndex segment: segments) {
+				words.addAll(segment.prefixWords(prefix));
+			}
+			return new ArrayList<>(words);
+		}
+
+		@Override
+		protected List<PostingIterator> prefixPostings(String prefix) {
+			if (segments.size() == 1) {
+				return segments.get(0).prefixPostings(prefix);
+			}
+			List<PostingIterator> postings = new ArrayList<>();
+			for (String word: prefixWords(prefix)) {
+				postings.add(postings(word));
+			}
+			return postings;
+		}
+
+		@Override
+		protected TreeMap<String, PositionList> getLocations(String word) {
+			TreeMap<String, PositionList> locations = new TreeMap<>();
+			PostingIterator postings = postings(word);
+			if (postings != null) {
+				for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+					PositionList positions = new PositionList();
+					for (int i = 0; i < postings.frequency(); i++) {
+						positions.add(postings.nextPosition());
+					}
+					locations.put(getDocuments().location(document), positions);
+				}
+			}
+			return locations;
+		}
+
+		@Override
+		public CompressedPostingList getCompressedPostings(String word) {
+			PostingIterator postings = postings(word);
+			return postings != null ? CompressedPostingList.compress(postings) : null;
+		}
+
+		@Override
+		public FrozenInvertedIndex freeze() {
+			throw new UnsupportedOperationException("Segments are frozen by their SegmentedInvertedIndex");
+		}
+
+		@Override
+		public void add(String stem, String locations, int positions) {
+			throw new UnsupportedOperationException("Segments cannot be modified");
+		}
+
+		@Override
+		public void addAll(InvertedIndex index) {
+			throw new UnsupportedOperationException("Segments cannot be modified");
+		}
+
+		@Override
+		public Set<String> getWords() {
+			if (segments.size() == 1) {
+				return segments.get(0).getWords();
+			}
+			TreeSet<String> words = new TreeSet<>();
+			for (InvertedIndex segment: segments) {
+				words.addAll(segment.getWords());
+			}
+			return Collections.unmodifiableSet(words);
+		}
+
+		@Override
+		public Set<String> getPaths(String word) {
+			TreeSet<String> paths = new TreeSet<>();
+			for (InvertedIndex segment: segments) {
+				paths.addAll(segment.getPaths(word));
+			}
+			return Collections.unmodifiableSet(paths);
+		}
+
+		@Override
+		public Collection<Integer> getPositions(String word, String locations) {
+			PositionList positions = new PositionList();
+			for (InvertedIndex segment: segments) {
+				positions.addAll(segment.getPositions(word, locations));
+			}
+			return Collections.unmodifiableCollection(positions);
+		}
+
+		@Override
+		public int indexSize() {
+			return getWords().size();
+		}
+
+		@Override
+		public int indexWordSize(String word) {
+			if (segments.size() == 1) {
+				return segments.get(0).indexWordSize(word);
+			}
+			return getPaths(word).size();
+		}
+
+		@Override
+		public int indexPositionsSize(String word, String locations) {
+			int size = 0;
+			for (InvertedIndex segment: segments) {
+				size += segment.indexPositionsSize(word, locations);
+			}
+			return size;
+		}
+
+		@Override
+		public boolean hasWord(String word) {
+			for (InvertedIndex segment: segments) {
+				if (segment.hasWord(word)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean hasStemFile(String word, String locations) {
+			for (InvertedIndex segment: segments) {
+				if (segment.hasStemFile(word, locations)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean hasStemFilePosition(String word, String locations, int position) {
+			for (InvertedIndex segment: segments) {
+				if (segment.hasStemFilePosition(word, locations, position)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
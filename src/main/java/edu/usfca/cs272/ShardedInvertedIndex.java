@@ -0,0 +1,654 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A ThreadSafeInvertedIndex that partitions the word stems across several shards by the hash of
+ * the word, each with its own InvertedIndex and MultiReaderLock, so threads adding different words
+ * only wait for each other when their words fall in the same shard. All shards share a single
+ * ConcurrentDocumentTable, so document IDs and counts are the same in every shard.
+ *
+ * <p>
+ * Searches are split into one task per shard, which are run on a WorkQueue when one is given.
+ * Each task collects the frequencies of the query words found in its shard, and the results are
+ * then combined exactly as a single InvertedIndex would.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ShardedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/** The default number of shards */
+	public static final int DEFAULT_SHARDS = 16;
+
+	/** The shards, each holding the words that hash to it */
+	private final Shard[] shards;
+
+	/** The document IDs and counts shared by all shards */
+	private final ConcurrentDocumentTable documents;
+
+	/** The WorkQueue searches are split across, or null to search every shard on the calling thread */
+	private final WorkQueue queue;
+
+	/**
+	 * Initializes the sharded InvertedIndex with the default number of shards, searching each shard
+	 * on the calling thread
+	 */
+	public ShardedInvertedIndex() {
+		this(DEFAULT_SHARDS, null);
+	}
+
+	/**
+	 * Initializes the sharded InvertedIndex
+	 *
+	 * @param shards the number of shards, should be at least 1
+	 * @param queue the WorkQueue to split searches across, or null to search every shard on the calling thread
+	 */
+	public ShardedInvertedIndex(int shards, WorkQueue queue) {
+		this(shards, queue, true);
+	}
+
+	/**
+	 * Initializes the sharded InvertedIndex
+	 *
+	 * @param shards the number of shards, should be at least 1
+	 * @param queue the WorkQueue to split searches across, or null to search every shard on the calling thread
+	 * @param positions whether to retain the positions of each word
+	 */
+	public ShardedInvertedIndex(int shards, WorkQueue queue, boolean positions) {
+		this(new ConcurrentDocumentTable(), shards, queue, positions);
+	}
+
+	/**
+	 * Initializes the sharded InvertedIndex with a shared DocumentTable
+	 *
+	 * @param documents the DocumentTable shared by all shards
+	 * @param shards the number of shards
+	 * @param queue the WorkQueue to split searches across, or null
+	 * @param positions whether to retain the positions of each word
+	 */
+	private ShardedInvertedIndex(ConcurrentDocumentTable documents, int shards, WorkQueue queue, boolean positions) {
+		super(documents, positions);
+		if (shards < 1) {
+			throw new IllegalArgumentException("The number of shards must be at least 1");
+		}
+		this.documents = documents;
+		this.queue = queue;
+		this.shards = new Shard[shards];
+		for (int i = 0; i < shards; i++) {
+			this.shards[i] = new Shard(documents, positions);
+		}
+	}
+
+	/**
+	 * Returns the shard a word stem belongs to
+	 *
+	 * @param word the Word stem
+	 * @return the index of the shard holding the word
+	 */
+	private int shardOf(String word) {
+		int hash = word.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+	}
+
+	/**
+	 * Returns the number of shards
+	 *
+	 * @return the number of shards
+	 */
+	public int shardsSize() {
+		return shards.length;
+	}
+
+	/**
+	 * Compiles every shard into a single FrozenInvertedIndex. The shards are not replaced by the
+	 * snapshot, since searching them does not need it.
+	 *
+	 * @return a FrozenInvertedIndex containing the current words, postings and counts
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		InvertedIndex combined = new InvertedIndex(documents, hasPositions());
+		lockAll();
+		try {
+			int[] mapping = new int[documents.size()];
+			for (int i = 0; i < mapping.length; i++) {
+				mapping[i] = i;
+			}
+			for (Shard shard: shards) {
+				for (String word: shard.getWords()) {
+					combined.addPostings(shard, word, mapping);
+				}
+			}
+		} finally {
+			unlockAll();
+		}
+		return combined.freeze();
+	}
+
+	/**
+	 * Does nothing, since every change is visible to reads as soon as it is made.
+	 */
+	@Override
+	public void refresh() {
+	}
+
+	@Override
+	public void add(String stem, String locations, int positions) {
+		Shard shard = shards[shardOf(stem)];
+		shard.lock.writeLock().lock();
+		try {
+			shard.add(stem, locations, positions);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds all the data from a given InvertedIndex, holding the lock of one shard at a time. The words
+	 * are sorted into their shards before any lock is taken, and each thread starts with a different
+	 * shard so that threads adding at the same time tend to work on different shards.
+	 */
+	@Override
+	public void addAll(InvertedIndex index) {
+		DocumentTable other = index.getDocuments();
+		int[] mapping = new int[other.size()];
+		for (int i = 0; i < mapping.length; i++) {
+			mapping[i] = documents.add(other.location(i));
+		}
+		// counts first, so no search sees postings of a document without its count
+		for (int i = 0; i < mapping.length; i++) {
+			documents.addCount(mapping[i], other.getCount(i));
+		}
+
+		List<List<String>> grouped = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			grouped.add(new ArrayList<>());
+		}
+		for (String word: index.getWords()) {
+			grouped.get(shardOf(word)).add(word);
+		}
+
+		int first = Math.floorMod(Thread.currentThread().getId(), shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			int next = (first + i) % shards.length;
+			List<String> words = grouped.get(next);
+			if (words.isEmpty()) {
+				continue;
+			}
+			Shard shard = shards[next];
+			shard.lock.writeLock().lock();
+			try {
+				for (String word: words) {
+					shard.addPostings(index, word, mapping);
+				}
+			} finally {
+				shard.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
+		List<List<String>> grouped = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			grouped.add(new ArrayList<>());
+		}
+		for (String query: queries) {
+			grouped.get(shardOf(query)).add(query);
+		}
+
+		List<ShardSearch> searches = new ArrayList<>();
+		for (int i = 0; i < shards.length; i++) {
+			if (!grouped.get(i).isEmpty()) {
+				searches.add(new ShardSearch(shards[i], grouped.get(i), false, scorer));
+			}
+		}
+		return combine(searches, k, scorer);
+	}
+
+	@Override
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
+		List<ShardSearch> searches = new ArrayList<>();
+		if (!queries.isEmpty()) {
+			for (Shard shard: shards) {
+				searches.add(new ShardSearch(shard, queries, true, scorer));
+			}
+		}
+		return combine(searches, k, scorer);
+	}
+
+	/**
+	 * Runs the searches of the shards, then combines the frequencies they found into sorted results,
+	 * keeping the k best.
+	 * Every search not yet started by the WorkQueue is run by the calling thread, so this never waits
+	 * on a search that is still queued, even when called from a task of the same WorkQueue.
+	 *
+	 * @param searches the searches of the shards
+	 * @param k the maximum number of results to return
+	 * @param scorer the Scorer to rank the results with
+	 * @return List of at most k QueryMetaData which is the combined results of the searches
+	 */
+	private List<QueryMetaData> combine(List<ShardSearch> searches, int k, Scorer scorer) {
+		if (queue != null && searches.size() > 1) {
+			for (int i = 1; i < searches.size(); i++) {
+				queue.execute(searches.get(i));
+			}
+		}
+		for (ShardSearch search: searches) {
+			search.run();
+		}
+
+		for (ShardSearch search: searches) {
+			search.await();
+		}
+
+		// sized after the searches, so it covers every document they found
+		List<QueryMetaData> results = new ArrayList<>();
+		QueryMetaData[] lookup = new QueryMetaData[documents.size()];
+		for (ShardSearch search: searches) {
+			addResults(search.documents, search.frequencies, search.weights, search.size, scorer, lookup, results);
+		}
+		return topResults(results, k);
+	}
+
+	/**
+	 * Returns an iterator over a copy of the postings of a word, so it can be used after the lock is released
+	 */
+	@Override
+	public PostingIterator getPostings(String word) {
+		CompressedPostingList postings = getCompressedPostings(word);
+		return postings != null ? postings.iterator() : null;
+	}
+
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.getCompressedPostings(word);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns iterators over copies of the postings of each word, so they can be used after the locks are released
+	 */
+	@Override
+	public List<PostingIterator> getPrefixPostings(String prefix) {
+		TreeMap<String, PostingIterator> found = new TreeMap<>();
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+			try {
+				for (String word: shard.prefixWords(prefix)) {
+					found.put(word, shard.getCompressedPostings(word).iterator());
+				}
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return new ArrayList<>(found.values());
+	}
+
+	@Override
+	protected PostingIterator postings(String word) {
+		return getPostings(word);
+	}
+
+	@Override
+	protected List<PostingIterator> prefixPostings(String prefix) {
+		return getPrefixPostings(prefix);
+	}
+
+	@Override
+	protected List<String> prefixWords(String prefix) {
+		TreeSet<String> found = new TreeSet<>();
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+			try {
+				found.addAll(shard.prefixWords(prefix));
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return new ArrayList<>(found);
+	}
+
+	@Override
+	protected TreeMap<String, PositionList> getLocations(String word) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.getLocations(word);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+			try {
+				words.addAll(shard.getWords());
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Set<String> getPaths(String word) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.getPaths(word);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Collection<Integer> getPositions(String word, String locations) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return Collections.unmodifiableList(new ArrayList<>(shard.getPositions(word, locations)));
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the sum of the generations of the shards, which changes after every change made to any shard.
+	 */
+	@Override
+	public long generation() {
+		long generation = 0;
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+			try {
+				generation += shard.generation();
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return generation;
+	}
+
+	@Override
+	public int indexSize() {
+		int size = 0;
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+			try {
+				size += shard.indexSize();
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public int indexWordSize(String word) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.indexWordSize(word);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int indexPositionsSize(String word, String locations) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.indexPositionsSize(word, locations);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean hasWord(String word) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.hasWord(word);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean hasStemFile(String word, String locations) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.hasStemFile(word, locations);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean hasStemFilePosition(String word, String locations, int position) {
+		Shard shard = shards[shardOf(word)];
+		shard.lock.readLock().lock();
+		try {
+			return shard.hasStemFilePosition(word, locations, position);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void writeIndex(Path path) throws IOException {
+		lockAll();
+		try {
+			super.writeIndex(path);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public String toString() {
+		lockAll();
+		try {
+			return super.toString();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Takes the read lock of every shard, always in the same order
+	 */
+	private void lockAll() {
+		for (Shard shard: shards) {
+			shard.lock.readLock().lock();
+		}
+	}
+
+	/**
+	 * Releases the read lock of every shard
+	 */
+	private void unlockAll() {
+		for (int i = shards.length - 1; i >= 0; i--) {
+			shards[i].lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * One shard of the index, which is an InvertedIndex over the shared DocumentTable with its own lock.
+	 */
+	private static class Shard extends InvertedIndex {
+		/** The lock used to protect concurrent access to this shard */
+		private final MultiReaderLock lock;
+
+		/**
+		 * Initializes the shard
+		 *
+		 * @param documents the DocumentTable shared by all shards
+		 * @param positions whether to retain the positions of each word
+		 */
+		public Shard(DocumentTable documents, boolean positions) {
+			super(documents, positions);
+			this.lock = new MultiReaderLock();
+		}
+	}
+
+	/**
+	 * The search of a single shard, which collects the document IDs and frequencies of every query
+	 * word found in the shard. Each search is run exactly once, by whichever thread gets to it first.
+	 */
+	private static class ShardSearch implements Runnable {
+		/** The shard to search */
+		private final Shard shard;
+
+		/** The query words to search for */
+		private final Collection<String> queries;
+
+		/** Whether to search for the words starting with each query word */
+		private final boolean partial;
+
+		/** The Scorer to weigh the query words with */
+		private final Scorer scorer;
+
+		/** Set by the thread that runs this search */
+		private final AtomicBoolean claimed;
+
+		/** Whether this search has finished */
+		private boolean done;
+
+		/** The exception thrown by this search, if any */
+		private RuntimeException failure;
+
+		/** Document IDs found, one entry for each posting */
+		private int[] documents;
+
+		/** Frequency of each posting, parallel to documents */
+		private int[] frequencies;
+
+		/** Weight of the word of each posting, parallel to documents */
+		private double[] weights;
+
+		/** Number of postings found */
+		private int size;
+
+		/**
+		 * Initializes the search of a shard
+		 *
+		 * @param shard the shard to search
+		 * @param queries the query words to search for
+		 * @param partial whether to search for the words starting with each query word
+		 * @param scorer the Scorer to weigh the query words with
+		 */
+		public ShardSearch(Shard shard, Collection<String> queries, boolean partial, Scorer scorer) {
+			this.shard = shard;
+			this.queries = queries;
+			this.partial = partial;
+			this.scorer = scorer;
+			this.claimed = new AtomicBoolean(false);
+			this.done = false;
+			this.failure = null;
+			this.documents = new int[16];
+			this.frequencies = new int[16];
+			this.weights = new double[16];
+			this.size = 0;
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				shard.lock.readLock().lock();
+				try {
+					for (String query: queries) {
+						if (partial) {
+							for (PostingIterator postings: shard.prefixPostings(query)) {
+								collect(postings);
+							}
+						} else {
+							PostingIterator postings = shard.postings(query);
+							if (postings != null) {
+								collect(postings);
+							}
+						}
+					}
+				} finally {
+					shard.lock.readLock().unlock();
+				}
+			} catch (RuntimeException e) {
+				failure = e;
+			} finally {
+				synchronized (this) {
+					done = true;
+					this.notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * Collects the document IDs and frequencies of some postings
+		 *
+		 * @param postings PostingIterator over the postings to collect
+		 */
+		private void collect(PostingIterator postings) {
+			double weight = shard.weight(scorer, postings);
+			for (int document = postings.next(); document != PostingIterator.NO_MORE_DOCUMENTS; document = postings.next()) {
+				if (size == documents.length) {
+					documents = Arrays.copyOf(documents, size * 2);
+					frequencies = Arrays.copyOf(frequencies, size * 2);
+					weights = Arrays.copyOf(weights, size * 2);
+				}
+				documents[size] = document;
+				frequencies[size] = postings.frequency();
+				weights[size] = weight;
+				size++;
+			}
+		}
+
+		/**
+		 * Waits for this search to finish
+		 *
+		 * @throws RuntimeException if the search failed
+		 */
+		public synchronized void await() {
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+}
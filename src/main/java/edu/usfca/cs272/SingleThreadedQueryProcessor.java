@@ -1,16 +1,13 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
 import edu.usfca.cs272.InvertedIndex.QueryMetaData;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for storing, building, and printing the Query Results.
@@ -22,10 +19,10 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 public class SingleThreadedQueryProcessor implements QueryProcessor {
 	
 	/** 
-	 * results Data Structure which is a TreeMap containing a query as a key,
-	 * and a Collection of QueryMetaData objects as the value.
+	 * results Data Structure which is a ResultCache containing a query and whether the search
+	 * was partial as a key, and a Collection of QueryMetaData objects as the value.
 	 */
-	private final TreeMap<String, List<InvertedIndex.QueryMetaData>> results;
+	private final ResultCache results;
 	
 	/** index InvertedIndex to be used with single threaded searching */
 	private final InvertedIndex index;
@@ -33,28 +30,56 @@ public class SingleThreadedQueryProcessor implements QueryProcessor {
 	/** Stemmer to use when stemming each query line */
 	private final Stemmer stemmer;
 	
+	/** Scorer to rank the results with */
+	private final Scorer scorer;
+	
 	/**
 	 * Constructor for the QueryProcessor class. 
 	 * @param index reference to the InvertedIndex which will be searched
 	 */
 	public SingleThreadedQueryProcessor(InvertedIndex index) {
-		results = new TreeMap<>();
+		this(index, Scorer.COUNT);
+	}
+	
+	/**
+	 * Constructor for the QueryProcessor class that ranks results with a given Scorer. 
+	 * @param index reference to the InvertedIndex which will be searched
+	 * @param scorer the Scorer to rank the results with
+	 */
+	public SingleThreadedQueryProcessor(InvertedIndex index, Scorer scorer) {
+		this(index, scorer, ResultCache.UNBOUNDED);
+	}
+	
+	/**
+	 * Constructor for the QueryProcessor class that ranks results with a given Scorer, and keeps
+	 * at most a number of results. 
+	 * @param index reference to the InvertedIndex which will be searched
+	 * @param scorer the Scorer to rank the results with
+	 * @param capacity the largest total number of results to keep, see {@link ResultCache}
+	 */
+	public SingleThreadedQueryProcessor(InvertedIndex index, Scorer scorer, long capacity) {
+		results = new ResultCache(capacity);
 		this.index = index;
-		this.stemmer = new SnowballStemmer(ENGLISH);
+		this.stemmer = StemCache.ENGLISH;
+		this.scorer = scorer;
 	}
 			
 	@Override
-	public void processQueries(String line, boolean partial) {
-		TreeSet<String> stemmedQuery = FileStemmer.uniqueStems(line, stemmer);
-		String query = String.join(" ", stemmedQuery);
-		if(!query.isEmpty() && !results.containsKey(query)) {
-			results.put(query, index.search(stemmedQuery, partial));
-		}	
+	public void processQueries(String line, boolean partial, int k) {
+		SearchQuery parsed = SearchQuery.parse(line, stemmer);
+		String query = parsed.toString();
+		if (query.isEmpty()) {
+			return;
+		}
+		long generation = index.generation();
+		if (results.get(query, partial, k, generation) == null) {
+			results.put(query, partial, k, generation, index.search(parsed, partial, k, scorer));
+		}
 	}
 		
 	@Override
 	public void writeResults(Path path) throws IOException {
-		JsonWriter.writeObjectArraysFiles(results, path);
+		JsonWriter.writeObjectArraysFiles(results.toMap(), path);
 	}
 	
 	@Override
@@ -64,13 +89,18 @@ public class SingleThreadedQueryProcessor implements QueryProcessor {
 		
 	@Override
 	public Set<String> getQueryLines() {
-		return Collections.unmodifiableSet(results.keySet());
+		return Collections.unmodifiableSet(results.toMap().keySet());
 	}
 	
 	@Override
 	public List<QueryMetaData> getQueryResults(String line) {
-		TreeSet<String> stemmedQuery = FileStemmer.uniqueStems(line, stemmer);
-		String query = String.join(" ", stemmedQuery);
-		return results.containsKey(query) ? Collections.unmodifiableList(results.get(query)) : Collections.emptyList();
+		String query = SearchQuery.parse(line, stemmer).toString();
+		List<QueryMetaData> found = results.peek(query);
+		return found != null ? Collections.unmodifiableList(found) : Collections.emptyList();
+	}
+	
+	@Override
+	public Map<String, Long> getCacheStatistics() {
+		return results.statistics();
 	}
 }
@@ -0,0 +1,183 @@
+package edu.usfca.cs272;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Thread-safe Stemmer that remembers the stem of every word it stemmed, so the many
+ * repeated words of natural language text are only stemmed once. Words it has not seen
+ * are stemmed by a Stemmer of the calling thread, since stemmers are not thread-safe.
+ * Every stem returned is the same String object as every equal stem returned before,
+ * so an index built with this Stemmer holds each word only once. Words are looked up by
+ * their characters, so a word in a reused buffer, such as {@link Tokenizer#word()}, is only
+ * copied into a String when it is not remembered yet.
+ *
+ * <p>The cache is bounded. Once it holds its capacity, new words are still stemmed but
+ * no longer remembered, which keeps the most common words, since they tend to come first.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class StemCache implements Stemmer {
+
+	/** Default largest number of words to remember */
+	public static final int DEFAULT_CAPACITY = 1 << 17;
+
+	/** StemCache for English shared by everything that builds or searches an index */
+	public static final StemCache ENGLISH = new StemCache(() -> new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), DEFAULT_CAPACITY);
+
+	/** Stem of each word remembered */
+	private final ConcurrentHashMap<Word, String> stems;
+
+	/** The one instance of each stem remembered, keyed by itself */
+	private final ConcurrentHashMap<String, String> instances;
+
+	/** Stemmer and lookup key of each thread */
+	private final ThreadLocal<Local> locals;
+
+	/** Largest number of words to remember */
+	private final int capacity;
+
+	/** Number of words whose stem was remembered */
+	private final LongAdder hits;
+
+	/** Number of words that had to be stemmed */
+	private final LongAdder misses;
+
+	/**
+	 * Initializes a StemCache.
+	 *
+	 * @param factory creates a Stemmer for each thread that uses this cache
+	 * @param capacity the largest number of words to remember
+	 */
+	public StemCache(Supplier<Stemmer> factory, int capacity) {
+		this.stems = new ConcurrentHashMap<>();
+		this.instances = new ConcurrentHashMap<>();
+		this.locals = ThreadLocal.withInitial(() -> new Local(factory.get()));
+		this.capacity = capacity;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the stem of a word, which is the same String instance for every equal stem
+	 * while it is remembered.
+	 *
+	 * @param word the word to stem
+	 * @return the stem of the word
+	 */
+	@Override
+	public String stem(CharSequence word) {
+		Local local = locals.get();
+		String stem = stems.get(local.probe.set(word));
+		local.probe.set(null);
+		if (stem != null) {
+			hits.increment();
+			return stem;
+		}
+		misses.increment();
+		String key = word.toString();
+		stem = local.stemmer.stem(key).toString();
+		if (stems.size() < capacity) {
+			String shared = instances.putIfAbsent(stem, stem);
+			stem = shared != null ? shared : stem;
+			stems.putIfAbsent(new Word().set(key), stem);
+		}
+		return stem;
+	}
+
+	/**
+	 * Returns the fraction of words whose stem was remembered.
+	 *
+	 * @return the hit rate, or 0 if nothing was stemmed yet
+	 */
+	public double hitRate() {
+		long found = hits.sum();
+		long total = found + misses.sum();
+		return total > 0 ? (double) found / total : 0;
+	}
+
+	/**
+	 * Returns statistics on how this cache was used.
+	 *
+	 * @return a sorted map from statistic name to value
+	 */
+	public Map<String, Long> statistics() {
+		TreeMap<String, Long> statistics = new TreeMap<>();
+		statistics.put("hits", hits.sum());
+		statistics.put("misses", misses.sum());
+		statistics.put("words", (long) stems.size());
+		statistics.put("stems", (long) instances.size());
+		return statistics;
+	}
+
+	/**
+	 * Stemmer of a thread, for words that are not remembered, and the key it looks words up with.
+	 */
+	private static class Local {
+
+		/** Stemmer of the thread */
+		private final Stemmer stemmer;
+
+		/** Key reused for every lookup of the thread */
+		private final Word probe;
+
+		/**
+		 * Constructor for a Local
+		 *
+		 * @param stemmer the Stemmer of the thread
+		 */
+		private Local(Stemmer stemmer) {
+			this.stemmer = stemmer;
+			this.probe = new Word();
+		}
+	}
+
+	/**
+	 * Key of a remembered word, equal to any other key with the same characters. Remembered
+	 * words are keyed by a String, and lookups by the word's own CharSequence, which must not
+	 * change while it is looked up.
+	 */
+	private static class Word {
+
+		/** Characters of the word */
+		private CharSequence chars;
+
+		/** Hash code of the characters, the same as {@link String#hashCode()} */
+		private int hash;
+
+		/**
+		 * Sets the characters of this key.
+		 *
+		 * @param chars the characters, or null to let go of them
+		 * @return this key
+		 */
+		private Word set(CharSequence chars) {
+			this.chars = chars;
+			int h = 0;
+			if (chars != null) {
+				for (int i = 0; i < chars.length(); i++) {
+					h = 31 * h + chars.charAt(i);
+				}
+			}
+			this.hash = h;
+			return this;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Word other && CharSequence.compare(chars, other.chars) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
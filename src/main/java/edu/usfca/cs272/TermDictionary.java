@@ -0,0 +1,325 @@
+package edu.usfca.cs272;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable term dictionary stored as a compressed trie (a radix tree), so prefixes
+ * shared by many words are stored only once. Every word is identified by its
+ * ordinal, its index in sorted order, which is used as a handle to its postings.
+ * Since the words under any node of the trie are contiguous in sorted order,
+ * finding every word starting with a prefix only walks down the prefix and
+ * returns a range of ordinals, without comparing any of the words.
+ *
+ * <p>
+ * Nodes are stored in flat arrays. The children of a node are stored next to each
+ * other, sorted by the first character of their labels.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class TermDictionary {
+
+	/** The default capacity of the node and label arrays */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** Characters of every node label, back to back */
+	private char[] labels;
+
+	/** Number of label characters stored */
+	private int labelsSize;
+
+	/** Start of the label of each node */
+	private int[] labelStart;
+
+	/** Length of the label of each node */
+	private int[] labelLength;
+
+	/** Index of the first child of each node */
+	private int[] firstChild;
+
+	/** Number of children of each node */
+	private int[] childCount;
+
+	/** Ordinal of the first word under each node */
+	private int[] start;
+
+	/** Ordinal just past the last word under each node */
+	private int[] end;
+
+	/** Whether the first word under each node ends at that node */
+	private boolean[] terminal;
+
+	/** Number of nodes */
+	private int nodes;
+
+	/** Number of words */
+	private final int size;
+
+	/**
+	 * Constructor for a TermDictionary of the given words.
+	 *
+	 * @param sorted the words, sorted and without duplicates
+	 */
+	public TermDictionary(Collection<String> sorted) {
+		String[] words = sorted.toArray(String[]::new);
+		this.size = words.length;
+		this.labels = new char[DEFAULT_CAPACITY];
+		this.labelsSize = 0;
+		this.labelStart = new int[DEFAULT_CAPACITY];
+		this.labelLength = new int[DEFAULT_CAPACITY];
+		this.firstChild = new int[DEFAULT_CAPACITY];
+		this.childCount = new int[DEFAULT_CAPACITY];
+		this.start = new int[DEFAULT_CAPACITY];
+		this.end = new int[DEFAULT_CAPACITY];
+		this.terminal = new boolean[DEFAULT_CAPACITY];
+		this.nodes = 1;
+		build(0, words, 0, words.length, 0);
+		trimToSize();
+	}
+
+	/**
+	 * Fills in a node covering a range of words that share their first characters,
+	 * then builds its children.
+	 *
+	 * @param node the node to fill in
+	 * @param words the sorted words
+	 * @param low the first word under the node
+	 * @param high just past the last word under the node
+	 * @param depth the number of characters matched by the ancestors of the node
+	 */
+	private void build(int node, String[] words, int low, int high, int depth) {
+		start[node] = low;
+		end[node] = high;
+		if (low == high) {
+			return;
+		}
+
+		String first = words[low];
+		String last = words[high - 1];
+		int common = depth;
+		if (node != 0) {
+			int limit = Math.min(first.length(), last.length());
+			while (common < limit && first.charAt(common) == last.charAt(common)) {
+				common++;
+			}
+		}
+		labelStart[node] = appendLabel(first, depth, common);
+		labelLength[node] = common - depth;
+		terminal[node] = first.length() == common;
+
+		int group = terminal[node] ? low + 1 : low;
+		int children = 0;
+		for (int i = group; i < high; i++) {
+			if (i == group || words[i].charAt(common) != words[i - 1].charAt(common)) {
+				children++;
+			}
+		}
+		int child = allocate(children);
+		firstChild[node] = child;
+		childCount[node] = children;
+
+		for (int i = group + 1; i <= high; i++) {
+			if (i == high || words[i].charAt(common) != words[group].charAt(common)) {
+				build(child++, words, group, i, common);
+				group = i;
+			}
+		}
+	}
+
+	/**
+	 * Appends part of a word to the labels.
+	 *
+	 * @param word the word
+	 * @param from the first character to append
+	 * @param to just past the last character to append
+	 * @return the start of the appended label
+	 */
+	private int appendLabel(String word, int from, int to) {
+		int length = to - from;
+		if (labelsSize + length > labels.length) {
+			labels = Arrays.copyOf(labels, Math.max(labelsSize + length, labels.length * 2));
+		}
+		word.getChars(from, to, labels, labelsSize);
+		labelsSize += length;
+		return labelsSize - length;
+	}
+
+	/**
+	 * Allocates a block of adjacent nodes, growing the node arrays if needed.
+	 *
+	 * @param count the number of nodes
+	 * @return the index of the first allocated node
+	 */
+	private int allocate(int count) {
+		int first = nodes;
+		nodes += count;
+		if (nodes > start.length) {
+			int capacity = Math.max(nodes, start.length * 2);
+			labelStart = Arrays.copyOf(labelStart, capacity);
+			labelLength = Arrays.copyOf(labelLength, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			childCount = Arrays.copyOf(childCount, capacity);
+			start = Arrays.copyOf(start, capacity);
+			end = Arrays.copyOf(end, capacity);
+			terminal = Arrays.copyOf(terminal, capacity);
+		}
+		return first;
+	}
+
+	/**
+	 * Trims the arrays to the number of nodes and label characters stored.
+	 */
+	private void trimToSize() {
+		labels = Arrays.copyOf(labels, labelsSize);
+		labelStart = Arrays.copyOf(labelStart, nodes);
+		labelLength = Arrays.copyOf(labelLength, nodes);
+		firstChild = Arrays.copyOf(firstChild, nodes);
+		childCount = Arrays.copyOf(childCount, nodes);
+		start = Arrays.copyOf(start, nodes);
+		end = Arrays.copyOf(end, nodes);
+		terminal = Arrays.copyOf(terminal, nodes);
+	}
+
+	/**
+	 * Finds the child of a node whose label starts with a given character.
+	 *
+	 * @param node the parent node
+	 * @param c the first character of the label
+	 * @return the child node, or -1 if there is none
+	 */
+	private int child(int node, char c) {
+		int low = firstChild[node];
+		int high = low + childCount[node] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			char first = labels[labelStart[middle]];
+			if (first < c) {
+				low = middle + 1;
+			} else if (first > c) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Walks down the trie along a word or prefix.
+	 *
+	 * @param text the word or prefix to walk along
+	 * @param prefix whether the text may end within the label of a node
+	 * @return the node where the text ends, or -1 if no word starts with the text
+	 */
+	private int walk(String text, boolean prefix) {
+		int node = 0;
+		int matched = 0;
+		while (true) {
+			int length = labelLength[node];
+			int label = labelStart[node];
+			for (int i = 0; i < length; i++, matched++) {
+				if (matched == text.length()) {
+					return prefix ? node : -1;
+				}
+				if (labels[label + i] != text.charAt(matched)) {
+					return -1;
+				}
+			}
+			if (matched == text.length()) {
+				return node;
+			}
+			node = child(node, text.charAt(matched));
+			if (node < 0) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the ordinal of a word.
+	 *
+	 * @param word the word to find
+	 * @return the ordinal of the word, or -1 if it is not in this dictionary
+	 */
+	public int ordinal(String word) {
+		if (size == 0) {
+			return -1;
+		}
+		int node = walk(word, false);
+		return node >= 0 && terminal[node] ? start[node] : -1;
+	}
+
+	/**
+	 * Returns the range of ordinals of the words starting with a prefix.
+	 *
+	 * @param prefix the prefix
+	 * @return the first ordinal and the ordinal just past the last one, which are equal if
+	 *   no word starts with the prefix
+	 */
+	public int[] range(String prefix) {
+		int node = size == 0 ? -1 : walk(prefix, true);
+		return node >= 0 ? new int[] { start[node], end[node] } : new int[] { 0, 0 };
+	}
+
+	/**
+	 * Rebuilds the word with a given ordinal from the labels along its path.
+	 *
+	 * @param ordinal the ordinal of the word
+	 * @return the word
+	 */
+	public String word(int ordinal) {
+		StringBuilder word = new StringBuilder();
+		int node = 0;
+		while (true) {
+			word.append(labels, labelStart[node], labelLength[node]);
+			if (terminal[node] && start[node] == ordinal) {
+				return word.toString();
+			}
+			int low = firstChild[node];
+			int high = low + childCount[node] - 1;
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+				if (start[middle] <= ordinal) {
+					low = middle;
+				} else {
+					high = middle - 1;
+				}
+			}
+			node = low;
+		}
+	}
+
+	/**
+	 * Returns a view of the words in a range of ordinals, rebuilt as they are read.
+	 *
+	 * @param from the first ordinal
+	 * @param to the ordinal just past the last one
+	 * @return a List view of the words
+	 */
+	public List<String> words(int from, int to) {
+		return new AbstractList<>() {
+			@Override
+			public String get(int index) {
+				return word(from + index);
+			}
+
+			@Override
+			public int size() {
+				return to - from;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of words in this dictionary.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,33 @@
+package edu.usfca.cs272;
+
+/**
+ * Scorer which scores a document with TF-IDF, where the frequency of each query word
+ * is divided by the number of words in the document and weighted by how rare the word
+ * is across the index.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class TfIdfScorer implements Scorer {
+
+	@Override
+	public double norm(int length, double averageLength) {
+		return 1.0 / length;
+	}
+
+	@Override
+	public double weight(int documentFrequency, int documents) {
+		return Math.log(1 + (double) documents / documentFrequency);
+	}
+
+	@Override
+	public double score(int frequency, double weight, double norm) {
+		return frequency * norm * weight;
+	}
+
+	@Override
+	public String toString() {
+		return "tfidf";
+	}
+}
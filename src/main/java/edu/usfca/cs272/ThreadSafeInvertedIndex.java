@@ -2,15 +2,18 @@ package edu.usfca.cs272;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 
 /**
  * A ThreadSafe implementation of an InvertedIndex using a custom MultiReaderLock lock object, that extends the InvertedIndex class,
- * for use with MultiThreading.
+ * for use with MultiThreading. Once {@link #freeze()} is called, reads are served from the frozen snapshot without taking the lock,
+ * until the next write to this index discards the snapshot.
  *
  * @author Alexander Bareli
  * @author CS 272 Software Development (University of San Francisco)
@@ -21,38 +24,198 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	/** The lock used to protect concurrent access to the underlying InvertedIndex */
 	private final MultiReaderLock lock;
 	
+	/** Frozen snapshot of this index used to serve reads without locking, or null if the index changed since freezing */
+	private volatile FrozenInvertedIndex snapshot;
+	
+	/** Whether the postings were released after refreshing, so they must be restored from the snapshot before the next write */
+	private boolean released;
+	
 	/**
 	 * Initializes the thread-safe InvertedIndex
 	 */
 	public ThreadSafeInvertedIndex() {
-		super();
+		this(true);
+	}
+	
+	/**
+	 * Initializes the thread-safe InvertedIndex
+	 * 
+	 * @param positions whether to retain the positions of each word
+	 */
+	public ThreadSafeInvertedIndex(boolean positions) {
+		this(new DocumentTable(), positions);
+	}
+	
+	/**
+	 * Initializes the thread-safe InvertedIndex with a given DocumentTable for its counts
+	 * 
+	 * @param documents the DocumentTable to use
+	 * @param positions whether to retain the positions of each word
+	 */
+	protected ThreadSafeInvertedIndex(DocumentTable documents, boolean positions) {
+		super(documents, positions);
 		this.lock = new MultiReaderLock();
+		this.snapshot = null;
 	}
-		
+	
+	/**
+	 * Compiles this index into a FrozenInvertedIndex, which is also kept to serve reads from
+	 * without locking until this index is next modified.
+	 * 
+	 * @return a FrozenInvertedIndex containing the current words, postings and counts
+	 */
 	@Override
-	public List<QueryMetaData> exactSearch(Set<String> queries){
+	public FrozenInvertedIndex freeze() {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen;
+		}
 		lock.readLock().lock();
 		try {
-			return super.exactSearch(queries);
+			frozen = super.freeze();
+			snapshot = frozen;
+			return frozen;
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
 	
+	/**
+	 * Runs a read of this index under the read lock.
+	 * 
+	 * @param <T> the type of the result
+	 * @param reader the read to run, which must not change anything
+	 * @return the result of the read
+	 */
+	private <T> T readLocked(Supplier<T> reader) {
+		lock.readLock().lock();
+		try {
+			return reader.get();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns statistics on how the lock of this index was used, see {@link MultiReaderLock#statistics()}
+	 * 
+	 * @return a sorted map from statistic name to value
+	 */
+	public Map<String, Long> getLockStatistics() {
+		return lock.statistics();
+	}
+	
+	/**
+	 * Makes every change made to this index so far visible to reads that do not take the lock, by
+	 * compiling a new snapshot if the index changed since it was last frozen. Every read is then served
+	 * by the snapshot, so the postings of this index are released until the next write restores them.
+	 */
+	public void refresh() {
+		FrozenInvertedIndex frozen = freeze();
+		lock.writeLock().lock();
+		try {
+			if (snapshot == frozen && !released) {
+				super.clearPostings();
+				released = true;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Prepares this index for a write while the write lock is held, restoring the postings released by
+	 * {@link #refresh()} from the snapshot and then discarding the snapshot.
+	 */
+	private void beforeWrite() {
+		if (released) {
+			FrozenInvertedIndex frozen = snapshot;
+			for (String word: frozen.getWords()) {
+				super.addPostings(word, frozen.getCompressedPostings(word).iterator());
+			}
+			released = false;
+		}
+		snapshot = null;
+	}
+	
+	/**
+	 * Returns an iterator over a copy of the postings of a word, so it can be used after the lock is released
+	 */
 	@Override
-	public List<QueryMetaData> partialSearch(Set<String> queries) {
+	public PostingIterator getPostings(String word) {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getPostings(word);
+		}
+		CompressedPostingList postings = getCompressedPostings(word);
+		return postings != null ? postings.iterator() : null;
+	}
+	
+	@Override
+	public CompressedPostingList getCompressedPostings(String word) {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getCompressedPostings(word);
+		}
+		return readLocked(() -> super.getCompressedPostings(word));
+	}
+	
+	/**
+	 * Returns iterators over copies of the postings of each word, so they can be used after the lock is released
+	 */
+	@Override
+	public List<PostingIterator> getPrefixPostings(String prefix) {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getPrefixPostings(prefix);
+		}
 		lock.readLock().lock();
 		try {
-			return super.partialSearch(queries);
+			List<PostingIterator> postings = new ArrayList<>();
+			for (PostingIterator live: super.getPrefixPostings(prefix)) {
+				postings.add(CompressedPostingList.compress(live).iterator());
+			}
+			return postings;
 		} finally {
 			lock.readLock().unlock();
 		}
 	}
+		
+	@Override
+	public List<QueryMetaData> search(SearchQuery query, boolean partial, int k, Scorer scorer) {
+		if (query instanceof PositionalQuery positional && !positional.isPositional()) {
+			return search(query.getWords(), partial, k, scorer);
+		}
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.search(query, partial, k, scorer);
+		}
+		return readLocked(() -> super.search(query, partial, k, scorer));
+	}
+	
+	@Override
+	public List<QueryMetaData> exactSearch(Set<String> queries, int k, Scorer scorer) {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.exactSearch(queries, k, scorer);
+		}
+		return readLocked(() -> super.exactSearch(queries, k, scorer));
+	}
+	
+	@Override
+	public List<QueryMetaData> partialSearch(Set<String> queries, int k, Scorer scorer) {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.partialSearch(queries, k, scorer);
+		}
+		return readLocked(() -> super.partialSearch(queries, k, scorer));
+	}
 	
 	@Override
 	public void add(String stem, String locations, int positions) {
 		lock.writeLock().lock();
 		try {
+			beforeWrite();
 			super.add(stem, locations, positions);
 		} finally {
 			lock.writeLock().unlock();
@@ -63,6 +226,7 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	public void addAll(InvertedIndex index) {
 		lock.writeLock().lock();
 		try {
+			beforeWrite();
 			super.addAll(index);
 		} finally {
 			lock.writeLock().unlock();
@@ -71,26 +235,28 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	@Override
 	public Map<String, Number> getCounts(){
-		lock.readLock().lock();
-		try {
-			return super.getCounts();
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getCounts();
 		}
+		return readLocked(() -> super.getCounts());
 	}
 	
 	@Override
 	public Integer getCount(String locations) {
-		lock.readLock().lock();
-		try {
-			return super.getCount(locations);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getCount(locations);
 		}
+		return readLocked(() -> super.getCount(locations));
 	}
 			
 	@Override
 	public Set<String> getWords(){ 
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getWords();
+		}
 		lock.readLock().lock();
 		try {
 			return super.getWords();
@@ -101,106 +267,106 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	@Override
 	public Set<String> getPaths(String word) {
-		lock.readLock().lock();
-		try {
-			return super.getWords();
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getPaths(word);
 		}
+		return readLocked(() -> super.getPaths(word));
 	}
 	
 	@Override
 	public Collection<Integer> getPositions(String word, String locations) {
-		lock.readLock().lock();
-		try {
-			return super.getPositions(word, locations);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.getPositions(word, locations);
 		}
+		return readLocked(() -> super.getPositions(word, locations));
 	}
 		
+	@Override
+	public long generation() {
+		return readLocked(() -> super.generation());
+	}
+	
 	@Override
 	public int countsSize() {
-		lock.readLock().lock();
-		try {
-			return super.countsSize();
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.countsSize();
 		}
+		return readLocked(() -> super.countsSize());
 	}
 	
 	@Override
 	public int indexSize() {
-		lock.readLock().lock();
-		try {
-			return super.indexSize();
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.indexSize();
 		}
+		return readLocked(() -> super.indexSize());
 	}
 
 	@Override
 	public int indexWordSize(String word) {
-		lock.readLock().lock();
-		try {
-			return super.indexWordSize(word);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.indexWordSize(word);
 		}
+		return readLocked(() -> super.indexWordSize(word));
 	}
 	
 	@Override
 	public int indexPositionsSize(String word, String locations) {
-		lock.readLock().lock();
-		try {
-			return super.indexPositionsSize(word, locations);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.indexPositionsSize(word, locations);
 		}
+		return readLocked(() -> super.indexPositionsSize(word, locations));
 	}
 			
 	@Override
 	public boolean containsCount(String locations) {
-		lock.readLock().lock();
-		try {
-			return super.containsCount(locations);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.containsCount(locations);
 		}
+		return readLocked(() -> super.containsCount(locations));
 	}
 	
 	@Override
 	public boolean hasWord(String word) {
-		lock.readLock().lock();
-		try {
-			return super.hasWord(word);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.hasWord(word);
 		}
+		return readLocked(() -> super.hasWord(word));
 	}
 		
 	@Override
 	public boolean hasStemFile(String word, String locations) {
-		lock.readLock().lock();
-		try {
-			return super.hasStemFile(word, locations);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.hasStemFile(word, locations);
 		}
+		return readLocked(() -> super.hasStemFile(word, locations));
 	}
 	
 	@Override
 	public boolean hasStemFilePosition(String word, String locations, int position) {
-		lock.readLock().lock();
-		try {
-			return super.hasStemFilePosition(word, locations, position);
-		} finally {
-			lock.readLock().unlock();
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.hasStemFilePosition(word, locations, position);
 		}
+		return readLocked(() -> super.hasStemFilePosition(word, locations, position));
 	}
 	
 	@Override
 	public void writeIndex(Path path) throws IOException {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			frozen.writeIndex(path);
+			return;
+		}
 		lock.readLock().lock();
 		try {
 			super.writeIndex(path);
@@ -211,6 +377,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	@Override
 	public void writeCounts(Path path) throws IOException {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			frozen.writeCounts(path);
+			return;
+		}
 		lock.readLock().lock();
 		try {
 			super.writeCounts(path);
@@ -221,6 +392,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	@Override
 	public String toString() {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.toString();
+		}
 		lock.readLock().lock();
 		try {
 			return super.toString();
@@ -231,6 +406,10 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	
 	@Override
 	public String countsToString() {
+		FrozenInvertedIndex frozen = snapshot;
+		if (frozen != null) {
+			return frozen.countsToString();
+		}
 		lock.readLock().lock();
 		try {
 			return super.countsToString();
@@ -0,0 +1,272 @@
+package edu.usfca.cs272;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Single pass tokenizer that splits a line into the same clean words as
+ * {@link FileStemmer#parse(String)}, without regular expressions and without
+ * creating a String per word. The current word is kept in a buffer that is reused
+ * for every word, so it must be copied or used before moving to the next one:
+ *
+ * <pre>
+ * tokenizer.reset(line);
+ * while (tokenizer.next()) {
+ *     stemmer.stem(tokenizer.word());
+ * }
+ * </pre>
+ *
+ * <p>Words made only of ASCII characters, which is nearly all of them in English
+ * text, are cleaned while they are scanned. Any other word is cleaned by
+ * {@link FileStemmer#clean(String)}, since normalizing and lowercasing it may depend
+ * on its other characters, which gives the same result as cleaning the whole line
+ * because words never change across whitespace.</p>
+ *
+ * <p>A Tokenizer can also split the UTF-8 bytes of many lines at once, such as a mapped
+ * file, see {@link #reset(ByteBuffer)}. Runs of bytes between ASCII spaces that are all
+ * ASCII are cleaned straight from the bytes, and only the other runs are decoded, so no
+ * String is created per line.</p>
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class Tokenizer {
+
+	/** Buffer holding the current word */
+	private final StringBuilder word;
+
+	/** Whether lowercasing ASCII letters does not depend on the default locale */
+	private final boolean asciiLowerCase;
+
+	/** Line being split */
+	private CharSequence line;
+
+	/** Index of the next character to scan */
+	private int index;
+
+	/** Whether no word of the line was returned yet */
+	private boolean first;
+
+	/** Whether an empty word must be returned before the first word, see {@link #next()} */
+	private boolean leadingEmpty;
+
+	/** Whether the empty word is returned instead of the buffer */
+	private boolean empty;
+
+	/** UTF-8 bytes being split, or null if splitting a single line */
+	private ByteBuffer bytes;
+
+	/** Index of the next byte to scan */
+	private int offset;
+
+	/** Decoder for runs of bytes that are not all ASCII, created when first needed */
+	private CharsetDecoder decoder;
+
+	/**
+	 * Initializes a Tokenizer without a line.
+	 */
+	public Tokenizer() {
+		String language = Locale.getDefault().getLanguage();
+		this.word = new StringBuilder();
+		this.asciiLowerCase = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+		reset("");
+	}
+
+	/**
+	 * Starts splitting a new line.
+	 *
+	 * @param line the line to split
+	 */
+	public void reset(CharSequence line) {
+		this.line = line;
+		this.index = 0;
+		this.first = true;
+		this.leadingEmpty = false;
+		this.empty = false;
+		this.word.setLength(0);
+		this.bytes = null;
+	}
+
+	/**
+	 * Starts splitting the UTF-8 bytes of one or more lines, from the position to the limit
+	 * of a buffer. The words are the same as splitting each line, as read by
+	 * {@link java.io.BufferedReader#readLine()}, one after the other. Bytes that are not
+	 * valid UTF-8 make {@link #next()} throw an UncheckedIOException.
+	 *
+	 * @param bytes the bytes to split, which must not change until the words are done
+	 */
+	public void reset(ByteBuffer bytes) {
+		reset("");
+		this.bytes = bytes;
+		this.offset = bytes.position();
+	}
+
+	/**
+	 * Moves to the next word of the line. Like {@link FileStemmer#split(String)}, which strips
+	 * the cleaned line with {@link String#strip()}, a line whose first word comes after a space
+	 * that is not {@link Character#isWhitespace(int)}, such as a no-break space, starts with an
+	 * empty word.
+	 *
+	 * @return true if there is another word, false once the line is done
+	 */
+	public boolean next() {
+		if (empty) {
+			empty = false;
+			return true;
+		}
+		if (nextInLine()) {
+			return true;
+		}
+		while (bytes != null && offset < bytes.limit()) {
+			if (nextInBytes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves to the next word of the current line.
+	 *
+	 * @return true if there is another word, false once the line is done
+	 */
+	private boolean nextInLine() {
+		int length = line.length();
+		while (index < length) {
+			int c = Character.codePointAt(line, index);
+			if (isSpace(c)) {
+				leadingEmpty |= first && !Character.isWhitespace(c);
+				index += Character.charCount(c);
+				continue;
+			}
+
+			int start = index;
+			boolean ascii = true;
+			while (index < length) {
+				c = Character.codePointAt(line, index);
+				if (isSpace(c)) {
+					break;
+				}
+				ascii &= c < 0x80;
+				index += Character.charCount(c);
+			}
+
+			word.setLength(0);
+			if (ascii && asciiLowerCase) {
+				for (int i = start; i < index; i++) {
+					appendAscii(line.charAt(i));
+				}
+			} else {
+				word.append(FileStemmer.clean(line.subSequence(start, index).toString()));
+			}
+
+			if (word.length() > 0) {
+				return found();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Scans the next run of bytes between ASCII spaces, starting a new line after a line
+	 * terminator. A run that is not all ASCII is decoded and split as the current line.
+	 *
+	 * @return true if a word was found in the run
+	 */
+	private boolean nextInBytes() {
+		int limit = bytes.limit();
+		while (offset < limit) {
+			byte b = bytes.get(offset);
+			if (b == '\n' || b == '\r') {
+				first = true;
+				leadingEmpty = false;
+			} else if (!isSpace(b)) {
+				break;
+			}
+			offset++;
+		}
+
+		int start = offset;
+		boolean ascii = true;
+		while (offset < limit) {
+			byte b = bytes.get(offset);
+			if (b >= 0 && isSpace(b)) {
+				break;
+			}
+			ascii &= b >= 0;
+			offset++;
+		}
+
+		if (ascii && asciiLowerCase) {
+			word.setLength(0);
+			for (int i = start; i < offset; i++) {
+				appendAscii((char) bytes.get(i));
+			}
+			return word.length() > 0 && found();
+		}
+		try {
+			if (decoder == null) {
+				decoder = StandardCharsets.UTF_8.newDecoder();
+			}
+			line = decoder.decode(bytes.slice(start, offset - start));
+		} catch (CharacterCodingException e) {
+			throw new UncheckedIOException(e);
+		}
+		index = 0;
+		return nextInLine();
+	}
+
+	/**
+	 * Appends an ASCII character to the current word if it is a letter, in lowercase.
+	 *
+	 * @param ch the character
+	 */
+	private void appendAscii(char ch) {
+		if (ch >= 'a' && ch <= 'z') {
+			word.append(ch);
+		} else if (ch >= 'A' && ch <= 'Z') {
+			word.append((char) (ch + ('a' - 'A')));
+		}
+	}
+
+	/**
+	 * Marks the current word as found, which is preceded by an empty word if it is the
+	 * first word of its line and came after a space that is not whitespace.
+	 *
+	 * @return true
+	 */
+	private boolean found() {
+		empty = first && leadingEmpty;
+		first = false;
+		return true;
+	}
+
+	/**
+	 * Returns the current word, which is only valid until the next call to {@link #next()}.
+	 *
+	 * @return the current word
+	 */
+	public CharSequence word() {
+		return empty ? "" : word;
+	}
+
+	/**
+	 * Checks whether a character is a space, the same as {@code \p{Space}} in
+	 * {@link FileStemmer#SPLIT_REGEX}, which is the Unicode White_Space property.
+	 *
+	 * @param c the code point
+	 * @return true if the character is a space
+	 */
+	public static boolean isSpace(int c) {
+		if (c < 0x80) {
+			return c == ' ' || (c >= 0x09 && c <= 0x0D);
+		}
+		int type = Character.getType(c);
+		return c == 0x85 || type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR || type == Character.PARAGRAPH_SEPARATOR;
+	}
+}
@@ -1,6 +1,5 @@
 package edu.usfca.cs272;
 
-import static opennlp.tools.stemmer.snowball.SnowballStemmer.ALGORITHM.ENGLISH;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
@@ -9,7 +8,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
  * Class responsible for building the data structures contained within the InvertedIndex class from a given URL link
@@ -78,6 +76,23 @@ public class WebCrawler {
 	 * @throws IOException throws exception if unable to parse link
 	 */
 	public void multiThreadedCrawl(String link, int crawl, ThreadSafeInvertedIndex safeIndex, WorkQueue queue) throws IOException {
+		multiThreadedCrawl(link, crawl, safeIndex, queue, false);
+	}
+	
+	/**
+	 * Same as {@link #multiThreadedCrawl(String, int, ThreadSafeInvertedIndex, WorkQueue)}, but may merge
+	 * the partial indexes built by the workers in a tree instead, see {@link PartialIndexMerger}, so the
+	 * ThreadSafeInvertedIndex only receives a few large batches once every worker is done.
+	 * 
+	 * @param link in String form to be converted to URL
+	 * @param crawl int number of redirects to follow when fetching the HTML
+	 * @param safeIndex Inverted Index to add the stemmed HTML
+	 * @param queue WorkQueue to use to manage worker objects
+	 * @param merge whether to merge the partial indexes in a tree
+	 * @throws IOException throws exception if unable to parse link
+	 */
+	public void multiThreadedCrawl(String link, int crawl, ThreadSafeInvertedIndex safeIndex, WorkQueue queue, boolean merge) throws IOException {
+		PartialIndexMerger merger = merge ? new PartialIndexMerger(safeIndex.hasPositions()) : null;
 		URL base = null;
 		try {
 			base = new URL(link);
@@ -101,7 +116,7 @@ public class WebCrawler {
 							currHtml = HtmlCleaner.stripBlockElements(currHtml);
 							LinkFinder.findUrls(base, currHtml, urls);
 						}
-						Runnable task = new Task(base, safeIndex);
+						Runnable task = new Task(base, safeIndex, merger);
 						queue.execute(task);
 						seen.add(base);
 						y++;
@@ -113,6 +128,9 @@ public class WebCrawler {
 			}
 		}
 		queue.finish();
+		if (merger != null) {
+			merger.finish(safeIndex);
+		}
 	}
 
 	/**
@@ -128,13 +146,16 @@ public class WebCrawler {
 		if (linkRead != null) {
 			String cleanHtml = HtmlCleaner.stripHtml(linkRead);
 			try (BufferedReader reader = new BufferedReader(new StringReader(cleanHtml))) {
-				Stemmer stemmer = new SnowballStemmer(ENGLISH);
+				Stemmer stemmer = StemCache.ENGLISH;
+				Tokenizer tokenizer = new Tokenizer();
+				String location = link.toString();
 				String line;
 				int i = 1;
 				while ((line = reader.readLine()) != null) {
-					for (String word: FileStemmer.parse(line)) {
-						if (word != "") {
-							index.add(stemmer.stem(word).toString(), link.toString(), i);
+					tokenizer.reset(line);
+					while (tokenizer.next()) {
+						if (tokenizer.word().length() > 0) {
+							index.add(stemmer.stem(tokenizer.word()).toString(), location, i);
 							i++;
 						}
 					}
@@ -155,22 +176,31 @@ public class WebCrawler {
 		/** ThreadSafeInvertedIndex to add the parsed HTML content to */
 		private final ThreadSafeInvertedIndex safeIndex;
 		
+		/** Merger to hand the parsed HTML content to instead of adding it to safeIndex, or null */
+		private final PartialIndexMerger merger;
+		
 		/**
 		 * Constructor for this task class which sets the URL link to parse and the ThreadSafeInvertedIndex to populate.
 		 * @param link URL link to parse
 		 * @param safeIndex ThreadSafeInvertedIndex to populate
+		 * @param merger PartialIndexMerger to hand the parsed HTML content to, or null to add it to safeIndex
 		 */
-		public Task(URL link, ThreadSafeInvertedIndex safeIndex) {
+		public Task(URL link, ThreadSafeInvertedIndex safeIndex, PartialIndexMerger merger) {
 			this.link = link;
 			this.safeIndex = safeIndex;
+			this.merger = merger;
 		}
 		
 		@Override
 		public void run() {
 			try {
-				InvertedIndex temp = new InvertedIndex();
+				InvertedIndex temp = merger != null ? merger.create() : new InvertedIndex(safeIndex.hasPositions());
 				parseLink(link, temp);
-				safeIndex.addAll(temp);
+				if (merger != null) {
+					merger.add(temp);
+				} else {
+					safeIndex.addAll(temp);
+				}
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
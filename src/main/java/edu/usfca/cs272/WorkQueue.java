@@ -1,6 +1,8 @@
 package edu.usfca.cs272;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -147,6 +149,21 @@ public class WorkQueue {
 		}
 	}
 
+	/**
+	 * Returns the total time each worker thread has spent running tasks so far.
+	 * Comparing two calls shows how busy each worker was in between.
+	 *
+	 * @return map from worker thread name to nanoseconds spent running tasks,
+	 *   in the order the workers were started
+	 */
+	public Map<String, Long> busyTimes() {
+		Map<String, Long> times = new LinkedHashMap<>();
+		for (Worker worker : workers) {
+			times.put(worker.getName(), worker.busy);
+		}
+		return times;
+	}
+
 	/**
 	 * Returns the number of worker threads being used by the work queue.
 	 *
@@ -166,6 +183,9 @@ public class WorkQueue {
 	 * is requested.
 	 */
 	private class Worker extends Thread {
+		/** Nanoseconds spent running tasks, only written by this worker. */
+		private volatile long busy;
+
 		/**
 		 * Initializes a worker thread with a custom name.
 		 */
@@ -188,6 +208,7 @@ public class WorkQueue {
 						}
 						task = tasks.removeFirst();
 					}
+					long start = System.nanoTime();
 					try {
 						task.run();
 					}
@@ -195,6 +216,7 @@ public class WorkQueue {
 						System.err.printf("Error: %s encountered an exception while running.%n", this.getName());
 						log.catching(Level.ERROR, e);
 					}
+					busy += System.nanoTime() - start;
 					decrementPending();
 				}
 			}
@@ -0,0 +1,93 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests parsing query lines with boolean operators into a BooleanQuery.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class BooleanQueryTest {
+
+	/**
+	 * Tests that a proximity distance too large for an int is treated as the largest int
+	 * instead of failing to parse the line.
+	 */
+	@Test
+	public void testLargeDistance() {
+		BooleanQuery query = BooleanQuery.parse("pizza NEAR/99999999999 oven AND NOT salad");
+		assertTrue(query.toString().contains("pizza NEAR/" + Integer.MAX_VALUE + " oven"), query.toString());
+	}
+
+	/**
+	 * Tests that lines whose operators only join words by OR are the same query, with the
+	 * same key, as the sorted unique stems of the line.
+	 */
+	@Test
+	public void testDisjunctionKey() {
+		String[] lines = {"(pizza oven)", "pizza OR oven", "(Pizza OR ovens) OR salad", "()"};
+		for (String line: lines) {
+			SearchQuery query = SearchQuery.parse(line);
+			assertInstanceOf(PositionalQuery.class, query, line);
+			assertEquals(String.join(" ", FileStemmer.uniqueStems(line)), query.toString(), line);
+		}
+	}
+
+	/**
+	 * Tests that lines with any other operator are still parsed as a BooleanQuery.
+	 */
+	@Test
+	public void testBooleanKey() {
+		String[] lines = {"pizza AND oven", "pizza OR NOT oven", "(pizza OR oven) \"new york\""};
+		for (String line: lines) {
+			assertInstanceOf(BooleanQuery.class, SearchQuery.parse(line), line);
+		}
+	}
+
+	/**
+	 * Tests that results keyed by a boolean query with a phrase, whose key has quotation marks,
+	 * are written as valid JSON with the same key.
+	 *
+	 * @throws IOException if unable to write or read the results
+	 */
+	@Test
+	public void testPhraseResultsJson() throws IOException {
+		InvertedIndex index = new InvertedIndex();
+		String[] words = {"read", "the", "license", "first"};
+		for (int i = 0; i < words.length; i++) {
+			index.add(StemCache.ENGLISH.stem(words[i]), "license.txt", i + 1);
+		}
+		index.add(StemCache.ENGLISH.stem("software"), "software.txt", 1);
+		String line = "\"the license\" AND NOT software";
+		String key = SearchQuery.parse(line).toString();
+		assertInstanceOf(BooleanQuery.class, SearchQuery.parse(line));
+		assertTrue(key.contains("\""), key);
+
+		QueryProcessor processor = new SingleThreadedQueryProcessor(index);
+		processor.processQueries(line, false, Integer.MAX_VALUE);
+		Path results = Files.createTempFile("results", ".json");
+		try {
+			processor.writeResults(results);
+			Map<?, ?> written = (Map<?, ?>) JsonReader.read(results);
+			assertEquals(Set.of(key), written.keySet());
+			List<?> found = (List<?>) written.get(key);
+			assertEquals(1, found.size());
+			assertEquals("license.txt", ((Map<?, ?>) found.get(0)).get("where"));
+		} finally {
+			Files.deleteIfExists(results);
+		}
+	}
+}
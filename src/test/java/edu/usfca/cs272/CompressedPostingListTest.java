@@ -0,0 +1,113 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that skipping through compressed postings finds the same documents as
+ * stepping through them one at a time.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class CompressedPostingListTest {
+
+	/**
+	 * Creates the postings of random documents, with a few positions each.
+	 *
+	 * @param random the source of randomness
+	 * @param size the number of documents to try to add
+	 * @param range the largest document ID plus one
+	 * @return the postings
+	 */
+	private static PostingList randomPostings(Random random, int size, int range) {
+		PostingList postings = new PostingList(true);
+		for (int i = 0; i < size; i++) {
+			int document = random.nextInt(range);
+			for (int j = random.nextInt(3); j >= 0; j--) {
+				postings.add(document, random.nextInt(1000) + 1);
+			}
+		}
+		return postings;
+	}
+
+	/**
+	 * Returns the document IDs of postings.
+	 *
+	 * @param postings the postings
+	 * @return the sorted document IDs
+	 */
+	private static TreeSet<Integer> documents(PostingList postings) {
+		TreeSet<Integer> documents = new TreeSet<>();
+		for (int i = 0; i < postings.size(); i++) {
+			documents.add(postings.document(i));
+		}
+		return documents;
+	}
+
+	/**
+	 * Tests that advancing over several skip entries lands on the first document at or
+	 * after each target, with the right frequency and positions.
+	 */
+	@Test
+	public void testAdvance() {
+		Random random = new Random(272);
+		PostingList postings = randomPostings(random, 2000, 20000);
+		TreeSet<Integer> documents = documents(postings);
+		PostingIterator iterator = postings.compress().iterator();
+
+		int target = 0;
+		while (true) {
+			target += random.nextInt(CompressedPostingList.SKIP_INTERVAL * 40);
+			Integer expected = documents.ceiling(target);
+			int found = iterator.advance(target);
+			if (expected == null) {
+				assertEquals(PostingIterator.NO_MORE_DOCUMENTS, found);
+				break;
+			}
+			assertEquals(expected.intValue(), found, "advance(" + target + ")");
+			assertEquals(postings.frequencyOf(found), iterator.frequency());
+			PositionList positions = postings.get(found);
+			for (int position: positions) {
+				assertEquals(position, iterator.nextPosition());
+			}
+		}
+	}
+
+	/**
+	 * Tests that intersecting compressed postings, which skips whole blocks of documents,
+	 * finds exactly the documents they all contain.
+	 */
+	@Test
+	public void testIntersect() {
+		Random random = new Random(2023);
+		for (int trial = 0; trial < 20; trial++) {
+			PostingList[] lists = {
+					randomPostings(random, 5000, 30000),
+					randomPostings(random, 300, 30000),
+					randomPostings(random, 3000, 30000)
+			};
+			TreeSet<Integer> expected = documents(lists[0]);
+			PostingIterator[] iterators = new PostingIterator[lists.length];
+			for (int i = 0; i < lists.length; i++) {
+				expected.retainAll(documents(lists[i]));
+				iterators[i] = lists[i].compress().iterator();
+			}
+
+			List<Integer> actual = new ArrayList<>();
+			int document = PositionalQuery.intersect(iterators, 0);
+			while (document != PostingIterator.NO_MORE_DOCUMENTS) {
+				actual.add(document);
+				document = PositionalQuery.intersect(iterators, document + 1);
+			}
+			assertEquals(new ArrayList<>(expected), actual);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a ConcurrentInvertedIndex built by many threads at once holds the same
+ * words, positions and counts as an InvertedIndex built by one thread.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ConcurrentInvertedIndexTest {
+
+	/** Number of threads adding at once */
+	private static final int THREADS = 8;
+
+	/**
+	 * Builds the same words into a single-threaded index and, with one thread per file, a
+	 * concurrent index, then compares them.
+	 *
+	 * @param positions whether to retain positions
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	private static void testBuild(boolean positions) throws InterruptedException {
+		InvertedIndex expected = new InvertedIndex(positions);
+		ConcurrentInvertedIndex actual = new ConcurrentInvertedIndex(positions);
+		String[][] words = new String[THREADS][];
+		Random random = new Random(positions ? 1 : 2);
+		for (int file = 0; file < THREADS; file++) {
+			words[file] = new String[5000];
+			for (int i = 0; i < words[file].length; i++) {
+				words[file][i] = "w" + random.nextInt(500);
+				expected.add(words[file][i], "file" + file, i + 1);
+			}
+		}
+
+		Thread[] threads = new Thread[THREADS];
+		for (int file = 0; file < THREADS; file++) {
+			int number = file;
+			threads[file] = new Thread(() -> {
+				if (number % 2 == 0) {
+					for (int i = 0; i < words[number].length; i++) {
+						actual.add(words[number][i], "file" + number, i + 1);
+					}
+				} else {
+					InvertedIndex partial = new InvertedIndex(positions);
+					for (int i = 0; i < words[number].length; i++) {
+						partial.add(words[number][i], "file" + number, i + 1);
+					}
+					actual.addAll(partial);
+				}
+			});
+			threads[file].start();
+		}
+		for (Thread thread: threads) {
+			thread.join();
+		}
+
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.countsToString(), actual.countsToString());
+		assertEquals(expected.exactSearch(Set.of("w1", "w20"), 5, Scorer.COUNT).toString(),
+				actual.exactSearch(Set.of("w1", "w20"), 5, Scorer.COUNT).toString());
+	}
+
+	/**
+	 * Tests a concurrent build that retains positions.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	@Test
+	public void testPositions() throws InterruptedException {
+		testBuild(true);
+	}
+
+	/**
+	 * Tests a concurrent build that only keeps frequencies.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	@Test
+	public void testFrequencies() throws InterruptedException {
+		testBuild(false);
+	}
+}
@@ -0,0 +1,61 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the norms and weights of a DocumentTable are computed once for its counts,
+ * recomputed after a count changes, and the same as computing them from the counts directly.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class DocumentTableTest {
+
+	/**
+	 * Checks the norms and weights of a table against those computed from its counts.
+	 *
+	 * @param table the table
+	 * @param scorer the Scorer
+	 */
+	private static void checkNorms(DocumentTable table, Scorer scorer) {
+		DocumentTable.Norms norms = table.norms(scorer);
+		double average = (double) table.totalCount() / table.countsSize();
+		for (int id = 0; id < table.size(); id++) {
+			assertEquals(scorer.norm(table.getCount(id), average), norms.norm(id));
+		}
+		for (int frequency = 0; frequency <= table.countsSize() + 1; frequency++) {
+			assertEquals(scorer.weight(frequency, table.countsSize()), norms.weight(frequency));
+		}
+	}
+
+	/**
+	 * Tests that the norms are reused until a count changes, for both kinds of table.
+	 */
+	@Test
+	public void testNorms() {
+		for (DocumentTable table: new DocumentTable[] {new DocumentTable(), new ConcurrentDocumentTable()}) {
+			table.addCount(table.add("a.txt"), 3);
+			table.addCount(table.add("b.txt"), 10);
+			for (Scorer scorer: new Scorer[] {Scorer.COUNT, Scorer.TFIDF, Scorer.BM25}) {
+				DocumentTable.Norms norms = table.norms(scorer);
+				assertSame(norms, table.norms(scorer));
+				checkNorms(table, scorer);
+			}
+
+			DocumentTable.Norms before = table.norms(Scorer.BM25);
+			table.addCount(table.add("c.txt"), 1);
+			assertNotSame(before, table.norms(Scorer.BM25));
+			checkNorms(table, Scorer.BM25);
+
+			before = table.norms(Scorer.BM25);
+			table.addCount(table.get("a.txt"), 5);
+			assertNotSame(before, table.norms(Scorer.BM25));
+			checkNorms(table, Scorer.BM25);
+		}
+	}
+}
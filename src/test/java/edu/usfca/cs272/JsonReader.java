@@ -0,0 +1,250 @@
+package edu.usfca.cs272;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal strict JSON parser for tests, which reads back what {@link JsonWriter} wrote.
+ * Objects are read as a LinkedHashMap, arrays as a List, strings as a String and numbers
+ * as a Double. Anything that is not valid JSON is an IllegalArgumentException.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class JsonReader {
+
+	/** The text being parsed */
+	private final String text;
+
+	/** Index of the next character */
+	private int position;
+
+	/**
+	 * Initializes a JsonReader
+	 *
+	 * @param text the text to parse
+	 */
+	private JsonReader(String text) {
+		this.text = text;
+		this.position = 0;
+	}
+
+	/**
+	 * Parses a JSON file.
+	 *
+	 * @param path the path of the file
+	 * @return the parsed value
+	 * @throws IOException if unable to read the file
+	 */
+	public static Object read(Path path) throws IOException {
+		return parse(Files.readString(path));
+	}
+
+	/**
+	 * Parses JSON text, which must be exactly one value.
+	 *
+	 * @param text the text to parse
+	 * @return the parsed value
+	 */
+	public static Object parse(String text) {
+		JsonReader reader = new JsonReader(text);
+		Object value = reader.value();
+		reader.skipSpace();
+		if (reader.position != text.length()) {
+			throw reader.error("end of text");
+		}
+		return value;
+	}
+
+	/**
+	 * Parses the value at the current position.
+	 *
+	 * @return the parsed value
+	 */
+	private Object value() {
+		skipSpace();
+		if (position >= text.length()) {
+			throw error("value");
+		}
+		char c = text.charAt(position);
+		if (c == '{') {
+			return object();
+		}
+		if (c == '[') {
+			return array();
+		}
+		if (c == '"') {
+			return string();
+		}
+		return number();
+	}
+
+	/**
+	 * Parses an object.
+	 *
+	 * @return the members of the object, in order
+	 */
+	private Map<String, Object> object() {
+		Map<String, Object> members = new LinkedHashMap<>();
+		expect('{');
+		skipSpace();
+		if (peek('}')) {
+			position++;
+			return members;
+		}
+		do {
+			skipSpace();
+			String key = string();
+			skipSpace();
+			expect(':');
+			if (members.put(key, value()) != null) {
+				throw error("unique key");
+			}
+			skipSpace();
+		} while (consume(','));
+		expect('}');
+		return members;
+	}
+
+	/**
+	 * Parses an array.
+	 *
+	 * @return the elements of the array, in order
+	 */
+	private List<Object> array() {
+		List<Object> elements = new ArrayList<>();
+		expect('[');
+		skipSpace();
+		if (peek(']')) {
+			position++;
+			return elements;
+		}
+		do {
+			elements.add(value());
+			skipSpace();
+		} while (consume(','));
+		expect(']');
+		return elements;
+	}
+
+	/**
+	 * Parses a string.
+	 *
+	 * @return the unescaped string
+	 */
+	private String string() {
+		expect('"');
+		StringBuilder builder = new StringBuilder();
+		while (position < text.length()) {
+			char c = text.charAt(position++);
+			if (c == '"') {
+				return builder.toString();
+			}
+			if (c < 0x20) {
+				throw error("escaped control character");
+			}
+			if (c != '\\') {
+				builder.append(c);
+				continue;
+			}
+			if (position >= text.length()) {
+				break;
+			}
+			char escaped = text.charAt(position++);
+			switch (escaped) {
+				case '"', '\\', '/' -> builder.append(escaped);
+				case 'b' -> builder.append('\b');
+				case 'f' -> builder.append('\f');
+				case 'n' -> builder.append('\n');
+				case 'r' -> builder.append('\r');
+				case 't' -> builder.append('\t');
+				case 'u' -> {
+					if (position + 4 > text.length()) {
+						throw error("unicode escape");
+					}
+					builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+					position += 4;
+				}
+				default -> throw error("escape");
+			}
+		}
+		throw error("closing quotation mark");
+	}
+
+	/**
+	 * Parses a number.
+	 *
+	 * @return the number
+	 */
+	private Double number() {
+		int start = position;
+		while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+			position++;
+		}
+		try {
+			return Double.valueOf(text.substring(start, position));
+		} catch (NumberFormatException e) {
+			throw error("number");
+		}
+	}
+
+	/**
+	 * Skips whitespace.
+	 */
+	private void skipSpace() {
+		while (position < text.length() && " \t\r\n".indexOf(text.charAt(position)) >= 0) {
+			position++;
+		}
+	}
+
+	/**
+	 * Checks whether the next character is the expected one.
+	 *
+	 * @param expected the expected character
+	 * @return true if it is
+	 */
+	private boolean peek(char expected) {
+		return position < text.length() && text.charAt(position) == expected;
+	}
+
+	/**
+	 * Moves past the next character if it is the expected one.
+	 *
+	 * @param expected the expected character
+	 * @return true if it was
+	 */
+	private boolean consume(char expected) {
+		if (peek(expected)) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Moves past the next character, which must be the expected one.
+	 *
+	 * @param expected the expected character
+	 */
+	private void expect(char expected) {
+		if (!consume(expected)) {
+			throw error("'" + expected + "'");
+		}
+	}
+
+	/**
+	 * Creates the error for something missing at the current position.
+	 *
+	 * @param expected what was expected
+	 * @return the error
+	 */
+	private IllegalArgumentException error(String expected) {
+		return new IllegalArgumentException("Expected " + expected + " at " + position);
+	}
+}
@@ -0,0 +1,98 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests parsing and matching proximity clauses of a PositionalQuery.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class PositionalQueryTest {
+
+	/**
+	 * Tests that a distance too large for an int is treated as the largest int instead of
+	 * failing to parse the line.
+	 */
+	@Test
+	public void testLargeDistance() {
+		PositionalQuery query = PositionalQuery.parse("pizza NEAR/99999999999 oven");
+		assertEquals("oven pizza pizza NEAR/" + Integer.MAX_VALUE + " oven", query.toString());
+
+		InvertedIndex index = new InvertedIndex();
+		index.add("pizza", "near.txt", 1);
+		index.add("oven", "near.txt", 2);
+		index.add("pizza", "far.txt", 1);
+		index.add("oven", "far.txt", 1000000);
+		assertEquals(2, index.search(query, false, 10, Scorer.COUNT).size());
+	}
+
+	/**
+	 * Tests that a distance that fits in an int is kept as it is, and one that does not is clamped.
+	 */
+	@Test
+	public void testDistance() {
+		PositionalQuery query = PositionalQuery.parse("pizza NEAR/3 oven");
+		assertEquals("oven pizza pizza NEAR/3 oven", query.toString());
+		assertEquals(Integer.MAX_VALUE, PositionalQuery.parseDistance("2147483648"));
+		assertEquals(Integer.MAX_VALUE, PositionalQuery.parseDistance("2147483647"));
+		assertEquals(3, PositionalQuery.parseDistance("3"));
+	}
+
+	/**
+	 * Tests that the words after a quotation mark that is never closed are plain words.
+	 */
+	@Test
+	public void testUnterminatedQuote() {
+		PositionalQuery query = PositionalQuery.parse("foo \"bar baz");
+		assertEquals(PositionalQuery.parse("foo bar baz").toString(), query.toString());
+		assertFalse(query.isPositional());
+
+		query = PositionalQuery.parse("\"foo bar\" baz \"qux quux");
+		assertEquals(1, query.getClauses().size());
+		assertEquals(PositionalQuery.parse("\"foo bar\" baz qux quux").toString(), query.toString());
+	}
+
+	/**
+	 * Tests that results keyed by a query with a phrase, whose key has quotation marks, are
+	 * written as valid JSON with the same key.
+	 *
+	 * @throws IOException if unable to write or read the results
+	 */
+	@Test
+	public void testPhraseResultsJson() throws IOException {
+		InvertedIndex index = new InvertedIndex();
+		String[] words = {"the", "license", "of", "the", "software", "is", "the", "license"};
+		for (int i = 0; i < words.length; i++) {
+			index.add(StemCache.ENGLISH.stem(words[i]), "C:\\docs\\license.txt", i + 1);
+		}
+		String line = "license software \"the license\"";
+		String key = PositionalQuery.parse(line).toString();
+		assertEquals(2, key.chars().filter(c -> c == '"').count());
+
+		QueryProcessor processor = new SingleThreadedQueryProcessor(index);
+		processor.processQueries(line, false, Integer.MAX_VALUE);
+		Path results = Files.createTempFile("results", ".json");
+		try {
+			processor.writeResults(results);
+			Map<?, ?> written = (Map<?, ?>) JsonReader.read(results);
+			assertEquals(Set.of(key), written.keySet());
+			List<?> found = (List<?>) written.get(key);
+			assertEquals(1, found.size());
+			assertEquals("C:\\docs\\license.txt", ((Map<?, ?>) found.get(0)).get("where"));
+		} finally {
+			Files.deleteIfExists(results);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import edu.usfca.cs272.InvertedIndex.QueryMetaData;
+
+/**
+ * Tests looking up the cached results of queries in a ResultCache.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ResultCacheTest {
+
+	/**
+	 * Tests that results searched with a larger k are cut down to the k asked for, and
+	 * that results searched with a smaller k are not used.
+	 */
+	@Test
+	public void testTopK() {
+		InvertedIndex index = new InvertedIndex();
+		for (int file = 0; file < 5; file++) {
+			for (int i = 0; i <= file; i++) {
+				index.add("word", "file" + file, i + 1);
+			}
+		}
+		List<QueryMetaData> found = index.exactSearch(Set.of("word"), 5, Scorer.COUNT);
+		assertEquals(5, found.size());
+
+		ResultCache cache = new ResultCache();
+		cache.put("word", false, 5, index.generation(), found);
+		assertEquals(found.subList(0, 2), cache.get("word", false, 2, index.generation()));
+		assertEquals(found, cache.get("word", false, 5, index.generation()));
+		assertNull(cache.get("word", false, 6, index.generation()));
+		assertNull(cache.get("word", true, 2, index.generation()));
+	}
+}
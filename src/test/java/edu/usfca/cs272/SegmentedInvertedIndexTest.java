@@ -0,0 +1,62 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a SegmentedInvertedIndex ranks documents whose words span several segments
+ * the same as an InvertedIndex holding the same words.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class SegmentedInvertedIndexTest {
+
+	/**
+	 * Adds the same words to both indexes.
+	 *
+	 * @param expected the InvertedIndex
+	 * @param actual the SegmentedInvertedIndex
+	 * @param location the location of the words
+	 * @param start the position of the first word
+	 * @param words the words
+	 */
+	private static void add(InvertedIndex expected, SegmentedInvertedIndex actual, String location, int start, String... words) {
+		for (int i = 0; i < words.length; i++) {
+			expected.add(words[i], location, start + i);
+			actual.add(words[i], location, start + i);
+		}
+	}
+
+	/**
+	 * Tests scores of a document whose postings are in two segments.
+	 */
+	@Test
+	public void testDocumentSpanningSegments() {
+		InvertedIndex expected = new InvertedIndex();
+		SegmentedInvertedIndex actual = new SegmentedInvertedIndex();
+		try {
+			add(expected, actual, "big.txt", 1, "the", "licens", "the", "softwar");
+			add(expected, actual, "other.txt", 1, "softwar", "is", "free");
+			actual.refresh();
+			add(expected, actual, "big.txt", 5, "the", "licens", "again");
+			add(expected, actual, "last.txt", 1, "the", "end");
+			actual.refresh();
+			assertEquals(2, actual.segmentsSize());
+
+			for (Scorer scorer: new Scorer[] {Scorer.COUNT, Scorer.TFIDF, Scorer.BM25}) {
+				for (boolean partial: new boolean[] {false, true}) {
+					Set<String> query = Set.of("the", "licens");
+					assertEquals(expected.search(query, partial, 10, scorer).toString(),
+							actual.search(query, partial, 10, scorer).toString());
+				}
+			}
+		} finally {
+			actual.shutdown();
+		}
+	}
+}
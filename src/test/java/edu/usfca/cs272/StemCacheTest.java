@@ -0,0 +1,42 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Tests that a StemCache stems words in a reused buffer the same as a Stemmer, and
+ * remembers them by their characters.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class StemCacheTest {
+
+	/**
+	 * Tests stemming the words of one StringBuilder that is changed between words.
+	 */
+	@Test
+	public void testReusedBuffer() {
+		StemCache cache = new StemCache(() -> new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH), StemCache.DEFAULT_CAPACITY);
+		SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		StringBuilder word = new StringBuilder("running");
+		String first = cache.stem(word);
+		assertEquals(stemmer.stem("running").toString(), first);
+
+		word.setLength(0);
+		word.append("runners");
+		assertEquals(stemmer.stem("runners").toString(), cache.stem(word));
+
+		word.setLength(0);
+		word.append("running");
+		assertSame(first, cache.stem(word));
+		assertSame(first, cache.stem("running"));
+		assertEquals(Long.valueOf(2), cache.statistics().get("hits"));
+		assertEquals(Long.valueOf(2), cache.statistics().get("misses"));
+	}
+}
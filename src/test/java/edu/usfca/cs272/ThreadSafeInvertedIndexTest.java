@@ -0,0 +1,119 @@
+package edu.usfca.cs272;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that searches of a ThreadSafeInvertedIndex finish while other threads are adding to
+ * and refreshing it, and that it ends up the same as an InvertedIndex built by one thread.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class ThreadSafeInvertedIndexTest {
+
+	/** Number of threads adding at once */
+	private static final int WRITERS = 4;
+
+	/** Number of threads searching at once */
+	private static final int READERS = 4;
+
+	/** Longest time in milliseconds to wait for every thread to finish */
+	private static final long TIMEOUT = 60000;
+
+	/**
+	 * Searches the index while writers add to it and another thread refreshes it.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	@Test
+	public void testSearchWhileWriting() throws InterruptedException {
+		InvertedIndex expected = new InvertedIndex();
+		ThreadSafeInvertedIndex actual = new ThreadSafeInvertedIndex();
+		String[][] words = new String[WRITERS][];
+		Random random = new Random(3);
+		for (int file = 0; file < WRITERS; file++) {
+			words[file] = new String[20000];
+			for (int i = 0; i < words[file].length; i++) {
+				words[file][i] = (i % 2 == 0 ? "w" : "x") + random.nextInt(5000);
+				expected.add(words[file][i], "file" + file, i + 1);
+			}
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread[] writers = new Thread[WRITERS];
+		for (int file = 0; file < WRITERS; file++) {
+			int number = file;
+			writers[file] = new Thread(() -> {
+				for (int i = 0; i < words[number].length; i++) {
+					actual.add(words[number][i], "file" + number, i + 1);
+				}
+			});
+		}
+
+		Thread[] readers = new Thread[READERS + 1];
+		for (int reader = 0; reader < READERS; reader++) {
+			int seed = reader;
+			readers[reader] = new Thread(() -> {
+				Random queries = new Random(seed);
+				while (isAlive(writers)) {
+					String word = "w" + queries.nextInt(5000);
+					actual.exactSearch(Set.of(word, "x" + queries.nextInt(5000)), 10, Scorer.COUNT);
+					actual.partialSearch(Set.of("w" + queries.nextInt(50)), 10, Scorer.COUNT);
+					actual.hasWord(word);
+					actual.getPaths(word);
+					actual.indexWordSize(word);
+				}
+			});
+		}
+		readers[READERS] = new Thread(() -> {
+			while (isAlive(writers)) {
+				actual.refresh();
+				Thread.yield();
+			}
+		});
+
+		Thread[] threads = new Thread[WRITERS + READERS + 1];
+		System.arraycopy(writers, 0, threads, 0, WRITERS);
+		System.arraycopy(readers, 0, threads, WRITERS, READERS + 1);
+		for (Thread thread: threads) {
+			thread.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+			thread.start();
+		}
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		for (Thread thread: threads) {
+			thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+		}
+
+		assertFalse(isAlive(threads), "Threads did not finish");
+		assertNull(failure.get());
+		actual.refresh();
+		assertEquals(expected.toString(), actual.toString());
+		assertEquals(expected.countsToString(), actual.countsToString());
+		assertEquals(expected.partialSearch(Set.of("w1", "w20"), 5, Scorer.COUNT).toString(),
+				actual.partialSearch(Set.of("w1", "w20"), 5, Scorer.COUNT).toString());
+	}
+
+	/**
+	 * Returns whether any of some threads is still running.
+	 *
+	 * @param threads the threads
+	 * @return true if any of the threads is alive
+	 */
+	private static boolean isAlive(Thread[] threads) {
+		for (Thread thread: threads) {
+			if (thread.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,167 @@
+package edu.usfca.cs272;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a Tokenizer splits lines and UTF-8 bytes into the same words as
+ * {@link FileStemmer#parse(String)}, including text that is not ASCII and text whose
+ * case depends on the default locale.
+ *
+ * @author Alexander Bareli
+ * @author CS 272 Software Development (University of San Francisco)
+ * @version Spring 2023
+ */
+public class TokenizerTest {
+
+	/** Lines with letters that are not ASCII, unusual spaces and punctuation */
+	private static final String[] LINES = {
+			"The quick brown fox's jumped over 1,234 lazy dogs.",
+			"Café naïve ÉCOLE Straße ẞ",
+			"İstanbul ısık ISTANBUL i̇",
+			"ΣΟΦΟΣ σοφός",
+			" leading no-break space and figure spaces",
+			"　ideographic　space  line paragraph\u0085next",
+			"emoji 😀 and 中文 and ⅠⅡ ﬁne ʰ",
+			"   \t ",
+			""
+	};
+
+	/** Code points to build random lines from */
+	private static final int[] POOL = {
+			' ', '\t', 0x0B, 0x1C, 0x85, 0xA0, 0x2007, 0x202F, 0x3000, 0x2028, 'a', 'Z', 'I', 'q', '1',
+			'-', '\'', '.', 0xE9, 0xC9, 0x130, 0x131, 0x3A3, 0x3C3, 0x1E9E, 0xDF, 0x345, 0x307,
+			0x1F600, 0x4E2D, 0x2160, 0xFB01, 0x2B0, 'x', 'e', 'E'
+	};
+
+	/**
+	 * Splits a line with a Tokenizer.
+	 *
+	 * @param line the line
+	 * @return the words of the line
+	 */
+	private static List<String> tokenize(String line) {
+		List<String> words = new ArrayList<>();
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset(line);
+		while (tokenizer.next()) {
+			words.add(tokenizer.word().toString());
+		}
+		return words;
+	}
+
+	/**
+	 * Splits UTF-8 bytes with a Tokenizer.
+	 *
+	 * @param bytes the bytes
+	 * @return the words of the bytes
+	 */
+	private static List<String> tokenize(byte[] bytes) {
+		List<String> words = new ArrayList<>();
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset(ByteBuffer.wrap(bytes));
+		while (tokenizer.next()) {
+			words.add(tokenizer.word().toString());
+		}
+		return words;
+	}
+
+	/**
+	 * Returns random lines built from {@link #POOL}.
+	 *
+	 * @param count the number of lines
+	 * @return the lines
+	 */
+	private static List<String> randomLines(int count) {
+		Random random = new Random(1);
+		List<String> lines = new ArrayList<>(Arrays.asList(LINES));
+		for (int i = 0; i < count; i++) {
+			StringBuilder builder = new StringBuilder();
+			int length = random.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				builder.appendCodePoint(POOL[random.nextInt(POOL.length)]);
+			}
+			lines.add(builder.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * Checks that every line splits into the same words as {@link FileStemmer#parse(String)}.
+	 */
+	private static void checkLines() {
+		for (String line: randomLines(20000)) {
+			assertEquals(Arrays.asList(FileStemmer.parse(line)), tokenize(line), line);
+		}
+	}
+
+	/**
+	 * Tests lines with the default locale.
+	 */
+	@Test
+	public void testLines() {
+		checkLines();
+	}
+
+	/**
+	 * Tests lines with a Turkish default locale, whose lowercase of {@code I} differs.
+	 */
+	@Test
+	public void testTurkishLocale() {
+		Locale original = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.forLanguageTag("tr"));
+			checkLines();
+		} finally {
+			Locale.setDefault(original);
+		}
+	}
+
+	/**
+	 * Tests that UTF-8 bytes split into the same words as parsing each of their lines, as read
+	 * by a BufferedReader, one after the other.
+	 *
+	 * @throws IOException if unable to read the lines
+	 */
+	@Test
+	public void testBytes() throws IOException {
+		List<String> lines = randomLines(2000);
+		String[] breaks = {"\n", "\r\n", "\r"};
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++) {
+			text.append(lines.get(i)).append(breaks[i % breaks.length]);
+		}
+
+		List<String> expected = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new StringReader(text.toString()))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				expected.addAll(Arrays.asList(FileStemmer.parse(line)));
+			}
+		}
+		assertEquals(expected, tokenize(text.toString().getBytes(UTF_8)));
+	}
+
+	/**
+	 * Tests that bytes that are not valid UTF-8 are an error instead of being split.
+	 */
+	@Test
+	public void testMalformedBytes() {
+		byte[] bytes = {'a', ' ', (byte) 0xC3, ' ', 'b'};
+		assertThrows(UncheckedIOException.class, () -> tokenize(bytes));
+	}
+}